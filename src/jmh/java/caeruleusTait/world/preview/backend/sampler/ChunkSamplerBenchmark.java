@@ -0,0 +1,72 @@
+package caeruleusTait.world.preview.backend.sampler;
+
+import caeruleusTait.world.preview.RenderSettings;
+import caeruleusTait.world.preview.backend.worker.QuartBuffer;
+import caeruleusTait.world.preview.backend.worker.WorkResult;
+import caeruleusTait.world.preview.backend.worker.WorkerScratch;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.QuartPos;
+import net.minecraft.world.level.ChunkPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work of the {@link ChunkSampler}s around the actual sampling, which is replaced by a cheap function.
+ * <p>
+ * {@code expandRaw} measures {@link ChunkSampler#blocksForChunk} plus {@link ChunkSampler#expandRaw} for every
+ * position, like the layer work units do. {@code sampleChunk} lets the sampler decide what to sample, which
+ * only differs for {@link AdaptiveQuartSampler}. The sampled areas have about one border per chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChunkSamplerBenchmark {
+    private static final int CHUNKS = 16;
+
+    @Param({"FULL", "QUARTER", "SINGLE", "ADAPTIVE"})
+    public RenderSettings.SamplerType samplerType;
+
+    private ChunkSampler sampler;
+    private final WorkerScratch scratch = new WorkerScratch();
+    private final ChunkSampler.RawSampler rawSampler = ChunkSamplerBenchmark::raw;
+
+    @Setup
+    public void setup() {
+        sampler = samplerType.create(1);
+    }
+
+    private static short raw(BlockPos pos) {
+        return (short) ((pos.getX() * 3 + pos.getZ() * 5) >> 6);
+    }
+
+    private WorkResult newResult(ChunkPos chunkPos) {
+        final QuartBuffer buffer = scratch.acquireBuffer(QuartPos.fromSection(chunkPos.x), QuartPos.fromSection(chunkPos.z), QuartPos.fromSection(1));
+        return new WorkResult(null, 0, 0, null, buffer, List.of());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void expandRaw() {
+        for (int i = 0; i < CHUNKS; ++i) {
+            final ChunkPos chunkPos = new ChunkPos(i, i >> 2);
+            final WorkResult res = newResult(chunkPos);
+            for (BlockPos p : sampler.blocksForChunk(chunkPos, 64)) {
+                sampler.expandRaw(p, raw(p), res);
+            }
+            scratch.releaseBuffer(res.values());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void sampleChunk() {
+        for (int i = 0; i < CHUNKS; ++i) {
+            final ChunkPos chunkPos = new ChunkPos(i, i >> 2);
+            final WorkResult res = newResult(chunkPos);
+            sampler.sampleChunk(chunkPos, 64, scratch, rawSampler, res);
+            scratch.releaseBuffer(res.values());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes of a {@link PreviewSectionCompressed} at every palette level.
+ * <p>
+ * {@code distinct} selects the level: up to 16 values are packed into 4 bits, up to 256 into 8 bits and
+ * more are stored raw. With {@code compacted}, the section is encoded by a {@link PreviewSectionCodec} first,
+ * like an idle section in the {@link PreviewStoragePool}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreviewSectionBenchmark {
+    private static final int SIZE = PreviewSection.SIZE;
+
+    @Param({"1", "4", "16", "256", "4096"})
+    public int distinct;
+
+    @Param({"false", "true"})
+    public boolean compacted;
+
+    private PreviewSectionCompressed section;
+    private final short[] region = new short[SIZE * SIZE];
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        section = filled(distinct);
+        if (compacted) {
+            section.compact();
+        }
+    }
+
+    private static PreviewSectionCompressed filled(int distinct) {
+        final PreviewSectionCompressed res = new PreviewSectionCompressed.Full(0, 0);
+        for (int x = 0; x < SIZE; ++x) {
+            for (int z = 0; z < SIZE; ++z) {
+                res.set(x, z, value(x, z, distinct));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Smooth, like heights and noise, so that all codecs have something to work with
+     */
+    private static short value(int x, int z, int distinct) {
+        return (short) (((x * SIZE + z) * distinct / (SIZE * SIZE)) % distinct);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public void get(Blackhole bh) {
+        for (int x = 0; x < SIZE; ++x) {
+            for (int z = 0; z < SIZE; ++z) {
+                bh.consume(section.get(x, z));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public short[] readRegion() {
+        section.readRegion(0, 0, SIZE, SIZE, 1, region);
+        return region;
+    }
+
+    /**
+     * Overwrites all values with the values they already have, so the level stays the same. A compacted
+     * section is decoded by the first write.
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public PreviewSectionCompressed set() {
+        for (int x = 0; x < SIZE; ++x) {
+            for (int z = 0; z < SIZE; ++z) {
+                section.set(x, z, value(x, z, distinct));
+            }
+        }
+        return section;
+    }
+
+    /**
+     * Fills an empty section, including all palette level transitions on the way
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE)
+    public PreviewSectionCompressed fill() {
+        return filled(distinct);
+    }
+}
@@ -0,0 +1,86 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import caeruleusTait.world.preview.RenderSettings;
+import caeruleusTait.world.preview.WorldPreview;
+import caeruleusTait.world.preview.WorldPreviewConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static caeruleusTait.world.preview.backend.storage.PreviewStorage.FLAG_BIOME;
+
+/**
+ * Section lookups of a {@link PreviewStorage} that is shared by several threads, like the workers and the
+ * render thread do.
+ * <p>
+ * Each operation looks up all sections of a {@code REGION x REGION} area, so every thread hits the same
+ * blocks. The first iteration also measures the creation of the sections, later ones only the lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PreviewStorageBenchmark {
+    private static final int REGION = 16;
+
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    private PreviewStorage storage;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final WorldPreviewConfig cfg = new WorldPreviewConfig();
+        cfg.offHeapSections = offHeap;
+        WorldPreview.headless(cfg, new RenderSettings(), Files.createTempDirectory("world-preview-jmh"));
+        storage = new PreviewStorage(-64, 320, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storage.closeCacheFiles();
+    }
+
+    /**
+     * Every thread starts at a different section, so they do not walk the area in lockstep
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private static int nextStart;
+        private int start;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            synchronized (Cursor.class) {
+                start = nextStart;
+                nextStart += 7;
+            }
+        }
+    }
+
+    private PreviewSection lookupAll(Cursor cursor) {
+        PreviewSection last = null;
+        for (int i = 0; i < REGION * REGION; ++i) {
+            final int idx = (cursor.start + i) % (REGION * REGION);
+            final int quartX = (idx / REGION) << PreviewSection.SHIFT;
+            final int quartZ = (idx % REGION) << PreviewSection.SHIFT;
+            last = storage.section4(quartX, 0, quartZ, FLAG_BIOME);
+        }
+        return last;
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(REGION * REGION)
+    public PreviewSection section4Uncontended(Cursor cursor) {
+        return lookupAll(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(REGION * REGION)
+    public PreviewSection section4Contended(Cursor cursor) {
+        return lookupAll(cursor);
+    }
+}
@@ -0,0 +1,125 @@
+package caeruleusTait.world.preview.backend.worker;
+
+import caeruleusTait.world.preview.RenderSettings;
+import caeruleusTait.world.preview.WorldPreview;
+import caeruleusTait.world.preview.WorldPreviewConfig;
+import caeruleusTait.world.preview.backend.storage.PreviewStorage;
+import net.minecraft.core.QuartPos;
+import net.minecraft.world.level.ChunkPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static caeruleusTait.world.preview.backend.storage.PreviewStorage.FLAG_BIOME;
+import static caeruleusTait.world.preview.backend.storage.PreviewStorage.FLAG_HEIGHT;
+
+/**
+ * Applying the results of finished work units to the storage (see {@link WorkBatch#applyChunkResult}),
+ * which includes the updates of the zoomed out levels.
+ * <p>
+ * The results are prepared once, so only the writes are measured. The first iteration fills the sections,
+ * later ones overwrite the same values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WorkBatchBenchmark {
+    private static final int CHUNKS = 16;
+    private static final int Y = 64;
+
+    @Param({"0", "2"})
+    public long flags;
+
+    private PreviewStorage storage;
+    private WorkBatch batch;
+    private final List<List<WorkResult>> results = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        WorldPreview.headless(new WorldPreviewConfig(), new RenderSettings(), Files.createTempDirectory("world-preview-jmh"));
+        storage = new PreviewStorage(-64, 320, 1);
+
+        final WorkerScratch scratch = new WorkerScratch();
+        final List<WorkUnit> units = new ArrayList<>();
+        for (int x = 0; x < CHUNKS; ++x) {
+            for (int z = 0; z < CHUNKS; ++z) {
+                final ChunkPos chunkPos = new ChunkPos(x, z);
+                final WorkUnit unit = flags == FLAG_HEIGHT ? new HeightUnit(chunkPos, storage) : new BiomeUnit(chunkPos, storage);
+                final QuartBuffer values = scratch.acquireBuffer(QuartPos.fromSection(x), QuartPos.fromSection(z), unit.resultSize());
+                for (int qx = 0; qx < values.size(); ++qx) {
+                    for (int qz = 0; qz < values.size(); ++qz) {
+                        final int quartX = values.minQuartX() + qx;
+                        final int quartZ = values.minQuartZ() + qz;
+                        values.set(quartX, quartZ, (short) (flags == FLAG_HEIGHT ? (quartX + quartZ) % 128 : (quartX * 3 + quartZ) >> 4));
+                    }
+                }
+                units.add(unit);
+                results.add(List.of(new WorkResult(unit, QuartPos.fromBlock(Y), flags, storage.section4(unit.chunk(), Y, flags), values, List.of())));
+            }
+        }
+        batch = new WorkBatch(units, null, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storage.closeCacheFiles();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS * CHUNKS)
+    public void applyChunkResult() {
+        for (List<WorkResult> res : results) {
+            batch.applyChunkResult(res);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS * CHUNKS)
+    public void markCompleted() {
+        for (WorkUnit unit : batch.workUnits) {
+            unit.markCompleted();
+            unit.release(List.of());
+        }
+    }
+
+    /**
+     * Results are set up by the benchmark, these units produce none. {@link WorkUnit#flags()} is fixed per class,
+     * so each layer needs its own class.
+     */
+    private abstract static class FixedWorkUnit extends WorkUnit {
+        private FixedWorkUnit(ChunkPos chunkPos, PreviewStorage storage) {
+            super(null, chunkPos, null, Y, storage);
+        }
+
+        @Override
+        protected List<WorkResult> doWork() {
+            return List.of();
+        }
+    }
+
+    private static class BiomeUnit extends FixedWorkUnit {
+        private BiomeUnit(ChunkPos chunkPos, PreviewStorage storage) {
+            super(chunkPos, storage);
+        }
+
+        @Override
+        public long flags() {
+            return FLAG_BIOME;
+        }
+    }
+
+    private static class HeightUnit extends FixedWorkUnit {
+        private HeightUnit(ChunkPos chunkPos, PreviewStorage storage) {
+            super(chunkPos, storage);
+        }
+
+        @Override
+        public long flags() {
+            return FLAG_HEIGHT;
+        }
+    }
+}
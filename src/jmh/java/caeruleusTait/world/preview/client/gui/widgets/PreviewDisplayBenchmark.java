@@ -0,0 +1,81 @@
+package caeruleusTait.world.preview.client.gui.widgets;
+
+import caeruleusTait.world.preview.backend.storage.PreviewSection;
+import caeruleusTait.world.preview.backend.storage.PreviewSectionCompressed;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The pixel loop of {@link PreviewDisplay} for full redraws in the biome mode.
+ * <p>
+ * The display draws into the pixels of a {@code NativeImage}, which needs a render context. This benchmark draws
+ * into a direct buffer of the same layout instead: one {@link PreviewSection#readRegion} per section, a color
+ * lookup per cell and {@link PreviewDisplay#drawCells} for the pixels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PreviewDisplayBenchmark {
+    private static final int SECTIONS = 4;
+    private static final int SIZE = PreviewSection.SIZE;
+
+    @Param({"1", "2", "4"})
+    public int quartExpand;
+
+    private final PreviewSection[] sections = new PreviewSection[SECTIONS * SECTIONS];
+    private final short[] regionBuffer = new short[SIZE * SIZE];
+    private final int[] colorBuffer = new int[SIZE * SIZE];
+    private final int[] colorMap = new int[256];
+    private int texWidth;
+    private IntBuffer texture;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        for (int i = 0; i < sections.length; ++i) {
+            final PreviewSection section = new PreviewSectionCompressed.Full((i / SECTIONS) * SIZE, (i % SECTIONS) * SIZE);
+            for (int x = 0; x < SIZE; ++x) {
+                for (int z = 0; z < SIZE; ++z) {
+                    section.set(x, z, (short) (((section.quartX() + x) * 3 + section.quartZ() + z) >> 4 & 0x3F));
+                }
+            }
+            sections[i] = section;
+        }
+        for (int i = 0; i < colorMap.length; ++i) {
+            colorMap[i] = 0xFF000000 | (i * 0x010203);
+        }
+        texWidth = SECTIONS * SIZE * quartExpand;
+        texture = ByteBuffer.allocateDirect(texWidth * texWidth * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SECTIONS * SECTIONS)
+    public IntBuffer drawSections() {
+        for (PreviewSection section : sections) {
+            drawSection(section);
+        }
+        return texture;
+    }
+
+    private void drawSection(PreviewSection section) {
+        section.readRegion(0, 0, SIZE, SIZE, 1, regionBuffer);
+        for (int i = 0; i < regionBuffer.length; ++i) {
+            final short rawData = regionBuffer[i];
+            colorBuffer[i] = rawData >= 0 ? colorMap[rawData] : 0xFF000000;
+        }
+        PreviewDisplay.drawCells(
+                texture,
+                texWidth,
+                texWidth,
+                colorBuffer,
+                SIZE,
+                SIZE,
+                section.quartX() * quartExpand,
+                section.quartZ() * quartExpand,
+                quartExpand
+        );
+    }
+}
@@ -1,10 +1,12 @@
 package caeruleusTait.world.preview;
 
+import caeruleusTait.world.preview.backend.sampler.AdaptiveQuartSampler;
 import caeruleusTait.world.preview.backend.sampler.ChunkSampler;
 import caeruleusTait.world.preview.backend.sampler.FullQuartSampler;
 import caeruleusTait.world.preview.backend.sampler.QuarterQuartSampler;
 import caeruleusTait.world.preview.backend.sampler.SingleQuartSampler;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.QuartPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
 
@@ -28,6 +30,7 @@ public class RenderSettings {
     private BlockPos center = new BlockPos(0, 0, 0);
     private int quartExpand = 1;
     private int quartStride = 1;
+    private int lodLevel = 0;
     public SamplerType samplerType = SamplerType.AUTO;
     public ResourceLocation dimension = null;
 
@@ -65,11 +68,31 @@ public class RenderSettings {
         return quartStride;
     }
 
+    /**
+     * The level of detail that is rendered (see {@link caeruleusTait.world.preview.backend.storage.PreviewLodStorage}).
+     * 0 when the full resolution data is rendered.
+     */
+    public int lodLevel() {
+        return lodLevel;
+    }
+
     public int pixelsPerChunk() {
         return (4 * quartExpand) / quartStride;
     }
 
+    /**
+     * 1 unless zoomed out further than 1 pixel per chunk
+     */
+    public int chunksPerPixel() {
+        return 1 << lodLevel;
+    }
+
+    public int blocksPerPixel() {
+        return ((QuartPos.SIZE / quartExpand) * quartStride) << lodLevel;
+    }
+
     public void setPixelsPerChunk(int blocksPerChunk) {
+        lodLevel = 0;
         switch (blocksPerChunk) {
             case 16 -> {
                 quartExpand = 4;
@@ -95,6 +118,22 @@ public class RenderSettings {
         }
     }
 
+    /**
+     * Zooms out further than 1 pixel per chunk. The full resolution data is still sampled with 1 pixel per chunk.
+     */
+    public void setChunksPerPixel(int chunksPerPixel) {
+        quartExpand = 1;
+        quartStride = 4;
+        lodLevel = switch (chunksPerPixel) {
+            case 1 -> 0;
+            case 2 -> 1;
+            case 4 -> 2;
+            case 8 -> 3;
+            case 16 -> 4;
+            default -> throw new RuntimeException("Invalid chunksPerPixel=" + chunksPerPixel);
+        };
+    }
+
     public enum RenderMode {
         BIOMES(FLAG_BIOME, true),
         HEIGHTMAP(FLAG_HEIGHT, false),
@@ -137,6 +176,7 @@ public class RenderSettings {
         FULL(x -> new FullQuartSampler()),
         QUARTER(x -> new QuarterQuartSampler()),
         SINGLE(x -> new SingleQuartSampler()),
+        ADAPTIVE(x -> new AdaptiveQuartSampler()),
         ;
 
         private final IntFunction<ChunkSampler> samplerFactory;
@@ -11,8 +11,10 @@ public class WorldPreviewConfig {
     public boolean showPlayer = true;
     public boolean showControls = true;
     public boolean showFrameTime = false;
+    public boolean showMetrics = false;
     public boolean buildFullVertChunk = false;
     public boolean backgroundSampleVertChunk = false;
+    public boolean prioritizeCenter = true;
     public boolean sampleStructures = false;
     public boolean sampleHeightmap = false;
     public boolean sampleIntersections = false;
@@ -23,6 +25,8 @@ public class WorldPreviewConfig {
     public boolean cacheInGame = true;
     public boolean cacheInNew = false;
     public boolean enableCompression = true;
+    public boolean offHeapSections = false;
+    public int memoryBudgetMB = 0;
     public String colorMap = "world_preview:inferno";
 
     private int numThreads = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
@@ -0,0 +1,221 @@
+package caeruleusTait.world.preview.backend;
+
+import caeruleusTait.world.preview.backend.worker.WorkBatch;
+import caeruleusTait.world.preview.backend.worker.WorkUnit;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread pool for {@link WorkBatch}es that always processes the most important batch next.
+ * <p>
+ * The batches are executed in a {@link ForkJoinPool}. Every submitted batch adds one task to the
+ * pool, which then takes the batch with the highest priority from the queue. Large batches split
+ * themselves (see {@link WorkBatch#process()}), so that idle workers can steal work from busy ones.
+ * <p>
+ * Batches are ordered by their rank (the layer type, see {@link WorkManager}) first and by their
+ * distance to the current center second. Moving the center does not require resubmitting anything:
+ * {@link #recenter(ChunkPos)} only records the new center and the next worker that takes a batch
+ * re-sorts the queue.
+ */
+public class PriorityWorkExecutor {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<PrioritizedBatch> queue = new PriorityQueue<>(
+            Comparator.comparingLong(PrioritizedBatch::priority).thenComparingLong(PrioritizedBatch::sequence)
+    );
+    private final ForkJoinPool pool;
+    private final boolean prioritizeCenter;
+
+    private ChunkPos center = new ChunkPos(0, 0);
+    private boolean centerChanged = false;
+    private boolean isShutdown = false;
+    private long nextSequence = 0;
+
+    /**
+     * @param numThreads the number of worker threads
+     * @param prioritizeCenter when {@code false}, batches of the same rank are processed in submission order
+     */
+    public PriorityWorkExecutor(int numThreads, boolean prioritizeCenter) {
+        this.prioritizeCenter = prioritizeCenter;
+
+        // The default factory uses the system class loader for the worker threads, which
+        // can not see the game classes on all mod loaders.
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        this.pool = new ForkJoinPool(
+                numThreads,
+                p -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                    thread.setName("world-preview-worker-" + thread.getPoolIndex());
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                },
+                null,
+                false
+        );
+    }
+
+    public Future<?> submit(WorkBatch batch) {
+        final PrioritizedBatch task = new PrioritizedBatch(batch);
+        lock.lock();
+        try {
+            if (isShutdown) {
+                // Complete the future right away, so that nobody waits for it
+                batch.cancel();
+                task.run();
+                return task;
+            }
+            task.sequence = nextSequence++;
+            task.updatePriority(center);
+            queue.add(task);
+        } finally {
+            lock.unlock();
+        }
+        pool.execute(this::runNext);
+        return task;
+    }
+
+    /**
+     * Changes the center used for prioritization. The queue is re-sorted lazily by the next worker.
+     */
+    public void recenter(ChunkPos newCenter) {
+        lock.lock();
+        try {
+            if (!newCenter.equals(center)) {
+                center = newCenter;
+                centerChanged = prioritizeCenter;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public ChunkPos center() {
+        lock.lock();
+        try {
+            return center;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all canceled batches from the queue. Their futures are completed immediately, so that
+     * waiting for them does not depend on the queue position.
+     */
+    public void purgeCanceled() {
+        final List<PrioritizedBatch> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Iterator<PrioritizedBatch> iter = queue.iterator(); iter.hasNext(); ) {
+                PrioritizedBatch task = iter.next();
+                if (task.batch.isCanceled()) {
+                    removed.add(task);
+                    iter.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // WorkBatch::process returns immediately for canceled batches
+        removed.forEach(PrioritizedBatch::run);
+    }
+
+    public void shutdownNow() {
+        lock.lock();
+        try {
+            isShutdown = true;
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * Executed once for every submitted batch. Runs whatever batch is the most important one right now.
+     */
+    private void runNext() {
+        final PrioritizedBatch next;
+        lock.lock();
+        try {
+            if (centerChanged) {
+                reprioritize();
+            }
+            next = queue.poll();
+        } finally {
+            lock.unlock();
+        }
+
+        // The queue may already be empty, when canceled batches were purged
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * MUST be called while holding the lock
+     */
+    private void reprioritize() {
+        final List<PrioritizedBatch> all = new ArrayList<>(queue);
+        queue.clear();
+        for (PrioritizedBatch task : all) {
+            task.updatePriority(center);
+        }
+        queue.addAll(all);
+        centerChanged = false;
+    }
+
+    /**
+     * Squared distance (in chunks) between the center and the closest chunk covered by the work unit
+     */
+    public static long distanceSqr(WorkUnit unit, ChunkPos center) {
+        final ChunkPos pos = unit.chunk();
+        final int span = unit.chunkSpan();
+        final long dx = Math.max(0, Math.max(pos.x - center.x, center.x - (pos.x + span - 1)));
+        final long dz = Math.max(0, Math.max(pos.z - center.z, center.z - (pos.z + span - 1)));
+        return dx * dx + dz * dz;
+    }
+
+    private class PrioritizedBatch extends FutureTask<Void> {
+        private final WorkBatch batch;
+        private long priority;
+        private long sequence;
+
+        public PrioritizedBatch(WorkBatch batch) {
+            super(batch::process, null);
+            this.batch = batch;
+        }
+
+        /**
+         * The rank is stored in the upper 32 bits and the squared chunk distance of the closest work
+         * unit in the lower 32 bits.
+         */
+        private void updatePriority(ChunkPos newCenter) {
+            long minDistance = Integer.MAX_VALUE;
+            if (prioritizeCenter) {
+                for (WorkUnit unit : batch.workUnits) {
+                    minDistance = Math.min(minDistance, distanceSqr(unit, newCenter));
+                }
+            }
+            priority = ((long) batch.rank() << 32) | minDistance;
+        }
+
+        public long priority() {
+            return priority;
+        }
+
+        public long sequence() {
+            return sequence;
+        }
+    }
+}
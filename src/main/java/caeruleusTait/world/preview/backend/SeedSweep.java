@@ -0,0 +1,393 @@
+package caeruleusTait.world.preview.backend;
+
+import caeruleusTait.world.preview.RenderSettings;
+import caeruleusTait.world.preview.WorldPreview;
+import caeruleusTait.world.preview.WorldPreviewConfig;
+import caeruleusTait.world.preview.backend.color.PreviewData;
+import caeruleusTait.world.preview.backend.color.PreviewMappingData;
+import caeruleusTait.world.preview.backend.storage.PreviewStorage;
+import caeruleusTait.world.preview.backend.storage.PreviewStorageCacheManager;
+import caeruleusTait.world.preview.backend.worker.WorkListener;
+import caeruleusTait.world.preview.backend.worker.WorkUnit;
+import com.google.gson.GsonBuilder;
+import com.mojang.datafixers.util.Pair;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.SharedConstants;
+import net.minecraft.Util;
+import net.minecraft.commands.Commands;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.LayeredRegistryAccess;
+import net.minecraft.core.Registry;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.server.RegistryLayer;
+import net.minecraft.server.WorldLoader;
+import net.minecraft.server.packs.repository.PackRepository;
+import net.minecraft.server.packs.repository.ServerPacksSource;
+import net.minecraft.world.level.WorldDataConfiguration;
+import net.minecraft.world.level.dimension.LevelStem;
+import net.minecraft.world.level.levelgen.WorldDimensions;
+import net.minecraft.world.level.levelgen.WorldOptions;
+import net.minecraft.world.level.levelgen.presets.WorldPresets;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static caeruleusTait.world.preview.WorldPreview.LOGGER;
+
+/**
+ * Measures the sampling throughput without the GUI, to catch regressions between releases and to choose
+ * the number of threads for a machine.
+ * <p>
+ * The vanilla overworld is set up like in the world creation screen, but without a cache. For every thread
+ * count and seed, the square of {@code radius} chunks around the origin is queued with
+ * {@link WorkManager#queueRangeReal} and sampled completely. Biomes, structures, heightmap and intersections
+ * are sampled. The report is written as JSON and contains per run:
+ * <ul>
+ *     <li>the wall time and the chunks per second of the entire region</li>
+ *     <li>per work unit type: the chunks per second of a single worker and the percentiles of the work and
+ *     queue wait times (see {@link WorkListener})</li>
+ *     <li>the heap usage before the run and the sum of the peak usage of all heap pools during the run</li>
+ * </ul>
+ * The sweep runs in the dedicated server of the development environment (see the {@code seedSweep} run of
+ * the build), so that the mixins of the mod are applied. It is enabled by setting the system property
+ * {@value #PROPERTY} to the output file. The other options are:
+ * <ul>
+ *     <li>{@code world_preview.seedSweep.seeds}: comma separated seeds, default {@code 0,1,2,3}</li>
+ *     <li>{@code world_preview.seedSweep.threads}: comma separated thread counts, default the config default</li>
+ *     <li>{@code world_preview.seedSweep.radius}: in chunks, default {@code 32}</li>
+ *     <li>{@code world_preview.seedSweep.y}: the sampled biome layer, default {@code 64}</li>
+ * </ul>
+ */
+public class SeedSweep {
+    public static final String PROPERTY = "world_preview.seedSweep";
+
+    private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+    private SeedSweep() {
+    }
+
+    public record Options(Path output, long[] seeds, int[] threads, int radius, int y) {
+        /**
+         * @return {@code null} unless {@value SeedSweep#PROPERTY} is set
+         */
+        public static @Nullable Options fromSystemProperties() {
+            final String output = System.getProperty(PROPERTY);
+            if (output == null || output.isBlank()) {
+                return null;
+            }
+            final String defaultThreads = Integer.toString(new WorldPreviewConfig().numThreads());
+            return new Options(
+                    Path.of(output),
+                    Arrays.stream(System.getProperty(PROPERTY + ".seeds", "0,1,2,3").split(",")).map(String::trim).mapToLong(Long::parseLong).toArray(),
+                    Arrays.stream(System.getProperty(PROPERTY + ".threads", defaultThreads).split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray(),
+                    Integer.getInteger(PROPERTY + ".radius", 32),
+                    Integer.getInteger(PROPERTY + ".y", 64)
+            );
+        }
+    }
+
+    /**
+     * Runs the sweep on a new thread. Only the first call does anything.
+     *
+     * @param onFinished called once the report is written (or the sweep failed)
+     */
+    public static void start(Options options, Runnable onFinished) {
+        if (!STARTED.compareAndSet(false, true)) {
+            return;
+        }
+        final Thread thread = new Thread(() -> {
+            try {
+                run(options);
+            } catch (Throwable e) {
+                LOGGER.error("Seed sweep failed");
+                e.printStackTrace();
+            } finally {
+                onFinished.run();
+            }
+        }, "World Preview Seed Sweep");
+        thread.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+        thread.start();
+    }
+
+    public static void run(Options options) throws Exception {
+        final Vanilla vanilla = loadVanilla();
+        final Path tempDir = Files.createTempDirectory("world_preview_sweep");
+
+        final List<SeedRun> runs = new ArrayList<>();
+        for (int threads : options.threads()) {
+            for (long seed : options.seeds()) {
+                LOGGER.info("Seed sweep: sampling seed {} with {} threads", seed, threads);
+                runs.add(runSeed(vanilla, seed, threads, options, tempDir));
+            }
+        }
+
+        final Report report = new Report(
+                SharedConstants.getCurrentVersion().getName(),
+                Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory(),
+                options.radius(),
+                options.y(),
+                runs
+        );
+        final Path output = options.output().toAbsolutePath();
+        Files.createDirectories(output.getParent());
+        Files.writeString(output, new GsonBuilder().setPrettyPrinting().create().toJson(report));
+        LOGGER.info("Seed sweep: report written to {}", output);
+    }
+
+    private record Vanilla(LayeredRegistryAccess<RegistryLayer> registries, LevelStem overworld, PreviewData previewData) {
+    }
+
+    /**
+     * Loads the registries of the vanilla data pack, like the world creation screen does
+     */
+    private static Vanilla loadVanilla() throws Exception {
+        final PackRepository packRepository = ServerPacksSource.createVanillaTrustedRepository();
+        final WorldLoader.PackConfig packConfig = new WorldLoader.PackConfig(packRepository, WorldDataConfiguration.DEFAULT, false, true);
+        final WorldLoader.InitConfig initConfig = new WorldLoader.InitConfig(packConfig, Commands.CommandSelection.DEDICATED, 2);
+        final Pair<LayeredRegistryAccess<RegistryLayer>, WorldDimensions> loaded = WorldLoader.load(
+                initConfig,
+                dataLoadContext -> new WorldLoader.DataLoadOutput<>(
+                        WorldPresets.createNormalWorldDimensions(dataLoadContext.datapackWorldgen()),
+                        dataLoadContext.datapackDimensions()
+                ),
+                (closeableResourceManager, reloadableServerResources, layeredRegistryAccess, worldDimensions) -> {
+                    closeableResourceManager.close();
+                    return Pair.of(layeredRegistryAccess, worldDimensions);
+                },
+                Util.backgroundExecutor(),
+                Util.backgroundExecutor()
+        ).get();
+
+        final LayeredRegistryAccess<RegistryLayer> worldgenRegistries = loaded.getFirst();
+        final WorldDimensions.Complete dimensions = loaded.getSecond().bake(
+                worldgenRegistries.compositeAccess().registryOrThrow(Registries.LEVEL_STEM)
+        );
+        final LayeredRegistryAccess<RegistryLayer> registries = worldgenRegistries.replaceFrom(RegistryLayer.DIMENSIONS, dimensions.dimensionsRegistryAccess());
+
+        final Registry<?> biomeRegistry = registries.compositeAccess().registryOrThrow(Registries.BIOME);
+        final Registry<?> structureRegistry = registries.compositeAccess().registryOrThrow(Registries.STRUCTURE);
+        final PreviewData previewData = new PreviewMappingData().generateMapData(
+                biomeRegistry.keySet(),
+                Set.of(),
+                structureRegistry.keySet(),
+                Set.of()
+        );
+        return new Vanilla(registries, dimensions.dimensions().getOrThrow(LevelStem.OVERWORLD), previewData);
+    }
+
+    private static SeedRun runSeed(Vanilla vanilla, long seed, int threads, Options options, Path tempDir) throws Exception {
+        final WorldPreviewConfig cfg = new WorldPreviewConfig();
+        cfg.setNumThreads(threads);
+        cfg.sampleStructures = true;
+        cfg.sampleHeightmap = true;
+        cfg.sampleIntersections = true;
+        // Nothing is evicted during the measurement
+        cfg.memoryBudgetMB = 0;
+        final RenderSettings renderSettings = new RenderSettings();
+        renderSettings.dimension = LevelStem.OVERWORLD.location();
+
+        final WorldPreview worldPreview = WorldPreview.headless(cfg, renderSettings, tempDir);
+        final WorkManager workManager = worldPreview.workManager();
+        final Timings timings = new Timings();
+        workManager.setWorkListener(timings);
+
+        System.gc();
+        final long baselineHeap = usedHeap();
+        resetPeakHeap();
+
+        final long start = System.nanoTime();
+        final Runnable changeWorldGenState = () -> workManager.changeWorldGenState(
+                vanilla.overworld(),
+                vanilla.registries(),
+                vanilla.previewData(),
+                new WorldOptions(seed, true, false),
+                WorldDataConfiguration.DEFAULT,
+                new NoCache(tempDir),
+                Proxy.NO_PROXY,
+                null,
+                null
+        );
+        // Same as in the GUI, see PreviewContainer
+        final Executor serverThreadPoolExecutor = worldPreview.serverThreadPoolExecutor();
+        if (serverThreadPoolExecutor != null) {
+            CompletableFuture.runAsync(changeWorldGenState, serverThreadPoolExecutor).get();
+        } else {
+            changeWorldGenState.run();
+        }
+        workManager.postChangeWorldGenState();
+
+        final long sampleStart = System.nanoTime();
+        final int radius = options.radius();
+        workManager.queueRangeReal(
+                new BlockPos(-radius * 16, options.y(), -radius * 16),
+                new BlockPos(radius * 16 + 15, options.y(), radius * 16 + 15)
+        );
+        workManager.awaitWork();
+        final long end = System.nanoTime();
+
+        final long peakHeap = peakHeap();
+        workManager.setWorkListener(null);
+        workManager.cancel();
+
+        final int regionChunks = (2 * radius + 1) * (2 * radius + 1);
+        final double sampleSeconds = (end - sampleStart) / 1e9;
+        return new SeedRun(
+                seed,
+                threads,
+                regionChunks,
+                (sampleStart - start) / 1e6,
+                sampleSeconds * 1e3,
+                regionChunks / sampleSeconds,
+                baselineHeap,
+                peakHeap,
+                timings.stats()
+        );
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * The sum of the peaks of all heap pools. The pools peak at different times, so this is an upper bound.
+     */
+    private static long peakHeap() {
+        long res = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                res += pool.getPeakUsage().getUsed();
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Collects the timings per work unit type (the simple class name)
+     */
+    private static class Timings implements WorkListener {
+        private final Map<String, UnitTimings> units = new ConcurrentHashMap<>();
+
+        @Override
+        public void workDone(WorkUnit unit, long waitNanos, long workNanos) {
+            units.computeIfAbsent(unit.getClass().getSimpleName(), x -> new UnitTimings())
+                    .add(waitNanos, workNanos, (long) unit.chunkSpan() * unit.chunkSpan());
+        }
+
+        private Map<String, UnitStats> stats() {
+            final Map<String, UnitStats> res = new TreeMap<>();
+            units.forEach((name, timings) -> res.put(name, timings.stats()));
+            return res;
+        }
+    }
+
+    private static class UnitTimings {
+        private final LongArrayList waitNanos = new LongArrayList();
+        private final LongArrayList workNanos = new LongArrayList();
+        private long chunks;
+
+        private synchronized void add(long wait, long work, long unitChunks) {
+            waitNanos.add(wait);
+            workNanos.add(work);
+            chunks += unitChunks;
+        }
+
+        private synchronized UnitStats stats() {
+            long totalWork = 0;
+            for (int i = 0; i < workNanos.size(); ++i) {
+                totalWork += workNanos.getLong(i);
+            }
+            return new UnitStats(
+                    workNanos.size(),
+                    chunks,
+                    totalWork == 0 ? 0 : chunks / (totalWork / 1e9),
+                    Percentiles.of(workNanos),
+                    Percentiles.of(waitNanos)
+            );
+        }
+    }
+
+    /**
+     * @param chunksPerThreadSecond the chunks sampled by a single worker thread per second of work
+     */
+    private record UnitStats(int units, long chunks, double chunksPerThreadSecond, Percentiles workMs, Percentiles waitMs) {
+    }
+
+    private record Percentiles(double p50, double p90, double p99, double max) {
+        private static Percentiles of(LongArrayList nanos) {
+            if (nanos.isEmpty()) {
+                return new Percentiles(0, 0, 0, 0);
+            }
+            final long[] sorted = nanos.toLongArray();
+            Arrays.sort(sorted);
+            return new Percentiles(
+                    at(sorted, 0.5),
+                    at(sorted, 0.9),
+                    at(sorted, 0.99),
+                    sorted[sorted.length - 1] / 1e6
+            );
+        }
+
+        /**
+         * Nearest rank, in milliseconds
+         */
+        private static double at(long[] sorted, double p) {
+            final int rank = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, rank)] / 1e6;
+        }
+    }
+
+    private record SeedRun(
+            long seed,
+            int threads,
+            int regionChunks,
+            double setupMs,
+            double sampleMs,
+            double chunksPerSecond,
+            long baselineHeapBytes,
+            long peakHeapBytes,
+            Map<String, UnitStats> units
+    ) {
+    }
+
+    private record Report(String minecraftVersion, int availableProcessors, long maxHeapBytes, int radius, int y, List<SeedRun> runs) {
+    }
+
+    /**
+     * Every run starts from scratch
+     */
+    private record NoCache(Path cacheDir) implements PreviewStorageCacheManager {
+        @Override
+        public PreviewStorage loadPreviewStorage(long seed, int yMin, int yMax) {
+            return new PreviewStorage(yMin, yMax);
+        }
+
+        @Override
+        public void storePreviewStorage(long seed, PreviewStorage storage) {
+            finishCacheFile(storage);
+        }
+    }
+}
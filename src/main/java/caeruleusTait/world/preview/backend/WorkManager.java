@@ -4,15 +4,25 @@ import caeruleusTait.world.preview.RenderSettings;
 import caeruleusTait.world.preview.WorldPreview;
 import caeruleusTait.world.preview.WorldPreviewConfig;
 import caeruleusTait.world.preview.backend.color.PreviewData;
+import caeruleusTait.world.preview.backend.metrics.QueueRangeEvent;
 import caeruleusTait.world.preview.backend.sampler.ChunkSampler;
+import caeruleusTait.world.preview.backend.storage.PreviewCacheLoader;
+import caeruleusTait.world.preview.backend.storage.PreviewCompletionIndex;
+import caeruleusTait.world.preview.backend.storage.PreviewLodStorage;
 import caeruleusTait.world.preview.backend.storage.PreviewSection;
 import caeruleusTait.world.preview.backend.storage.PreviewStorage;
 import caeruleusTait.world.preview.backend.storage.PreviewStorageCacheManager;
+import caeruleusTait.world.preview.backend.storage.PreviewStoragePool;
 import caeruleusTait.world.preview.backend.worker.*;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.LayeredRegistryAccess;
+import net.minecraft.core.QuartPos;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.RegistryLayer;
 import net.minecraft.server.packs.resources.ResourceManager;
@@ -33,6 +43,8 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.SplittableRandom;
 import java.util.concurrent.*;
@@ -44,7 +56,13 @@ public class WorkManager {
     public static final int Y_BLOCK_SHIFT = 3;
     public static final int Y_BLOCK_STRIDE = 1 << Y_BLOCK_SHIFT;
 
-    private final Object completedSynchro = new Object();
+    // Ranks for the work executor. Lower ranks are processed first.
+    private static final int RANK_BIOMES = 0;
+    private static final int RANK_STRUCTURES = 1;
+    private static final int RANK_TERRAIN = 2;
+    private static final int RANK_ADJACENT_Y = 3;
+
+    private static final int LOD_BITS = 3;
 
     private WorldOptions worldOptions;
     private LevelStem levelStem;
@@ -61,11 +79,12 @@ public class WorkManager {
     private final WorldPreviewConfig config;
 
     private final List<WorkBatch> currentBatches = new ArrayList<>();
+    private final Long2ObjectMap<LongSet> inFlight = new Long2ObjectOpenHashMap<>();
     private final List<Future<?>> futures = new ArrayList<>();
     private final List<Future<?>> queueFutures = new ArrayList<>();
     private final SplittableRandom random = new SplittableRandom();
 
-    private ExecutorService executorService;
+    private PriorityWorkExecutor workExecutor;
     private ExecutorService queueChunksService;
 
     private ChunkPos lastQueuedTopLeft;
@@ -73,6 +92,8 @@ public class WorkManager {
     private int lastY;
 
     private boolean queueIsRunning = false;
+    private volatile boolean requeueLoaded = false;
+    private volatile @Nullable WorkListener workListener;
     private boolean shouldEarlyAbortQueuing = false;
 
     public WorkManager(RenderSettings renderSettings, WorldPreviewConfig config) {
@@ -134,17 +155,23 @@ public class WorkManager {
      * MUST be called in the render thread and AFTER {@link #changeWorldGenState} has finished
      */
     public void postChangeWorldGenState() {
-        // This call MAY change screens and MUST thus be called in the render thread!
         previewStorage = previewStorageCacheManager.loadPreviewStorage(worldOptions.seed(), yMin(), yMax());
+        PreviewStoragePool.register(previewStorage);
 
         // Only create the executors at the end to ensure that there are no
         // null pointer exceptions
-        executorService = Executors.newFixedThreadPool(config.numThreads());
+        workExecutor = new PriorityWorkExecutor(config.numThreads(), config.prioritizeCenter);
         queueChunksService = Executors.newSingleThreadExecutor();
+
+        // Sampling starts right away, work units of columns that are still loading are queued again afterward
+        final PreviewCacheLoader loader = previewStorage.loader();
+        if (loader != null) {
+            loader.start(workExecutor::center, () -> requeueLoaded = true);
+        }
     }
 
     private void shutdownExecutors() {
-        if (executorService == null) {
+        if (workExecutor == null) {
             return;
         }
 
@@ -154,6 +181,7 @@ public class WorkManager {
             currentBatches.forEach(WorkBatch::cancel);
             currentBatches.clear();
         }
+        workExecutor.purgeCanceled();
         try {
             List<Future<?>> allFutures = new ArrayList<>();
             synchronized (futures) {
@@ -168,7 +196,7 @@ public class WorkManager {
             throw new RuntimeException(e);
         }
 
-        executorService.shutdownNow();
+        workExecutor.shutdownNow();
         queueChunksService.shutdownNow();
     }
 
@@ -194,6 +222,9 @@ public class WorkManager {
             }
         }
 
+        if (previewStorage != null) {
+            PreviewStoragePool.unregister(previewStorage);
+        }
         if (previewStorageCacheManager != null) {
             previewStorageCacheManager.storePreviewStorage(worldOptions.seed(), previewStorage);
         }
@@ -208,8 +239,10 @@ public class WorkManager {
         lastQueuedBotRight = null;
         lastY = Integer.MIN_VALUE;
         queueIsRunning = false;
+        requeueLoaded = false;
         futures.clear();
-        executorService = null;
+        inFlight.clear();
+        workExecutor = null;
         queueChunksService = null;
         previewStorageCacheManager = null;
     }
@@ -224,7 +257,12 @@ public class WorkManager {
     public void queueRange(BlockPos topLeftBlock, BlockPos bottomRightBlock) {
         final ChunkPos topLeft = new ChunkPos(topLeftBlock);
         final ChunkPos bottomRight = new ChunkPos(bottomRightBlock);
-        if (executorService == null || sampleUtils == null ||
+        if (requeueLoaded) {
+            requeueLoaded = false;
+            lastQueuedTopLeft = null;
+            lastQueuedBotRight = null;
+        }
+        if (workExecutor == null || sampleUtils == null ||
                 (
                         topLeft.equals(lastQueuedTopLeft)
                         && bottomRight.equals(lastQueuedBotRight)
@@ -234,6 +272,9 @@ public class WorkManager {
             return;
         }
 
+        // Already queued work is re-prioritized in place, even if the queue is still running
+        workExecutor.recenter(new ChunkPos((topLeft.x + bottomRight.x) / 2, (topLeft.z + bottomRight.z) / 2));
+
         // Only have one in queue
         if (queueIsRunning) {
             // Signal the current queue algorithm to hurry up and skip
@@ -265,70 +306,78 @@ public class WorkManager {
     }
 
     public void queueRangeReal(BlockPos topLeftBlock, BlockPos bottomRightBlock) {
+        final QueueRangeEvent event = new QueueRangeEvent();
+        event.begin();
         final Instant start = Instant.now();
         final ChunkPos topLeft = new ChunkPos(topLeftBlock);
         final ChunkPos bottomRight = new ChunkPos(bottomRightBlock);
 
-        // Cancel current batches
-        synchronized (currentBatches) {
-            currentBatches.forEach(WorkBatch::cancel);
-            currentBatches.clear();
-        }
+        // Only cancel the work that is no longer needed and remember everything else that is still in flight
+        final int kept = cancelOutdatedWork(topLeft, bottomRight, topLeftBlock.getY());
+        workExecutor.purgeCanceled();
         synchronized (futures) {
-            for (Future<?> f : futures) {
-                try {
-                    f.get();
-                } catch (InterruptedException | ExecutionException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-            futures.clear();
+            futures.removeIf(Future::isDone);
         }
 
-        // Calculate new batches
-        final List<ChunkPos> chunks = ChunkPos.rangeClosed(topLeft, bottomRight).toList();
         int units = 0;
 
-        // Main biomes
-        units += queueForLevel(chunks, topLeftBlock.getY(), 4096, this::workUnitFactory);
+        // Zoomed out: only sample the cells of the current level of detail
+        if (renderSettings.lodLevel() > 0) {
+            final int level = renderSettings.lodLevel();
+            final ChunkPos cellTopLeft = new ChunkPos(
+                    QuartPos.toSection(PreviewLodStorage.blockToCell(topLeftBlock.getX(), level)),
+                    QuartPos.toSection(PreviewLodStorage.blockToCell(topLeftBlock.getZ(), level))
+            );
+            final ChunkPos cellBottomRight = new ChunkPos(
+                    QuartPos.toSection(PreviewLodStorage.blockToCell(bottomRightBlock.getX(), level)),
+                    QuartPos.toSection(PreviewLodStorage.blockToCell(bottomRightBlock.getZ(), level))
+            );
+            final LongList cellChunks = missingChunks(previewStorage.lod().level(level), topLeftBlock.getY(), PreviewStorage.FLAG_BIOME, cellTopLeft, cellBottomRight, 0);
+            units += queueForLevel(cellChunks, topLeftBlock.getY(), 4096, RANK_BIOMES, (pos, y) -> new LodWorkUnit(pos, sampleUtils, previewData, y, level));
+
+            LOGGER.info(
+                    "Queued {} level {} cell chunks for generation ({} still in flight) [{} ms]",
+                    units,
+                    level,
+                    kept,
+                    Duration.between(start, Instant.now()).abs().toMillis()
+            );
+            commitQueueRangeEvent(event, topLeft, bottomRight, topLeftBlock.getY(), units, kept);
+            return;
+        }
+
+        // Calculate new batches, only for the chunks that are not completed yet
+        // Main biomes (full chunk work units are always recorded at y = 0)
+        final int biomeY = config.buildFullVertChunk ? 0 : topLeftBlock.getY();
+        units += queueForLevel(missingChunks(previewStorage, biomeY, PreviewStorage.FLAG_BIOME, topLeft, bottomRight, 0), topLeftBlock.getY(), 4096, RANK_BIOMES, this::workUnitFactory);
 
         // Structures
         if (config.sampleStructures && !shouldEarlyAbortQueuing) {
-            units += queueForLevel(chunks, 0, 256, (pos, y) -> new StructStartWorkUnit(sampleUtils, pos, previewData));
+            units += queueForLevel(missingChunks(previewStorage, 0, PreviewStorage.FLAG_STRUCT_START, topLeft, bottomRight, 0), 0, 256, RANK_STRUCTURES, (pos, y) -> new StructStartWorkUnit(sampleUtils, pos, previewData));
         }
 
         // Height map
-        if (config.sampleHeightmap && !shouldEarlyAbortQueuing && sampleUtils.noiseGeneratorSettings() != null) {
-            LongSet queuedChunks = new LongOpenHashSet(chunks.size());
-            List<ChunkPos> heightMapChunks = new ArrayList<>(chunks.size());
-            final int sectionSizeExponent = PreviewSection.SHIFT - PreviewSection.QUART_TO_SECTION_SHIFT;
-            final int numChunks = PreviewSection.SECTION_SIZE >> (sectionSizeExponent - 4);
-            for (ChunkPos c : chunks) {
-                ChunkPos shifted = new ChunkPos((c.x >> 4) << 4, (c.z >> 4) << 4);
-                if (queuedChunks.add(shifted.toLong())) {
-                    heightMapChunks.add(shifted);
-                }
-            }
-            units += queueForLevel(heightMapChunks, 0, 1, (pos, y) -> new HeightmapWorkUnit(chunkSampler, sampleUtils, pos, numChunks, previewData));
+        final int sectionSizeExponent = PreviewSection.SHIFT - PreviewSection.QUART_TO_SECTION_SHIFT;
+        final int numChunks = PreviewSection.SECTION_SIZE >> (sectionSizeExponent - 4);
+        final boolean fuseTerrain = config.sampleHeightmap && config.sampleIntersections && sampleUtils.noiseGeneratorSettings() != null;
+        if (fuseTerrain && !shouldEarlyAbortQueuing) {
+            // Both layers from one noise chunk, for every chunk that misses either of them
+            final LongSet terrainChunks = new LongOpenHashSet(missingChunks(previewStorage, 0, PreviewStorage.FLAG_HEIGHT, topLeft, bottomRight, 4));
+            terrainChunks.addAll(missingChunks(previewStorage, 0, PreviewStorage.FLAG_INTERSECT, topLeft, bottomRight, 4));
+            units += queueForLevel(new LongArrayList(terrainChunks), 0, 1, RANK_TERRAIN, (pos, y) -> new TerrainColumnWorkUnit(chunkSampler, sampleUtils, pos, numChunks, previewData, Y_BLOCK_STRIDE));
+        } else if (config.sampleHeightmap && !shouldEarlyAbortQueuing && sampleUtils.noiseGeneratorSettings() != null) {
+            final LongList heightMapChunks = missingChunks(previewStorage, 0, PreviewStorage.FLAG_HEIGHT, topLeft, bottomRight, 4);
+            units += queueForLevel(heightMapChunks, 0, 1, RANK_TERRAIN, (pos, y) -> new HeightmapWorkUnit(chunkSampler, sampleUtils, pos, numChunks, previewData));
         } else if (config.sampleHeightmap && !shouldEarlyAbortQueuing) {
-            units += queueForLevel(chunks, 0, 64, (pos, y) -> new SlowHeightmapWorkUnit(chunkSampler, sampleUtils, pos, previewData));
-        }
-
-        // Intersections
-        if (config.sampleIntersections && !shouldEarlyAbortQueuing && sampleUtils.noiseGeneratorSettings() != null) {
-            LongSet queuedChunks = new LongOpenHashSet(chunks.size());
-            List<ChunkPos> intersectChunks = new ArrayList<>(chunks.size());
-            final int sectionSizeExponent = PreviewSection.SHIFT - PreviewSection.QUART_TO_SECTION_SHIFT;
-            final int numChunks = PreviewSection.SECTION_SIZE >> (sectionSizeExponent - 4);
-            for (ChunkPos c : chunks) {
-                ChunkPos shifted = new ChunkPos((c.x >> 4) << 4, (c.z >> 4) << 4);
-                if (queuedChunks.add(shifted.toLong())) {
-                    intersectChunks.add(shifted);
-                }
-            }
-            units += queueForLevel(intersectChunks, 0, 1, (pos, y) -> new IntersectionWorkUnit(chunkSampler, sampleUtils, pos, numChunks, previewData, Y_BLOCK_STRIDE));
-        } else if (config.sampleIntersections && !shouldEarlyAbortQueuing) {
-            units += queueForLevel(chunks, 0, 64, (pos, y) -> new SlowIntersectionWorkUnit(chunkSampler, sampleUtils, pos, previewData, yMin(), yMax(), Y_BLOCK_STRIDE));
+            units += queueForLevel(missingChunks(previewStorage, 0, PreviewStorage.FLAG_HEIGHT, topLeft, bottomRight, 0), 0, 64, RANK_TERRAIN, (pos, y) -> new SlowHeightmapWorkUnit(chunkSampler, sampleUtils, pos, previewData));
+        }
+
+        // Intersections (queued with the height map when both are sampled from the noise)
+        if (!fuseTerrain && config.sampleIntersections && !shouldEarlyAbortQueuing && sampleUtils.noiseGeneratorSettings() != null) {
+            final LongList intersectChunks = missingChunks(previewStorage, 0, PreviewStorage.FLAG_INTERSECT, topLeft, bottomRight, 4);
+            units += queueForLevel(intersectChunks, 0, 1, RANK_TERRAIN, (pos, y) -> new IntersectionWorkUnit(chunkSampler, sampleUtils, pos, numChunks, previewData, Y_BLOCK_STRIDE));
+        } else if (!fuseTerrain && config.sampleIntersections && !shouldEarlyAbortQueuing) {
+            units += queueForLevel(missingChunks(previewStorage, 0, PreviewStorage.FLAG_INTERSECT, topLeft, bottomRight, 0), 0, 64, RANK_TERRAIN, (pos, y) -> new SlowIntersectionWorkUnit(chunkSampler, sampleUtils, pos, previewData, yMin(), yMax(), Y_BLOCK_STRIDE));
         }
 
         // Now sample adjacent levels
@@ -337,7 +386,8 @@ public class WorkManager {
                 if (shouldEarlyAbortQueuing) {
                     break;
                 }
-                units += queueForLevel(chunks, y, 4096, this::workUnitFactory);
+                final int rank = RANK_ADJACENT_Y + Math.abs(y - topLeftBlock.getY()) / Y_BLOCK_STRIDE;
+                units += queueForLevel(missingChunks(previewStorage, y, PreviewStorage.FLAG_BIOME, topLeft, bottomRight, 0), y, 4096, rank, this::workUnitFactory);
             }
         }
 
@@ -350,12 +400,113 @@ public class WorkManager {
 
         final Instant end = Instant.now();
         LOGGER.info(
-                "Queued {} chunks for generation using {} batches [{} ms] {}",
+                "Queued {} chunks for generation ({} still in flight) using {} batches [{} ms] {}",
                 units,
+                kept,
                 currentBatches.size(),
                 Duration.between(start, end).abs().toMillis(),
                 shouldEarlyAbortQueuing ? "{early abort}" : ""
         );
+        commitQueueRangeEvent(event, topLeft, bottomRight, topLeftBlock.getY(), units, kept);
+    }
+
+    private void commitQueueRangeEvent(QueueRangeEvent event, ChunkPos topLeft, ChunkPos bottomRight, int y, int units, int kept) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.minChunkX = topLeft.x;
+        event.minChunkZ = topLeft.z;
+        event.maxChunkX = bottomRight.x;
+        event.maxChunkZ = bottomRight.z;
+        event.y = y;
+        event.lodLevel = renderSettings.lodLevel();
+        event.queued = units;
+        event.kept = kept;
+        event.earlyAbort = shouldEarlyAbortQueuing;
+        event.commit();
+    }
+
+    /**
+     * Cancels all queued work units that are outside the new range or that are on a layer that is no
+     * longer sampled (or sampled with a different rank). All other units are kept and recorded in
+     * {@link #inFlight}, so that they are not queued a second time.
+     *
+     * @return the number of kept work units
+     */
+    private int cancelOutdatedWork(ChunkPos topLeft, ChunkPos bottomRight, int currentY) {
+        int kept = 0;
+        inFlight.clear();
+        synchronized (currentBatches) {
+            for (Iterator<WorkBatch> iter = currentBatches.iterator(); iter.hasNext(); ) {
+                final WorkBatch batch = iter.next();
+                if (batch.isFinished() || batch.isCanceled()) {
+                    iter.remove();
+                    continue;
+                }
+
+                int active = 0;
+                for (WorkUnit unit : batch.workUnits) {
+                    if (unit.isCanceled()) {
+                        continue;
+                    }
+                    if (!isInRange(unit, topLeft, bottomRight) || wantedRank(unit, currentY) != batch.rank()) {
+                        unit.cancel();
+                        continue;
+                    }
+                    inFlight.computeIfAbsent(layerKey(unit), x -> new LongOpenHashSet()).add(unit.chunk().toLong());
+                    ++active;
+                }
+
+                if (active == 0) {
+                    batch.cancel();
+                    iter.remove();
+                }
+                kept += active;
+            }
+        }
+        return kept;
+    }
+
+    private static boolean isInRange(WorkUnit unit, ChunkPos topLeft, ChunkPos bottomRight) {
+        final ChunkPos pos = unit.chunk();
+        final int span = unit.chunkSpan();
+        return pos.x + span > topLeft.x && pos.x <= bottomRight.x && pos.z + span > topLeft.z && pos.z <= bottomRight.z;
+    }
+
+    /**
+     * The rank a work unit would be queued with for the current settings or -1 if it would not be queued at all.
+     */
+    private int wantedRank(WorkUnit unit, int currentY) {
+        final long flags = unit.flags();
+        if (renderSettings.lodLevel() > 0 || unit.lodLevel() > 0) {
+            // Only the current level is sampled while zoomed out
+            return unit.lodLevel() == renderSettings.lodLevel() && unit.y() == currentY ? RANK_BIOMES : -1;
+        } else if (flags == PreviewStorage.FLAG_BIOME) {
+            if (config.buildFullVertChunk) {
+                return unit instanceof FullChunkWorkUnit ? RANK_BIOMES : -1;
+            } else if (unit instanceof FullChunkWorkUnit) {
+                return -1;
+            } else if (unit.y() == currentY) {
+                return RANK_BIOMES;
+            } else if (config.backgroundSampleVertChunk) {
+                return RANK_ADJACENT_Y + Math.abs(unit.y() - currentY) / Y_BLOCK_STRIDE;
+            }
+            return -1;
+        } else if (flags == PreviewStorage.FLAG_STRUCT_START) {
+            return config.sampleStructures ? RANK_STRUCTURES : -1;
+        } else if (unit instanceof TerrainColumnWorkUnit) {
+            return config.sampleHeightmap && config.sampleIntersections ? RANK_TERRAIN : -1;
+        } else if (flags == PreviewStorage.FLAG_HEIGHT) {
+            return config.sampleHeightmap ? RANK_TERRAIN : -1;
+        } else if (flags == PreviewStorage.FLAG_INTERSECT) {
+            return config.sampleIntersections ? RANK_TERRAIN : -1;
+        }
+        return -1;
+    }
+
+    private static long layerKey(WorkUnit unit) {
+        return ((long) unit.y() << (PreviewStorage.FLAG_BITS + LOD_BITS)) | ((long) unit.lodLevel() << PreviewStorage.FLAG_BITS) | unit.flags();
     }
 
     private WorkUnit workUnitFactory(ChunkPos pos, int y) {
@@ -366,29 +517,67 @@ public class WorkManager {
         }
     }
 
-    private int queueForLevel(List<ChunkPos> chunks, int y, int maxBatchSize, BiFunction<ChunkPos, Integer, WorkUnit> workUnitFactoryFunc) {
+    /**
+     * The chunks in the rectangle that are not completed on the layer {@code (y, flags)} of {@code storage}, see
+     * {@link PreviewCompletionIndex}. No sections or work units are created for completed chunks.
+     *
+     * @param alignShift only return chunks whose coordinates are multiples of {@code 1 << alignShift}, for work
+     *                   units that span multiple chunks
+     */
+    private static LongList missingChunks(PreviewStorage storage, int y, long flags, ChunkPos topLeft, ChunkPos bottomRight, int alignShift) {
+        final PreviewCompletionIndex completion = storage.completion();
+        final LongArrayList res = new LongArrayList();
+        if (alignShift == 0) {
+            completion.collectMissing(y, flags, topLeft.x, topLeft.z, bottomRight.x, bottomRight.z, res);
+            return res;
+        }
+
+        final int step = 1 << alignShift;
+        for (int x = (topLeft.x >> alignShift) << alignShift; x <= bottomRight.x; x += step) {
+            for (int z = (topLeft.z >> alignShift) << alignShift; z <= bottomRight.z; z += step) {
+                if (!completion.isCompleted(y, flags, x, z)) {
+                    res.add(ChunkPos.asLong(x, z));
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param chunks the chunks to queue (see {@link ChunkPos#toLong()}), usually from {@link #missingChunks}
+     */
+    private int queueForLevel(LongList chunks, int y, int maxBatchSize, int rank, BiFunction<ChunkPos, Integer, WorkUnit> workUnitFactoryFunc) {
         WorkUnit[] toQueue = new WorkUnit[chunks.size()];
         int size = 0;
-        synchronized (completedSynchro) {
-            for (ChunkPos chunkPos : chunks) {
-                WorkUnit workUnit = workUnitFactoryFunc.apply(chunkPos, y);
-                if (workUnit.isCompleted()) {
-                    continue;
-                }
-                toQueue[size++] = workUnit;
+        for (int i = 0; i < chunks.size(); ++i) {
+            WorkUnit workUnit = workUnitFactoryFunc.apply(new ChunkPos(chunks.getLong(i)), y);
+            // The index may not know the completions of sections loaded from the cache yet
+            if (!workUnit.isLoaded() || workUnit.isCompleted()) {
+                continue;
             }
+            final LongSet queued = inFlight.get(layerKey(workUnit));
+            if (queued != null && queued.contains(workUnit.chunk().toLong())) {
+                continue;
+            }
+            toQueue[size++] = workUnit;
         }
 
         if (size == 0) {
             return 0;
         }
 
-        // Add some randomness
-        for (int i = size - 1; i > 1; --i) {
-            int randomIndexToSwap = random.nextInt(size);
-            WorkUnit temp = toQueue[randomIndexToSwap];
-            toQueue[randomIndexToSwap] = toQueue[i];
-            toQueue[i] = temp;
+        if (config.prioritizeCenter) {
+            // Closest first, so that each batch only covers a narrow ring around the center
+            final ChunkPos center = workExecutor.center();
+            Arrays.sort(toQueue, 0, size, Comparator.comparingLong(x -> PriorityWorkExecutor.distanceSqr(x, center)));
+        } else {
+            // Add some randomness
+            for (int i = size - 1; i > 1; --i) {
+                int randomIndexToSwap = random.nextInt(size);
+                WorkUnit temp = toQueue[randomIndexToSwap];
+                toQueue[randomIndexToSwap] = toQueue[i];
+                toQueue[i] = temp;
+            }
         }
 
         // Batch to reduce threading overhead
@@ -396,23 +585,23 @@ public class WorkManager {
         WorkBatch[] batches = new WorkBatch[batchSize == 1 ? size : (size / batchSize) + 1];
         if (batchSize > 1) {
             int batchIdx = 0;
-            batches[batchIdx] = new WorkBatch(new ArrayList<>(batchSize), completedSynchro, previewData);
+            batches[batchIdx] = new WorkBatch(new ArrayList<>(batchSize), previewData, rank);
             for (int i = 0; i < size; ++i) {
                 batches[batchIdx].workUnits.add(toQueue[i]);
                 if (batches[batchIdx].workUnits.size() >= batchSize) {
-                    batches[++batchIdx] = new WorkBatch(new ArrayList<>(batchSize), completedSynchro, previewData);
+                    batches[++batchIdx] = new WorkBatch(new ArrayList<>(batchSize), previewData, rank);
                 }
             }
         } else {
             for (int i = 0; i < size; ++i) {
-                batches[i] = new WorkBatch(List.of(toQueue[i]), completedSynchro, previewData);
+                batches[i] = new WorkBatch(List.of(toQueue[i]), previewData, rank);
             }
         }
 
         // Submit and store
         synchronized (futures) {
             for (WorkBatch batch : batches) {
-                futures.add(executorService.submit(batch::process));
+                futures.add(workExecutor.submit(batch));
             }
         }
         synchronized (currentBatches) {
@@ -459,7 +648,31 @@ public class WorkManager {
     }
 
     public boolean isSetup() {
-        return executorService != null;
+        return workExecutor != null;
+    }
+
+    /**
+     * Blocks until all work that is currently queued is finished (or canceled)
+     */
+    public void awaitWork() throws InterruptedException, ExecutionException {
+        final List<Future<?>> allFutures;
+        synchronized (futures) {
+            allFutures = new ArrayList<>(futures);
+        }
+        for (Future<?> f : allFutures) {
+            f.get();
+        }
+    }
+
+    public @Nullable WorkListener workListener() {
+        return workListener;
+    }
+
+    /**
+     * @param workListener receives the timings of all work units from now on, {@code null} to stop
+     */
+    public void setWorkListener(@Nullable WorkListener workListener) {
+        this.workListener = workListener;
     }
 
     public WorldPreviewConfig config() {
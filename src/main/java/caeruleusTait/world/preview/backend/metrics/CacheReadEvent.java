@@ -0,0 +1,31 @@
+package caeruleusTait.world.preview.backend.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Reading the index of a cache file and its journal, or reading a single section back from them
+ */
+@Name(CacheReadEvent.NAME)
+@Label("Cache Read")
+@Category({"World Preview", "Cache"})
+@Description("Reads preview data from the cache files")
+@StackTrace(false)
+public class CacheReadEvent extends Event {
+    public static final String NAME = "world_preview.CacheRead";
+
+    @Label("File")
+    public String file;
+
+    @Label("Sections")
+    public int sections;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
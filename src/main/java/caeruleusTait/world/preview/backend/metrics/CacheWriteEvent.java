@@ -0,0 +1,35 @@
+package caeruleusTait.world.preview.backend.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Appending the changed sections to a journal, or writing a whole cache file
+ */
+@Name(CacheWriteEvent.NAME)
+@Label("Cache Write")
+@Category({"World Preview", "Cache"})
+@Description("Writes preview data to the cache files")
+@StackTrace(false)
+public class CacheWriteEvent extends Event {
+    public static final String NAME = "world_preview.CacheWrite";
+
+    @Label("File")
+    public String file;
+
+    @Label("Sections")
+    public int sections;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Journal")
+    @Description("Whether the sections were appended to the journal instead of writing a whole cache file")
+    public boolean journal;
+}
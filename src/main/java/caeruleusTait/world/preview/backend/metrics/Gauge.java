@@ -0,0 +1,16 @@
+package caeruleusTait.world.preview.backend.metrics;
+
+/**
+ * The last value of something that is measured periodically, like the memory used by the storage
+ */
+public class Gauge {
+    private volatile long value;
+
+    public void set(long value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return value;
+    }
+}
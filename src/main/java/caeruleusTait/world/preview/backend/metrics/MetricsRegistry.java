@@ -0,0 +1,80 @@
+package caeruleusTait.world.preview.backend.metrics;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * All metrics of the mod by name. Metrics are created on first use and live until the game is closed.
+ * <p>
+ * Look up metrics once and keep them in a field (see {@link PreviewMetrics}), the lookup is not meant for hot
+ * paths. The values can be written to a JSON file with {@link #dump(Path)}.
+ */
+public class MetricsRegistry {
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Gauge> GAUGES = new ConcurrentSkipListMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    private static volatile long resetNanos = System.nanoTime();
+
+    private MetricsRegistry() {
+    }
+
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, x -> new Counter());
+    }
+
+    public static Gauge gauge(String name) {
+        return GAUGES.computeIfAbsent(name, x -> new Gauge());
+    }
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, x -> new Histogram());
+    }
+
+    /**
+     * Sets all counters and histograms back to zero. Gauges keep their last value.
+     */
+    public static void reset() {
+        COUNTERS.values().forEach(Counter::reset);
+        HISTOGRAMS.values().forEach(Histogram::reset);
+        resetNanos = System.nanoTime();
+    }
+
+    /**
+     * Writes all metrics as JSON. Histograms are written as count, mean and percentiles in milliseconds.
+     */
+    public static void dump(Path file) throws IOException {
+        final JsonObject root = new JsonObject();
+        root.addProperty("seconds", (System.nanoTime() - resetNanos) / 1e9);
+
+        final JsonObject counters = new JsonObject();
+        COUNTERS.forEach((name, counter) -> counters.addProperty(name, counter.get()));
+        root.add("counters", counters);
+
+        final JsonObject gauges = new JsonObject();
+        GAUGES.forEach((name, gauge) -> gauges.addProperty(name, gauge.get()));
+        root.add("gauges", gauges);
+
+        final JsonObject histograms = new JsonObject();
+        HISTOGRAMS.forEach((name, histogram) -> {
+            final Histogram.Snapshot snapshot = histogram.snapshot();
+            final JsonObject entry = new JsonObject();
+            entry.addProperty("count", snapshot.count());
+            entry.addProperty("meanMs", snapshot.mean() / 1e6);
+            entry.addProperty("p50Ms", snapshot.percentile(0.5) / 1e6);
+            entry.addProperty("p90Ms", snapshot.percentile(0.9) / 1e6);
+            entry.addProperty("p99Ms", snapshot.percentile(0.99) / 1e6);
+            entry.addProperty("maxMs", snapshot.max() / 1e6);
+            histograms.add(name, entry);
+        });
+        root.add("histograms", histograms);
+
+        Files.writeString(file, new GsonBuilder().setPrettyPrinting().create().toJson(root));
+    }
+}
@@ -0,0 +1,183 @@
+package caeruleusTait.world.preview.backend.metrics;
+
+import caeruleusTait.world.preview.backend.worker.WorkUnit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static caeruleusTait.world.preview.backend.storage.PreviewStorage.*;
+
+/**
+ * The metrics of the preview, to tell whether a slow preview is bound by sampling, by the queue or by drawing.
+ * <p>
+ * All durations are in nanoseconds (see {@link Histogram}). Shown by the display when
+ * {@link caeruleusTait.world.preview.WorldPreviewConfig#showMetrics} is enabled, see {@link #overlayLines()}.
+ */
+public class PreviewMetrics {
+    /**
+     * From the creation of a batch until all of its units are done. Only for batches that were not canceled.
+     */
+    public static final Histogram BATCH_LATENCY = MetricsRegistry.histogram("batch.latency");
+
+    /**
+     * Sections that were loaded from the cache (or spilled data) vs. created empty, see
+     * {@link caeruleusTait.world.preview.backend.storage.PreviewBlock#get}
+     */
+    public static final Counter CACHE_HITS = MetricsRegistry.counter("cache.hits");
+    public static final Counter CACHE_MISSES = MetricsRegistry.counter("cache.misses");
+
+    public static final Histogram FRAME_TOTAL = MetricsRegistry.histogram("frame.total");
+    public static final Histogram FRAME_GENERATE_RENDER_DATA = MetricsRegistry.histogram("frame.generateRenderData");
+    public static final Histogram FRAME_UPDATE_TEXTURE = MetricsRegistry.histogram("frame.updateTexture");
+    public static final Histogram FRAME_UPLOAD = MetricsRegistry.histogram("frame.upload");
+
+    private static final Map<String, UnitMetrics> UNITS = new ConcurrentSkipListMap<>();
+    private static final ClassValue<UnitMetrics> UNITS_BY_CLASS = new ClassValue<>() {
+        @Override
+        protected UnitMetrics computeValue(Class<?> type) {
+            final String name = type.getSimpleName().replace("WorkUnit", "");
+            return UNITS.computeIfAbsent(name, UnitMetrics::create);
+        }
+    };
+
+    private static final long[] STORAGE_FLAGS = {
+            FLAG_BIOME, FLAG_STRUCT_START, FLAG_HEIGHT, FLAG_INTERSECT, FLAG_NOISE_TEMPERATURE, FLAG_NOISE_HUMIDITY,
+            FLAG_NOISE_CONTINENTALNESS, FLAG_NOISE_EROSION, FLAG_NOISE_DEPTH, FLAG_NOISE_WEIRDNESS
+    };
+
+    private PreviewMetrics() {
+    }
+
+    /**
+     * The metrics of one work unit type
+     */
+    public record UnitMetrics(String name, Histogram time, Histogram queued, Counter completed, Counter canceled) {
+        private static UnitMetrics create(String name) {
+            final String prefix = "work." + name + ".";
+            return new UnitMetrics(
+                    name,
+                    MetricsRegistry.histogram(prefix + "time"),
+                    MetricsRegistry.histogram(prefix + "wait"),
+                    MetricsRegistry.counter(prefix + "completed"),
+                    MetricsRegistry.counter(prefix + "canceled")
+            );
+        }
+    }
+
+    public static UnitMetrics unit(WorkUnit unit) {
+        return UNITS_BY_CLASS.get(unit.getClass());
+    }
+
+    public static String flagName(long flags) {
+        if (flags == FLAG_BIOME) {
+            return "biome";
+        } else if (flags == FLAG_STRUCT_START) {
+            return "structStart";
+        } else if (flags == FLAG_HEIGHT) {
+            return "height";
+        } else if (flags == FLAG_INTERSECT) {
+            return "intersect";
+        } else if (flags == FLAG_NOISE_TEMPERATURE) {
+            return "noiseTemperature";
+        } else if (flags == FLAG_NOISE_HUMIDITY) {
+            return "noiseHumidity";
+        } else if (flags == FLAG_NOISE_CONTINENTALNESS) {
+            return "noiseContinentalness";
+        } else if (flags == FLAG_NOISE_EROSION) {
+            return "noiseErosion";
+        } else if (flags == FLAG_NOISE_DEPTH) {
+            return "noiseDepth";
+        } else if (flags == FLAG_NOISE_WEIRDNESS) {
+            return "noiseWeirdness";
+        }
+        return "flag" + flags;
+    }
+
+    /**
+     * @param bytesByFlags the estimated memory of all sections, indexed by their flags
+     */
+    public static void storageBytes(long[] bytesByFlags) {
+        for (long flags : STORAGE_FLAGS) {
+            MetricsRegistry.gauge("storage.bytes." + flagName(flags)).set(bytesByFlags[(int) flags]);
+        }
+    }
+
+    /**
+     * Writes all metrics to a new file in {@code dir} and resets them, so that the next dump only covers
+     * the time since this one.
+     *
+     * @return the written file
+     */
+    public static Path dump(Path dir) throws IOException {
+        final String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH.mm.ss"));
+        final Path file = dir.resolve("metrics-" + timestamp + ".json");
+        MetricsRegistry.dump(file);
+        MetricsRegistry.reset();
+        return file;
+    }
+
+    /**
+     * A short summary of the metrics for the display, one line per metric group
+     */
+    public static List<String> overlayLines() {
+        final List<String> res = new ArrayList<>();
+
+        res.add(String.format(
+                "Frame p50 %.1f ms: render data %.1f, texture %.1f, upload %.1f",
+                millis(FRAME_TOTAL.snapshot().percentile(0.5)),
+                millis(FRAME_GENERATE_RENDER_DATA.snapshot().percentile(0.5)),
+                millis(FRAME_UPDATE_TEXTURE.snapshot().percentile(0.5)),
+                millis(FRAME_UPLOAD.snapshot().percentile(0.5))
+        ));
+
+        final Histogram.Snapshot batches = BATCH_LATENCY.snapshot();
+        res.add(String.format(
+                "Batches %d: latency p50 %.0f ms, p99 %.0f ms",
+                batches.count(),
+                millis(batches.percentile(0.5)),
+                millis(batches.percentile(0.99))
+        ));
+
+        for (UnitMetrics unit : UNITS.values()) {
+            final Histogram.Snapshot time = unit.time().snapshot();
+            if (time.count() == 0 && unit.canceled().get() == 0) {
+                continue;
+            }
+            final Histogram.Snapshot wait = unit.queued().snapshot();
+            res.add(String.format(
+                    "%s: %d done, %d canceled, work p50 %.1f / p99 %.1f ms, wait p50 %.0f ms",
+                    unit.name(),
+                    unit.completed().get(),
+                    unit.canceled().get(),
+                    millis(time.percentile(0.5)),
+                    millis(time.percentile(0.99)),
+                    millis(wait.percentile(0.5))
+            ));
+        }
+
+        final long hits = CACHE_HITS.get();
+        final long total = hits + CACHE_MISSES.get();
+        res.add(String.format("Cache hits: %.0f%% of %d sections", total == 0 ? 0.0 : 100.0 * hits / total, total));
+
+        final StringBuilder storage = new StringBuilder("Storage:");
+        for (long flags : STORAGE_FLAGS) {
+            final long bytes = MetricsRegistry.gauge("storage.bytes." + flagName(flags)).get();
+            if (bytes > 0) {
+                storage.append(String.format(" %s %.1f MiB", flagName(flags), bytes / (double) (1 << 20)));
+            }
+        }
+        res.add(storage.toString());
+
+        return res;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,50 @@
+package caeruleusTait.world.preview.backend.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A run of {@link caeruleusTait.world.preview.backend.WorkManager#queueRangeReal}, which cancels the outdated
+ * work and queues the missing chunks of the visible range.
+ */
+@Name(QueueRangeEvent.NAME)
+@Label("Queue Range")
+@Category({"World Preview", "Sampling"})
+@Description("Queues the work units for the visible range of the preview")
+@StackTrace(false)
+public class QueueRangeEvent extends Event {
+    public static final String NAME = "world_preview.QueueRange";
+
+    @Label("Min Chunk X")
+    public int minChunkX;
+
+    @Label("Min Chunk Z")
+    public int minChunkZ;
+
+    @Label("Max Chunk X")
+    public int maxChunkX;
+
+    @Label("Max Chunk Z")
+    public int maxChunkZ;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Level of Detail")
+    public int lodLevel;
+
+    @Label("Queued Units")
+    public int queued;
+
+    @Label("Units in Flight")
+    @Description("Work units of earlier runs that were kept because they are still in range")
+    public int kept;
+
+    @Label("Early Abort")
+    @Description("Queuing stopped early because the range changed again")
+    public boolean earlyAbort;
+}
@@ -0,0 +1,43 @@
+package caeruleusTait.world.preview.backend.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A single run of {@link caeruleusTait.world.preview.backend.worker.WorkUnit#work()}. The duration of the event
+ * is the time spent sampling.
+ */
+@Name(WorkUnitEvent.NAME)
+@Label("Work Unit")
+@Category({"World Preview", "Sampling"})
+@Description("Samples one chunk (or a column of chunks) of the preview")
+@StackTrace(false)
+public class WorkUnitEvent extends Event {
+    public static final String NAME = "world_preview.WorkUnit";
+
+    @Label("Type")
+    public String type;
+
+    @Label("Chunk X")
+    public int chunkX;
+
+    @Label("Chunk Z")
+    public int chunkZ;
+
+    @Label("Y")
+    public int y;
+
+    @Label("Queued")
+    @Description("Time between the creation of the work unit and the start of the sampling")
+    @Timespan
+    public long queued;
+
+    @Label("Canceled")
+    @Description("The results were discarded because the work unit left the queued range")
+    public boolean canceled;
+}
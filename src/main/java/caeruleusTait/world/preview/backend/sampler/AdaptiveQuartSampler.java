@@ -0,0 +1,94 @@
+package caeruleusTait.world.preview.backend.sampler;
+
+import caeruleusTait.world.preview.backend.worker.WorkResult;
+import caeruleusTait.world.preview.backend.worker.WorkerScratch;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.QuartPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.Arrays;
+
+/**
+ * Full resolution sampler that skips uniform areas.
+ * <p>
+ * The corners of the chunk are sampled first. If they are all equal, the entire chunk is filled with
+ * that value. Otherwise, the chunk is split into quadrants, which are handled the same way, until the
+ * full resolution is reached. Thus, all quarts next to a detected boundary are sampled exactly, but
+ * small features that do not touch any corner of a uniform area may be missed.
+ * <p>
+ * Positions that are not sampled by {@link #sampleChunk} are treated exactly like {@link FullQuartSampler}.
+ */
+public class AdaptiveQuartSampler extends FullQuartSampler {
+    private static final int QUARTS = SectionPos.SECTION_SIZE / QuartPos.SIZE;
+
+    @Override
+    public boolean isAdaptive() {
+        return true;
+    }
+
+    @Override
+    public void sampleChunk(ChunkPos chunkPos, int y, WorkerScratch scratch, RawSampler rawSampler, WorkResult result) {
+        final short[] known = scratch.chunkSamples;
+        Arrays.fill(known, Short.MIN_VALUE);
+        refine(chunkPos, y, 0, 0, QUARTS, known, scratch.mutableBlockPos, rawSampler, result);
+    }
+
+    private void refine(
+            ChunkPos chunkPos,
+            int y,
+            int x,
+            int z,
+            int size,
+            short[] known,
+            BlockPos.MutableBlockPos pos,
+            RawSampler rawSampler,
+            WorkResult result
+    ) {
+        final int last = size - 1;
+        final short v00 = sample(chunkPos, y, x, z, known, pos, rawSampler);
+        final short v10 = sample(chunkPos, y, x + last, z, known, pos, rawSampler);
+        final short v01 = sample(chunkPos, y, x, z + last, known, pos, rawSampler);
+        final short v11 = sample(chunkPos, y, x + last, z + last, known, pos, rawSampler);
+
+        if (v00 == v10 && v00 == v01 && v00 == v11) {
+            result.values().fill(QuartPos.fromSection(chunkPos.x) + x, QuartPos.fromSection(chunkPos.z) + z, size, v00);
+            return;
+        }
+
+        if (size <= 2) {
+            // All quarts are corners, so they are already sampled
+            result.values().set(QuartPos.fromSection(chunkPos.x) + x, QuartPos.fromSection(chunkPos.z) + z, v00);
+            result.values().set(QuartPos.fromSection(chunkPos.x) + x + last, QuartPos.fromSection(chunkPos.z) + z, v10);
+            result.values().set(QuartPos.fromSection(chunkPos.x) + x, QuartPos.fromSection(chunkPos.z) + z + last, v01);
+            result.values().set(QuartPos.fromSection(chunkPos.x) + x + last, QuartPos.fromSection(chunkPos.z) + z + last, v11);
+            return;
+        }
+
+        final int half = size / 2;
+        refine(chunkPos, y, x, z, half, known, pos, rawSampler, result);
+        refine(chunkPos, y, x + half, z, half, known, pos, rawSampler, result);
+        refine(chunkPos, y, x, z + half, half, known, pos, rawSampler, result);
+        refine(chunkPos, y, x + half, z + half, half, known, pos, rawSampler, result);
+    }
+
+    private static short sample(
+            ChunkPos chunkPos,
+            int y,
+            int x,
+            int z,
+            short[] known,
+            BlockPos.MutableBlockPos pos,
+            RawSampler rawSampler
+    ) {
+        final int idx = x * QUARTS + z;
+        if (known[idx] == Short.MIN_VALUE) {
+            known[idx] = rawSampler.sample(pos.set(
+                    SectionPos.sectionToBlockCoord(chunkPos.x, QuartPos.toBlock(x)),
+                    y,
+                    SectionPos.sectionToBlockCoord(chunkPos.z, QuartPos.toBlock(z))
+            ));
+        }
+        return known[idx];
+    }
+}
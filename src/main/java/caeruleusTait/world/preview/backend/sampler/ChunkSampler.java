@@ -1,6 +1,7 @@
 package caeruleusTait.world.preview.backend.sampler;
 
 import caeruleusTait.world.preview.backend.worker.WorkResult;
+import caeruleusTait.world.preview.backend.worker.WorkerScratch;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.ChunkPos;
 
@@ -12,4 +13,29 @@ public interface ChunkSampler {
     void expandRaw(BlockPos pos, short raw, WorkResult result);
 
     int blockStride();
+
+    /**
+     * Samples a chunk and stores the values in {@code result}. By default, all positions of
+     * {@link #blocksForChunk(ChunkPos, int)} are sampled. Samplers may skip positions whose value can be
+     * inferred from other samples, so only use this for layers with discrete values (like biomes).
+     * {@code rawSampler} must not keep the positions, they may be reused.
+     */
+    default void sampleChunk(ChunkPos chunkPos, int y, WorkerScratch scratch, RawSampler rawSampler, WorkResult result) {
+        for (BlockPos p : blocksForChunk(chunkPos, y)) {
+            expandRaw(p, rawSampler.sample(p), result);
+        }
+    }
+
+    /**
+     * {@code true} if {@link #sampleChunk(ChunkPos, int, WorkerScratch, RawSampler, WorkResult)} decides which positions to
+     * sample based on previous samples. Such samplers can not sample all positions in one batch.
+     */
+    default boolean isAdaptive() {
+        return false;
+    }
+
+    @FunctionalInterface
+    interface RawSampler {
+        short sample(BlockPos pos);
+    }
 }
@@ -30,7 +30,7 @@ public class FullQuartSampler implements ChunkSampler {
     public void expandRaw(BlockPos pos, short raw, WorkResult result) {
         final int quartX = QuartPos.fromBlock(pos.getX());
         final int quartZ = QuartPos.fromBlock(pos.getZ());
-        result.results().add(new WorkResult.BlockResult(quartX, quartZ, raw));
+        result.values().set(quartX, quartZ, raw);
     }
 
     @Override
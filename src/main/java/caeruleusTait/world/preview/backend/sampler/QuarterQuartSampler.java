@@ -30,10 +30,7 @@ public class QuarterQuartSampler implements ChunkSampler {
     public void expandRaw(BlockPos pos, short raw, WorkResult result) {
         final int quartX = QuartPos.fromBlock(pos.getX());
         final int quartZ = QuartPos.fromBlock(pos.getZ());
-        result.results().add(new WorkResult.BlockResult(quartX + 0, quartZ + 0, raw));
-        result.results().add(new WorkResult.BlockResult(quartX + 0, quartZ + 1, raw));
-        result.results().add(new WorkResult.BlockResult(quartX + 1, quartZ + 0, raw));
-        result.results().add(new WorkResult.BlockResult(quartX + 1, quartZ + 1, raw));
+        result.values().fill(quartX, quartZ, 2, raw);
     }
 
     @Override
@@ -21,12 +21,7 @@ public class SingleQuartSampler implements ChunkSampler {
     public void expandRaw(BlockPos pos, short raw, WorkResult result) {
         final int quartX = QuartPos.fromBlock(pos.getX());
         final int quartZ = QuartPos.fromBlock(pos.getZ());
-
-        for (int x = 0; x < 16 / QuartPos.SIZE; x++) {
-            for (int z = 0; z < 16 / QuartPos.SIZE; z++) {
-                result.results().add(new WorkResult.BlockResult(quartX + x, quartZ + z, raw));
-            }
-        }
+        result.values().fill(quartX, quartZ, 16 / QuartPos.SIZE, raw);
     }
 
     @Override
@@ -1,45 +1,208 @@
 package caeruleusTait.world.preview.backend.storage;
 
 import caeruleusTait.world.preview.WorldPreview;
+import caeruleusTait.world.preview.WorldPreviewConfig;
+import caeruleusTait.world.preview.backend.metrics.PreviewMetrics;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.Serial;
-import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Arrays;
 
 import static caeruleusTait.world.preview.backend.storage.PreviewStorage.FLAG_HEIGHT;
 import static caeruleusTait.world.preview.backend.storage.PreviewStorage.FLAG_STRUCT_START;
 
-public class PreviewBlock implements Serializable {
-
-    @Serial
-    private static final long serialVersionUID = -6140310220242894115L;
+public class PreviewBlock {
 
     public static final int PREVIEW_BLOCK_SHIFT = 5;
     public static final int PREVIEW_BLOCK_SIZE = 1 << PREVIEW_BLOCK_SHIFT;
     public static final int PREVIEW_BLOCK_MASK = 0b11111;
 
+    private static final VarHandle SECTIONS = MethodHandles.arrayElementVarHandle(PreviewSection[].class);
+
     private final long flags;
+    private final int quartStride;
     private final PreviewSection[] sections = new PreviewSection[PREVIEW_BLOCK_SIZE * PREVIEW_BLOCK_SIZE];
 
-    public PreviewBlock(long flags) {
+    /**
+     * The sections that are stored in the cache file and loaded on first access. Set later by
+     * {@link #attach(PreviewCacheFile.StoredBlock)} if the cache file is loaded in the background.
+     */
+    private volatile @Nullable PreviewCacheFile.StoredBlock stored;
+
+    /**
+     * The slab of the off-heap sections and the slot of each section in {@link #sections} ({@code -1} if none).
+     * Both are {@code null} if the sections are on the heap. Slots are freed explicitly, since the section objects
+     * may still be referenced after they were removed.
+     */
+    private final @Nullable PreviewSectionSlab slab;
+    private final int @Nullable [] slots;
+
+    public PreviewBlock(long flags, int quartStride) {
+        this(flags, quartStride, null);
+    }
+
+    public PreviewBlock(long flags, int quartStride, @Nullable PreviewCacheFile.StoredBlock stored) {
         this.flags = flags;
+        this.quartStride = quartStride;
+        this.stored = stored;
+
+        // Compressed sections are usually smaller than a slot, so they are kept on the heap
+        final WorldPreviewConfig cfg = WorldPreview.get().cfg();
+        if (cfg.offHeapSections && !cfg.enableCompression && flags != FLAG_STRUCT_START) {
+            this.slab = PreviewSectionOffHeap.slabFor(quartStride);
+            this.slots = new int[sections.length];
+            Arrays.fill(slots, -1);
+        } else {
+            this.slab = null;
+            this.slots = null;
+        }
+    }
+
+    public static int sectionIndex(int quartX, int quartZ) {
+        return (((quartX >> PreviewSection.SHIFT) & PREVIEW_BLOCK_MASK) * PREVIEW_BLOCK_SIZE) + ((quartZ >> PreviewSection.SHIFT) & PREVIEW_BLOCK_MASK);
     }
 
-    public synchronized @NotNull PreviewSection get(int quartX, int quartZ) {
-        final int idx = (((quartX >> PreviewSection.SHIFT) & PREVIEW_BLOCK_MASK) * PREVIEW_BLOCK_SIZE) + ((quartZ >> PreviewSection.SHIFT) & PREVIEW_BLOCK_MASK);
-        PreviewSection section = sections[idx];
+    /**
+     * Lock-free. When two threads create the same section at once, only one of them is kept.
+     */
+    public @NotNull PreviewSection get(int quartX, int quartZ) {
+        final int idx = sectionIndex(quartX, quartZ);
+        PreviewSection section = (PreviewSection) SECTIONS.getAcquire(sections, idx);
         if (section == null) {
-            section = sections[idx] = sectionFactory(quartX, quartZ);
+            final PreviewCacheFile.StoredBlock storedBefore = stored;
+            PreviewSection created = storedBefore == null ? null : storedBefore.load(this, idx);
+            if (created == null) {
+                created = newSection(quartX, quartZ);
+                PreviewMetrics.CACHE_MISSES.increment();
+            } else {
+                PreviewMetrics.CACHE_HITS.increment();
+            }
+            section = (PreviewSection) SECTIONS.compareAndExchange(sections, idx, null, created);
+            if (section != null) {
+                free(created);
+            } else {
+                section = created;
+                if (slots != null) {
+                    slots[idx] = ((PreviewSectionOffHeap) created).slot();
+                }
+                // attach() may have missed the new section
+                final PreviewCacheFile.StoredBlock storedAfter = stored;
+                if (storedAfter != storedBefore) {
+                    mergeStored(section, storedAfter, idx);
+                }
+            }
         }
         return section;
     }
 
-    private PreviewSection sectionFactory(int quartX, int quartZ) {
+    /**
+     * Like {@link #get}, but the section is pinned (see {@link PreviewSection#pin()})
+     */
+    @NotNull PreviewSection getPinned(int quartX, int quartZ) {
+        while (true) {
+            final PreviewSection section = get(quartX, quartZ);
+            if (section.pin()) {
+                return section;
+            }
+            // Evicted, but not removed from the block yet
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Adds the sections of the cache file to this block after it was created. Sections that were created in
+     * the meantime are merged with the stored ones.
+     */
+    void attach(PreviewCacheFile.StoredBlock stored) {
+        final PreviewCacheFile.StoredBlock current = this.stored;
+        if (current != null) {
+            // Sections that were evicted in the meantime are newer
+            stored.addAll(current);
+        }
+        this.stored = stored;
+        for (int i = 0; i < sections.length; ++i) {
+            final PreviewSection section = (PreviewSection) SECTIONS.getAcquire(sections, i);
+            if (section != null) {
+                mergeStored(section, stored, i);
+            }
+        }
+    }
+
+    /**
+     * Removes a section from memory, so that it is loaded from {@link #stored} again on the next access. The
+     * section must be marked with {@link PreviewSection#markEvicted()} first.
+     *
+     * @return {@code false} if the section was replaced concurrently
+     */
+    boolean evict(int idx, PreviewSection section) {
+        if (!SECTIONS.compareAndSet(sections, idx, section, null)) {
+            return false;
+        }
+        free(section);
+        if (slots != null) {
+            slots[idx] = -1;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the slots of all off-heap sections to their slab. The block must not be used afterward.
+     */
+    void freeSlots() {
+        if (slots == null) {
+            return;
+        }
+        for (int idx = 0; idx < slots.length; ++idx) {
+            if (slots[idx] != -1) {
+                slab.release(slots[idx]);
+                slots[idx] = -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of a section that is not in {@link #sections} (anymore) to the slab
+     */
+    private void free(PreviewSection section) {
+        if (slab != null && section instanceof PreviewSectionOffHeap offHeap) {
+            slab.release(offHeap.slot());
+        }
+    }
+
+    /**
+     * Remembers where an evicted section was written to. Only called on the IO thread.
+     */
+    void spilled(int idx, PreviewCacheFile file, int sectionX, int sectionZ, int offset, int length) {
+        PreviewCacheFile.StoredBlock current = stored;
+        if (current == null) {
+            current = new PreviewCacheFile.StoredBlock();
+            stored = current;
+        }
+        current.add(idx, file, sectionX, sectionZ, offset, length);
+    }
+
+    private void mergeStored(PreviewSection section, PreviewCacheFile.StoredBlock stored, int idx) {
+        final PreviewSection loaded = stored.load(this, idx);
+        if (loaded != null) {
+            section.mergeFrom(loaded);
+            free(loaded);
+        }
+    }
+
+    PreviewSection newSection(int quartX, int quartZ) {
         if (flags == FLAG_STRUCT_START) {
             return new PreviewSectionStructure(quartX, quartZ);
         }
-        final int quartStride = WorldPreview.get().renderSettings().quartStride();
+        if (slab != null) {
+            return switch (quartStride) {
+                case 1 -> new PreviewSectionOffHeap.Full(quartX, quartZ, slab);
+                case 2 -> new PreviewSectionOffHeap.Half(quartX, quartZ, slab);
+                case 4 -> new PreviewSectionOffHeap.Quarter(quartX, quartZ, slab);
+                default -> throw new IllegalStateException("Unexpected quartStride value: " + quartStride);
+            };
+        }
         if (WorldPreview.get().cfg().enableCompression) {
             return switch (quartStride) {
                 case 1 -> new PreviewSectionCompressed.Full(quartX, quartZ);
@@ -56,7 +219,35 @@ public class PreviewBlock implements Serializable {
         };
     }
 
+    public long flags() {
+        return flags;
+    }
+
+    @Nullable PreviewCacheFile.StoredBlock stored() {
+        return stored;
+    }
+
+    /**
+     * The number of sections that were created or are stored in the cache file
+     */
+    int storedSectionCount() {
+        int res = 0;
+        for (int i = 0; i < sections.length; ++i) {
+            if (SECTIONS.getAcquire(sections, i) != null || (stored != null && stored.has(i))) {
+                ++res;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Only the sections that were created (or loaded) already, all others are {@code null}
+     */
     public PreviewSection[] sections() {
-        return Arrays.copyOf(sections, sections.length);
+        final PreviewSection[] res = new PreviewSection[sections.length];
+        for (int i = 0; i < res.length; ++i) {
+            res[i] = (PreviewSection) SECTIONS.getAcquire(sections, i);
+        }
+        return res;
     }
 }
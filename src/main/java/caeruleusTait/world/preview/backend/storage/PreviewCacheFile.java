@@ -0,0 +1,671 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import caeruleusTait.world.preview.WorldPreview;
+import caeruleusTait.world.preview.backend.metrics.CacheReadEvent;
+import caeruleusTait.world.preview.backend.metrics.CacheWriteEvent;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.Short2IntMap;
+import it.unimi.dsi.fastutil.shorts.Short2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static caeruleusTait.world.preview.backend.WorkManager.Y_BLOCK_SHIFT;
+import static caeruleusTait.world.preview.backend.storage.PreviewStorageCacheManager.CACHE_FORMAT_VERSION;
+
+/**
+ * The on-disk format of the preview cache.
+ * <p>
+ * The file consists of a header, an index and the section payloads (big endian):
+ * <pre>
+ * header: int magic, int version, int yMin, int yMax, int quartStride, int sectionCount
+ * index:  sectionCount * (int indexY, int sectionX, int sectionZ, int flags, long offset, int length)
+ * data:   the payloads of the sections
+ * </pre>
+ * A payload starts with the kind of the section and the completed chunks. Value sections then store a
+ * palette and the palette indices packed into longs (no index spans two longs). Structure sections store
+ * their structures.
+ * <p>
+ * Opening a file only reads the header and the index. The file stays open, and a section is only read
+ * with a positional read and decoded when it is accessed for the first time (see {@link PreviewBlock#get(int, int)}).
+ * When the cache is written again, sections that were never accessed are copied from the old file as they are.
+ * <p>
+ * Sections that are evicted from memory (see {@link PreviewStoragePool}) are read back the same way from the
+ * journal that is still being written. The files are not mapped: closing a file while another thread reads from
+ * it only fails that read.
+ */
+public class PreviewCacheFile implements Closeable {
+    private static final int MAGIC = 0x57505243; // WPRC
+    private static final int JOURNAL_MAGIC = 0x5750524A; // WPRJ
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+    private static final int JOURNAL_HEADER_SIZE = 5 * Integer.BYTES;
+    private static final int INDEX_ENTRY_SIZE = 5 * Integer.BYTES + Long.BYTES;
+    private static final int JOURNAL_RECORD_HEADER_SIZE = 5 * Integer.BYTES;
+
+    private static final byte KIND_VALUES = 0;
+    private static final byte KIND_STRUCTURES = 1;
+
+    private static final int COMPLETED_WORDS = (PreviewSection.SECTION_SIZE * PreviewSection.HALF_SIZE) / Long.SIZE;
+
+    private final Path path;
+    private volatile @Nullable FileChannel channel;
+
+    /**
+     * The size when the file was opened, a journal may have grown since
+     */
+    private final long size;
+
+    private PreviewCacheFile(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    /**
+     * Opens a cache file and its journal (see {@link PreviewCacheJournal}) and creates a storage that lazily
+     * loads its sections from them. Sections in the journal replace those in the cache file, later journal
+     * records replace earlier ones. Either file may be missing.
+     *
+     * @return {@code null} if a file was written for a different height or quart stride
+     */
+    public static @Nullable PreviewStorage open(Path path, Path journal, int yMin, int yMax, int quartStride) throws IOException {
+        final Contents contents = read(path, journal, yMin, yMax, quartStride);
+        if (contents == null) {
+            return null;
+        }
+
+        final PreviewStorage storage = new PreviewStorage(yMin, yMax, quartStride);
+        for (int indexY = 0; indexY < contents.blocks().length; ++indexY) {
+            if (contents.blocks()[indexY] == null) {
+                continue;
+            }
+            for (Long2ObjectMap.Entry<StoredBlock> x : contents.blocks()[indexY].long2ObjectEntrySet()) {
+                final long flags = (x.getLongKey() >> PreviewStorage.FLAG_SHIFT) & PreviewStorage.FLAG_MASK;
+                storage.putLoadedBlock(indexY, x.getLongKey(), new PreviewBlock(flags, quartStride, x.getValue()));
+            }
+        }
+
+        storage.setCacheFiles(contents.files());
+        return storage;
+    }
+
+    /**
+     * Opens a cache file and its journal and reads their indices, but does not create a storage.
+     *
+     * @return {@code null} if a file was written for a different height or quart stride
+     * @see #open(Path, Path, int, int, int)
+     */
+    static @Nullable Contents read(Path path, Path journal, int yMin, int yMax, int quartStride) throws IOException {
+        final CacheReadEvent event = new CacheReadEvent();
+        event.begin();
+        final List<PreviewCacheFile> files = new ArrayList<>();
+
+        @SuppressWarnings("unchecked")
+        final Long2ObjectMap<StoredBlock>[] blocks = new Long2ObjectMap[((yMax - yMin) >> Y_BLOCK_SHIFT) + 1];
+        try {
+            if (Files.exists(path)) {
+                final PreviewCacheFile file = openRead(path);
+                files.add(file);
+                if (!file.checkHeader(MAGIC, yMin, yMax, quartStride)) {
+                    closeAll(files);
+                    return null;
+                }
+                file.readIndex(blocks);
+            }
+            if (Files.exists(journal)) {
+                final PreviewCacheFile file = openRead(journal);
+                files.add(file);
+                if (!file.checkHeader(JOURNAL_MAGIC, yMin, yMax, quartStride)) {
+                    closeAll(files);
+                    return null;
+                }
+                file.readJournal(blocks);
+            }
+        } catch (IOException | RuntimeException e) {
+            closeAll(files);
+            throw e;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = path.toString();
+            for (Long2ObjectMap<StoredBlock> layer : blocks) {
+                if (layer != null) {
+                    for (StoredBlock block : layer.values()) {
+                        event.sections += block.count();
+                    }
+                }
+            }
+            for (PreviewCacheFile file : files) {
+                event.bytes += file.size;
+            }
+            event.commit();
+        }
+        return new Contents(files, blocks);
+    }
+
+    /**
+     * The opened files and the stored blocks per y-level (entries are {@code null} for empty levels)
+     */
+    record Contents(List<PreviewCacheFile> files, Long2ObjectMap<StoredBlock>[] blocks) {
+    }
+
+    private static PreviewCacheFile openRead(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Cache file too large: " + channel.size());
+            }
+            return new PreviewCacheFile(path, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a journal that is still being written to for reading sections back
+     */
+    static PreviewCacheFile openSpill(Path journal) throws IOException {
+        return new PreviewCacheFile(journal, FileChannel.open(journal, StandardOpenOption.READ));
+    }
+
+    static void closeAll(List<PreviewCacheFile> files) {
+        files.forEach(PreviewCacheFile::close);
+    }
+
+    /**
+     * @return {@code false} if the file was written for a different height or quart stride
+     */
+    private boolean checkHeader(int magic, int yMin, int yMax, int quartStride) throws IOException {
+        if (size < JOURNAL_HEADER_SIZE) {
+            throw new IOException("Invalid cache file header in " + path);
+        }
+        final ByteBuffer buf = read(0, JOURNAL_HEADER_SIZE);
+        if (buf.getInt(0) != magic || buf.getInt(4) != CACHE_FORMAT_VERSION) {
+            throw new IOException("Invalid cache file header in " + path);
+        }
+        return buf.getInt(8) == yMin && buf.getInt(12) == yMax && buf.getInt(16) == quartStride;
+    }
+
+    private void readIndex(Long2ObjectMap<StoredBlock>[] blocks) throws IOException {
+        if (size < HEADER_SIZE) {
+            throw new IOException("Invalid cache file header in " + path);
+        }
+        final int count = read(0, HEADER_SIZE).getInt(20);
+        if (count < 0 || HEADER_SIZE + (long) count * INDEX_ENTRY_SIZE > size) {
+            throw new IOException("Truncated cache file index in " + path);
+        }
+        final ByteBuffer buf = read(HEADER_SIZE, count * INDEX_ENTRY_SIZE);
+        for (int i = 0; i < count; ++i) {
+            final int entry = i * INDEX_ENTRY_SIZE;
+            final long offset = buf.getLong(entry + 16);
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Invalid cache file index entry " + i + " in " + path);
+            }
+            addEntry(blocks, buf.getInt(entry), buf.getInt(entry + 4), buf.getInt(entry + 8), buf.getInt(entry + 12), (int) offset, buf.getInt(entry + 24));
+        }
+    }
+
+    /**
+     * Reads the record headers of a journal. A truncated record at the end (the game crashed while it was
+     * written) is ignored.
+     */
+    private void readJournal(Long2ObjectMap<StoredBlock>[] blocks) throws IOException {
+        int pos = JOURNAL_HEADER_SIZE;
+        while (pos + JOURNAL_RECORD_HEADER_SIZE <= size) {
+            final ByteBuffer header = read(pos, JOURNAL_RECORD_HEADER_SIZE);
+            final int length = header.getInt(16);
+            final int offset = pos + JOURNAL_RECORD_HEADER_SIZE;
+            if (length <= 0 || (long) offset + length > size) {
+                WorldPreview.LOGGER.warn("Ignoring truncated record at {} in {}", pos, path);
+                return;
+            }
+            addEntry(blocks, header.getInt(0), header.getInt(4), header.getInt(8), header.getInt(12), offset, length);
+            pos = offset + length;
+        }
+    }
+
+    private void addEntry(Long2ObjectMap<StoredBlock>[] blocks, int indexY, int sectionX, int sectionZ, int flags, int offset, int length) throws IOException {
+        if (indexY < 0 || indexY >= blocks.length || flags < 0 || flags > PreviewStorage.FLAG_MASK || offset < 0 || length < 0 || (long) offset + length > size) {
+            throw new IOException("Invalid section entry at " + offset + " in " + path);
+        }
+
+        final int quartX = sectionX << PreviewSection.SHIFT;
+        final int quartZ = sectionZ << PreviewSection.SHIFT;
+        if (blocks[indexY] == null) {
+            blocks[indexY] = new Long2ObjectOpenHashMap<>();
+        }
+        final StoredBlock block = blocks[indexY].computeIfAbsent(
+                PreviewStorage.quartPosToSectionLong(quartX, quartZ, flags),
+                x -> new StoredBlock()
+        );
+        block.add(PreviewBlock.sectionIndex(quartX, quartZ), this, sectionX, sectionZ, offset, length);
+    }
+
+    /**
+     * Writes all sections of {@code storage} to {@code path}
+     */
+    public static void write(PreviewStorage storage, Path path) throws IOException {
+        final CacheWriteEvent event = new CacheWriteEvent();
+        event.begin();
+        final List<IndexEntry> index = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // The header and the index are written at the end, once the offsets are known
+            final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            int sectionCount = 0;
+            for (int indexY = 0; indexY < storage.layerCount(); ++indexY) {
+                for (PreviewBlock block : storage.layer(indexY).values()) {
+                    sectionCount += block.storedSectionCount();
+                }
+            }
+            dos.write(new byte[HEADER_SIZE + sectionCount * INDEX_ENTRY_SIZE]);
+
+            final short[] values = new short[PreviewSection.SIZE * PreviewSection.SIZE];
+            for (int indexY = 0; indexY < storage.layerCount(); ++indexY) {
+                for (PreviewBlock block : storage.layer(indexY).values()) {
+                    final PreviewSection[] sections = block.sections();
+                    final StoredBlock stored = block.stored();
+                    for (int i = 0; i < sections.length; ++i) {
+                        final long offset = dos.size();
+                        final int sectionX;
+                        final int sectionZ;
+                        if (sections[i] != null) {
+                            sectionX = sections[i].quartX() >> PreviewSection.SHIFT;
+                            sectionZ = sections[i].quartZ() >> PreviewSection.SHIFT;
+                            writeSection(dos, sections[i], values);
+                        } else if (stored != null && stored.has(i)) {
+                            sectionX = stored.sectionX(i);
+                            sectionZ = stored.sectionZ(i);
+                            stored.copyPayload(i, dos);
+                        } else {
+                            continue;
+                        }
+                        index.add(new IndexEntry(indexY, sectionX, sectionZ, (int) block.flags(), offset, (int) (dos.size() - offset)));
+                    }
+                }
+            }
+            dos.flush();
+            if (index.size() != sectionCount) {
+                throw new IOException("The storage changed while writing it");
+            }
+            if (dos.size() < 0) {
+                // DataOutputStream.size() overflows at 2 GiB, the offsets in the index are ints anyway
+                throw new IOException("Cache file too large");
+            }
+
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + index.size() * INDEX_ENTRY_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(CACHE_FORMAT_VERSION);
+            header.putInt(storage.yMin());
+            header.putInt(storage.yMax());
+            header.putInt(storage.quartStride());
+            header.putInt(index.size());
+            for (IndexEntry x : index) {
+                header.putInt(x.indexY);
+                header.putInt(x.sectionX);
+                header.putInt(x.sectionZ);
+                header.putInt(x.flags);
+                header.putLong(x.offset);
+                header.putInt(x.length);
+            }
+            header.flip();
+            channel.write(header, 0);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = path.toString();
+                event.sections = index.size();
+                event.bytes = channel.size();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Opens a journal for appending. A journal that does not exist or that was written for different
+     * settings is started from scratch. A truncated record at the end is removed.
+     */
+    static FileChannel openJournal(PreviewStorage storage, Path journal) throws IOException {
+        final FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+            header.putInt(JOURNAL_MAGIC);
+            header.putInt(CACHE_FORMAT_VERSION);
+            header.putInt(storage.yMin());
+            header.putInt(storage.yMax());
+            header.putInt(storage.quartStride());
+            header.flip();
+
+            final ByteBuffer existing = ByteBuffer.allocate(JOURNAL_HEADER_SIZE);
+            channel.read(existing, 0);
+            existing.flip();
+            if (!existing.equals(header)) {
+                channel.truncate(0);
+                channel.write(header, 0);
+                channel.position(JOURNAL_HEADER_SIZE);
+                return channel;
+            }
+
+            long pos = JOURNAL_HEADER_SIZE;
+            final ByteBuffer recordHeader = ByteBuffer.allocate(JOURNAL_RECORD_HEADER_SIZE);
+            while (true) {
+                recordHeader.clear();
+                if (channel.read(recordHeader, pos) < JOURNAL_RECORD_HEADER_SIZE) {
+                    break;
+                }
+                final int length = recordHeader.getInt(16);
+                if (length <= 0 || pos + JOURNAL_RECORD_HEADER_SIZE + length > channel.size()) {
+                    break;
+                }
+                pos += JOURNAL_RECORD_HEADER_SIZE + length;
+            }
+            channel.truncate(pos);
+            channel.position(pos);
+            return channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a section to a journal opened with {@link #openJournal(PreviewStorage, Path)}
+     *
+     * @param values scratch space for {@link PreviewSection#SIZE}{@code ^2} values
+     * @return the offset of the payload in the upper and its length in the lower 32 bits
+     */
+    static long appendJournalRecord(FileChannel channel, int indexY, long flags, PreviewSection section, short[] values) throws IOException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream(1024);
+        final DataOutputStream dos = new DataOutputStream(payload);
+        dos.writeInt(indexY);
+        dos.writeInt(section.quartX() >> PreviewSection.SHIFT);
+        dos.writeInt(section.quartZ() >> PreviewSection.SHIFT);
+        dos.writeInt((int) flags);
+        dos.writeInt(0); // length, see below
+        writeSection(dos, section, values);
+        dos.flush();
+
+        final ByteBuffer record = ByteBuffer.wrap(payload.toByteArray());
+        final int length = record.capacity() - JOURNAL_RECORD_HEADER_SIZE;
+        record.putInt(16, length);
+        final long offset = channel.position() + JOURNAL_RECORD_HEADER_SIZE;
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        return (offset << 32) | length;
+    }
+
+    private record IndexEntry(int indexY, int sectionX, int sectionZ, int flags, long offset, int length) {}
+
+    private static void writeSection(DataOutputStream dos, PreviewSection section, short[] values) throws IOException {
+        final boolean isStructure = section instanceof PreviewSectionStructure;
+        dos.writeByte(isStructure ? KIND_STRUCTURES : KIND_VALUES);
+        final long[] completed = Arrays.copyOf(section.completedWords(), COMPLETED_WORDS);
+        for (long x : completed) {
+            dos.writeLong(x);
+        }
+
+        if (isStructure) {
+            final List<PreviewSection.PreviewStruct> structures = section.structures();
+            dos.writeInt(structures.size());
+            for (PreviewSection.PreviewStruct s : structures) {
+                final BlockPos c = s.center();
+                final BoundingBox bb = s.boundingBox();
+                dos.writeInt(c.getX());
+                dos.writeInt(c.getY());
+                dos.writeInt(c.getZ());
+                dos.writeShort(s.structureId());
+                dos.writeInt(bb.minX());
+                dos.writeInt(bb.minY());
+                dos.writeInt(bb.minZ());
+                dos.writeInt(bb.maxX());
+                dos.writeInt(bb.maxY());
+                dos.writeInt(bb.maxZ());
+            }
+            return;
+        }
+
+        final int stride = section.quartStride();
+        final int count = section.size() * section.size();
+        section.readRegion(0, 0, PreviewSection.SIZE, PreviewSection.SIZE, stride, values);
+
+        final Short2IntMap paletteIdx = new Short2IntOpenHashMap();
+        final short[] palette = new short[count];
+        for (int i = 0; i < count; ++i) {
+            if (!paletteIdx.containsKey(values[i])) {
+                palette[paletteIdx.size()] = values[i];
+                paletteIdx.put(values[i], paletteIdx.size());
+            }
+        }
+
+        final int paletteSize = paletteIdx.size();
+        final int bits = bitsFor(paletteSize);
+        dos.writeShort(paletteSize);
+        for (int i = 0; i < paletteSize; ++i) {
+            dos.writeShort(palette[i]);
+        }
+        if (bits == 0) {
+            return;
+        }
+
+        final int valuesPerLong = Long.SIZE / bits;
+        for (int i = 0; i < count; i += valuesPerLong) {
+            long word = 0;
+            for (int j = 0; j < valuesPerLong && i + j < count; ++j) {
+                word |= (long) paletteIdx.get(values[i + j]) << (j * bits);
+            }
+            dos.writeLong(word);
+        }
+    }
+
+    private static int bitsFor(int paletteSize) {
+        return paletteSize <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
+    }
+
+    /**
+     * Reads {@code length} bytes at {@code pos} into a new buffer
+     */
+    private ByteBuffer read(long pos, int length) throws IOException {
+        final FileChannel ch = channel;
+        if (ch == null) {
+            throw new ClosedChannelException();
+        }
+        final ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException("Unexpected end of " + path);
+            }
+        }
+        return buf;
+    }
+
+    /**
+     * The payload at {@code offset}, {@code null} if the file was closed (the data is gone)
+     */
+    private @Nullable ByteBuffer payload(int offset, int length) {
+        try {
+            return read(offset, length);
+        } catch (ClosedChannelException e) {
+            return null;
+        } catch (IOException e) {
+            WorldPreview.LOGGER.error("Failed to read preview data from {}", path);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the payload at {@code offset} into a new section of {@code block}
+     */
+    private @Nullable PreviewSection readSection(PreviewBlock block, int quartX, int quartZ, int offset, int length) {
+        final ByteBuffer buf = payload(offset, length);
+        if (buf == null) {
+            return null;
+        }
+
+        final PreviewSection section = block.newSection(quartX, quartZ);
+        int pos = 0;
+        final byte kind = buf.get(pos++);
+        final long[] completed = new long[COMPLETED_WORDS];
+        for (int i = 0; i < COMPLETED_WORDS; ++i, pos += Long.BYTES) {
+            completed[i] = buf.getLong(pos);
+        }
+        section.loadCompletedWords(completed);
+
+        if (kind == KIND_STRUCTURES) {
+            final int count = buf.getInt(pos);
+            pos += Integer.BYTES;
+            for (int i = 0; i < count; ++i) {
+                final BlockPos center = new BlockPos(buf.getInt(pos), buf.getInt(pos + 4), buf.getInt(pos + 8));
+                final short structureId = buf.getShort(pos + 12);
+                pos += 14;
+                final BoundingBox bb = new BoundingBox(
+                        buf.getInt(pos), buf.getInt(pos + 4), buf.getInt(pos + 8),
+                        buf.getInt(pos + 12), buf.getInt(pos + 16), buf.getInt(pos + 20)
+                );
+                pos += 24;
+                section.addStructure(new PreviewSection.PreviewStruct(center, structureId, bb));
+            }
+            return section;
+        }
+
+        final int paletteSize = buf.getShort(pos) & 0xFFFF;
+        pos += Short.BYTES;
+        final short[] palette = new short[paletteSize];
+        for (int i = 0; i < paletteSize; ++i, pos += Short.BYTES) {
+            palette[i] = buf.getShort(pos);
+        }
+
+        final int stride = section.quartStride();
+        final int size = section.size();
+        final int bits = bitsFor(paletteSize);
+        final int valuesPerLong = bits == 0 ? Integer.MAX_VALUE : Long.SIZE / bits;
+        final long mask = (1L << bits) - 1;
+        for (int i = 0; i < size * size; ++i) {
+            final int paletteIdx = bits == 0
+                    ? 0
+                    : (int) ((buf.getLong(pos + (i / valuesPerLong) * Long.BYTES) >>> ((i % valuesPerLong) * bits)) & mask);
+            final short value = palette[paletteIdx];
+            if (value != Short.MIN_VALUE) {
+                section.set((i / size) * stride, (i % size) * stride, value);
+            }
+        }
+        return section;
+    }
+
+    /**
+     * Closes the file, so that it can be replaced. Sections that were not loaded yet are lost for the
+     * storage using this file, reads that are still running fail.
+     */
+    @Override
+    public void close() {
+        final FileChannel ch = channel;
+        channel = null;
+        if (ch != null) {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The sections of a {@link PreviewBlock} that are stored in cache files
+     */
+    public static class StoredBlock {
+        private final PreviewCacheFile[] files = new PreviewCacheFile[PreviewBlock.PREVIEW_BLOCK_SIZE * PreviewBlock.PREVIEW_BLOCK_SIZE];
+        private final int[] offsets = new int[files.length];
+        private final int[] lengths = new int[files.length];
+        private final int[] sectionX = new int[files.length];
+        private final int[] sectionZ = new int[files.length];
+
+        StoredBlock() {
+        }
+
+        void add(int idx, PreviewCacheFile file, int x, int z, int offset, int length) {
+            files[idx] = file;
+            offsets[idx] = offset;
+            lengths[idx] = length;
+            sectionX[idx] = x;
+            sectionZ[idx] = z;
+        }
+
+        /**
+         * Copies all sections of {@code other} into this block, replacing the stored ones
+         */
+        void addAll(StoredBlock other) {
+            for (int i = 0; i < files.length; ++i) {
+                if (other.has(i)) {
+                    add(i, other.files[i], other.sectionX[i], other.sectionZ[i], other.offsets[i], other.lengths[i]);
+                }
+            }
+        }
+
+        public boolean has(int idx) {
+            return files[idx] != null;
+        }
+
+        int count() {
+            int res = 0;
+            for (PreviewCacheFile file : files) {
+                if (file != null) {
+                    ++res;
+                }
+            }
+            return res;
+        }
+
+        int sectionX(int idx) {
+            return sectionX[idx];
+        }
+
+        int sectionZ(int idx) {
+            return sectionZ[idx];
+        }
+
+        /**
+         * @return {@code null} if the section is not stored
+         */
+        @Nullable PreviewSection load(PreviewBlock block, int idx) {
+            if (!has(idx)) {
+                return null;
+            }
+            final CacheReadEvent event = new CacheReadEvent();
+            event.begin();
+            final PreviewSection res = files[idx].readSection(block, sectionX[idx] << PreviewSection.SHIFT, sectionZ[idx] << PreviewSection.SHIFT, offsets[idx], lengths[idx]);
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = files[idx].path.toString();
+                event.sections = 1;
+                event.bytes = lengths[idx];
+                event.commit();
+            }
+            return res;
+        }
+
+        private void copyPayload(int idx, DataOutputStream dos) throws IOException {
+            final ByteBuffer buf = files[idx].payload(offsets[idx], lengths[idx]);
+            if (buf == null) {
+                throw new IOException("Cache file " + files[idx].path + " is already closed");
+            }
+            final byte[] payload = new byte[lengths[idx]];
+            buf.get(0, payload);
+            dos.write(payload);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import caeruleusTait.world.preview.WorldPreview;
+import caeruleusTait.world.preview.backend.metrics.CacheWriteEvent;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Persists the changes of a {@link PreviewStorage} incrementally.
+ * <p>
+ * Sections that changed since the last flush are appended to a journal next to the cache file (see
+ * {@link PreviewCacheFile}). Flushes happen on a background thread periodically and after a number of changes,
+ * so a crash loses at most the last few seconds of sampling. When the storage is no longer used, the journal
+ * is merged into the cache file in the background, but only once it has grown large enough.
+ * <p>
+ * The journal also backs sections that are evicted from memory (see {@link PreviewStoragePool}): they are
+ * read back from their last record.
+ */
+public class PreviewCacheJournal {
+    private static final long FLUSH_INTERVAL_SECONDS = 10;
+    private static final int FLUSH_AFTER_CHANGES = 1024;
+
+    /**
+     * Merge the journal into the cache file once it reaches this fraction of the size of the cache file
+     */
+    private static final double COMPACT_RATIO = 0.25;
+
+    private static final long NO_RECORD = -1;
+
+    /**
+     * All file operations of the cache happen on this thread, so they never overlap. Only compactions run
+     * on {@link #COMPACT_EXECUTOR}.
+     */
+    static final ScheduledExecutorService IO_EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "World Preview Cache IO");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Compactions take long, so they run on their own thread and do not delay the caches of other seeds
+     */
+    private static final ExecutorService COMPACT_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "World Preview Cache Compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Completed once {@link #finish()} is done with a cache file, including its compaction. Nothing else may
+     * touch the files in the meantime.
+     */
+    private static final Map<Path, CompletableFuture<Void>> PENDING_FINISHES = new ConcurrentHashMap<>();
+
+    private final PreviewStorage storage;
+    private final Path cacheFile;
+    private final Path journalFile;
+    private final AtomicInteger changes = new AtomicInteger();
+    private final ScheduledFuture<?> timer;
+    private volatile boolean finished;
+
+    // Only accessed on the IO thread
+    private final Reference2IntMap<PreviewSection> flushedVersions = new Reference2IntOpenHashMap<>();
+    private final Reference2LongMap<PreviewSection> records = new Reference2LongOpenHashMap<>();
+    private final short[] values = new short[PreviewSection.SIZE * PreviewSection.SIZE];
+    private FileChannel channel;
+    private PreviewCacheFile spillFile;
+
+    private PreviewCacheJournal(PreviewStorage storage, Path cacheFile) {
+        this.storage = storage;
+        this.cacheFile = cacheFile;
+        this.journalFile = journalPath(cacheFile);
+        this.records.defaultReturnValue(NO_RECORD);
+        this.timer = IO_EXECUTOR.scheduleWithFixedDelay(this::flushIfActive, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public static Path journalPath(Path cacheFile) {
+        return cacheFile.resolveSibling(cacheFile.getFileName().toString() + ".journal");
+    }
+
+    /**
+     * Starts journaling all changes of {@code storage}, which must have been loaded from {@code cacheFile}
+     * (or be empty, see {@link PreviewCacheLoader}).
+     */
+    public static PreviewCacheJournal start(PreviewStorage storage, Path cacheFile) {
+        final PreviewCacheJournal journal = new PreviewCacheJournal(storage, cacheFile);
+        storage.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Must be called after the data of a section changed
+     */
+    public void sectionChanged() {
+        if (changes.incrementAndGet() == FLUSH_AFTER_CHANGES) {
+            IO_EXECUTOR.execute(this::flushIfActive);
+        }
+    }
+
+    /**
+     * Flushes the remaining changes, releases the cache files and sections of the storage and merges the journal
+     * into the cache file if needed. Everything happens in the background, the storage must not be used afterward.
+     */
+    public void finish() {
+        finished = true;
+        timer.cancel(false);
+
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final CompletableFuture<Void> previous = PENDING_FINISHES.put(cacheFile, done);
+        (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous)
+                .thenRunAsync(() -> {
+                    flush();
+                    closeChannel();
+                    storage.closeCacheFiles();
+                    storage.freeSections();
+                }, IO_EXECUTOR)
+                .thenRunAsync(() -> {
+                    if (shouldCompact()) {
+                        compact();
+                    }
+                }, COMPACT_EXECUTOR)
+                .whenComplete((x, e) -> {
+                    if (e != null) {
+                        WorldPreview.LOGGER.error("Failed to finish cached preview data in {}", cacheFile);
+                        e.printStackTrace();
+                    }
+                    PENDING_FINISHES.remove(cacheFile, done);
+                    done.complete(null);
+                });
+    }
+
+    /**
+     * The pending {@link #finish()} of an earlier storage for {@code cacheFile}, or {@code null} if the files
+     * can be used right away
+     */
+    static @Nullable CompletableFuture<Void> pendingFinish(Path cacheFile) {
+        return PENDING_FINISHES.get(cacheFile);
+    }
+
+    /**
+     * Flushes unless {@link #finish()} was called already. Must be called on the IO thread.
+     */
+    void flushIfActive() {
+        // The files are still written by the finish of an earlier storage, the changes are kept for later
+        if (!finished && pendingFinish(cacheFile) == null) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        changes.set(0);
+        try {
+            if (channel == null) {
+                channel = PreviewCacheFile.openJournal(storage, journalFile);
+                spillFile = PreviewCacheFile.openSpill(journalFile);
+            }
+
+            final CacheWriteEvent event = new CacheWriteEvent();
+            event.begin();
+            int written = 0;
+            long bytes = 0;
+            for (int indexY = 0; indexY < storage.layerCount(); ++indexY) {
+                for (PreviewBlock block : storage.layer(indexY).values()) {
+                    for (PreviewSection section : block.sections()) {
+                        if (section == null) {
+                            continue;
+                        }
+                        // Read the version first, so that concurrent changes are written by the next flush
+                        final int version = section.version();
+                        if (isFlushed(section, version)) {
+                            continue;
+                        }
+                        final long record = PreviewCacheFile.appendJournalRecord(channel, indexY, block.flags(), section, values);
+                        records.put(section, record);
+                        flushedVersions.put(section, version);
+                        ++written;
+                        bytes += (int) record;
+                    }
+                }
+            }
+
+            if (written > 0) {
+                channel.force(false);
+
+                event.end();
+                if (event.shouldCommit()) {
+                    event.file = journalFile.toString();
+                    event.sections = written;
+                    event.bytes = bytes;
+                    event.journal = true;
+                    event.commit();
+                }
+            }
+        } catch (IOException e) {
+            WorldPreview.LOGGER.error("Failed to write preview cache journal {}", journalFile);
+            e.printStackTrace();
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Sections that were only merged with the data of the cache are not written again
+     */
+    private boolean isFlushed(PreviewSection section, int version) {
+        return version == flushedVersions.getInt(section) || section.isStored(version);
+    }
+
+    /**
+     * Removes a section from memory, so that it is read back from the files on the next access. Must be
+     * called on the IO thread after {@link #flushIfActive()}, with the section marked as evicted. Workers
+     * unpin sections only after their changes were marked, so the version is final at this point.
+     *
+     * @return {@code false} if the section changed since the last flush
+     */
+    boolean evict(PreviewBlock block, int idx, PreviewSection section) {
+        if (finished || !isFlushed(section, section.version())) {
+            return false;
+        }
+
+        // Without a record, the section did not change since it was loaded (or is empty)
+        final long record = records.getLong(section);
+        if (record != NO_RECORD) {
+            final long offset = record >>> 32;
+            if (offset > Integer.MAX_VALUE) {
+                return false;
+            }
+            block.spilled(idx, spillFile, section.quartX() >> PreviewSection.SHIFT, section.quartZ() >> PreviewSection.SHIFT, (int) offset, (int) record);
+        }
+
+        if (!block.evict(idx, section)) {
+            return false;
+        }
+        flushedVersions.removeInt(section);
+        records.removeLong(section);
+        return true;
+    }
+
+    private void closeChannel() {
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+    private boolean shouldCompact() {
+        try {
+            if (!Files.exists(journalFile)) {
+                return false;
+            }
+            return !Files.exists(cacheFile) || Files.size(journalFile) > Files.size(cacheFile) * COMPACT_RATIO;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Merges the journal into the cache file without decoding any section
+     */
+    private void compact() {
+        final Path tmpFile = cacheFile.resolveSibling(cacheFile.getFileName().toString() + ".tmp");
+        WorldPreview.LOGGER.info("Compacting preview data in {}", cacheFile);
+        try {
+            final PreviewStorage merged = PreviewCacheFile.open(cacheFile, journalFile, storage.yMin(), storage.yMax(), storage.quartStride());
+            if (merged == null) {
+                return;
+            }
+            try {
+                PreviewCacheFile.write(merged, tmpFile);
+            } finally {
+                merged.closeCacheFiles();
+            }
+            Files.move(tmpFile, cacheFile, REPLACE_EXISTING);
+            Files.delete(journalFile);
+        } catch (IOException e) {
+            WorldPreview.LOGGER.error("Failed to compact cached preview data in {}", cacheFile);
+            e.printStackTrace();
+        }
+    }
+}
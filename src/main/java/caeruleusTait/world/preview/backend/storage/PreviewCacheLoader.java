@@ -0,0 +1,184 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import caeruleusTait.world.preview.WorldPreview;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import net.minecraft.core.QuartPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Fills a {@link PreviewStorage} from its cache file (see {@link PreviewCacheFile}) in the background, while the
+ * storage is already in use.
+ * <p>
+ * Only the indices are read up front. The stored blocks are then attached to the storage column by column,
+ * nearest to the center first, and their sections are decoded on first access. Sections that were created
+ * before their block was attached are merged with the stored ones. Until a column is attached,
+ * {@link PreviewStorage#isLoaded} reports it as not loaded, so that work for it can be deferred.
+ * <p>
+ * Loading runs on the same thread as the journal (see {@link PreviewCacheJournal}). If an earlier session for
+ * the same file is still finishing, it waits for that first. Sessions of other files never delay it.
+ */
+public class PreviewCacheLoader {
+    private static final int BLOCK_QUART_SHIFT = PreviewSection.SHIFT + PreviewBlock.PREVIEW_BLOCK_SHIFT;
+
+    private final PreviewStorage storage;
+    private final Path cacheFile;
+    private final Path journalFile;
+
+    /**
+     * The keys (see {@link PreviewStorage#quartPosToSectionLong}) of all columns that were not attached yet
+     */
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean indexRead;
+    private volatile boolean finished;
+    private volatile boolean canceled;
+
+    private PreviewCacheLoader(PreviewStorage storage, Path cacheFile) {
+        this.storage = storage;
+        this.cacheFile = cacheFile;
+        this.journalFile = PreviewCacheJournal.journalPath(cacheFile);
+    }
+
+    /**
+     * Prepares loading {@code cacheFile} into the empty {@code storage}. Nothing is read before {@link #start}.
+     */
+    public static PreviewCacheLoader create(PreviewStorage storage, Path cacheFile) {
+        final PreviewCacheLoader loader = new PreviewCacheLoader(storage, cacheFile);
+        storage.setLoader(loader);
+        return loader;
+    }
+
+    /**
+     * Starts loading in the background. Without any cache files, the loader is finished right away.
+     *
+     * @param center     the current center of the preview, queried once the indices are read
+     * @param onFinished called on the IO thread once everything is attached (or loading failed), or by this
+     *                   method if there is nothing to load
+     */
+    public void start(Supplier<ChunkPos> center, Runnable onFinished) {
+        final CompletableFuture<Void> previous = PreviewCacheJournal.pendingFinish(cacheFile);
+        if (previous == null && !hasCacheFiles()) {
+            finish(onFinished);
+            return;
+        }
+
+        (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous).thenRunAsync(() -> {
+            try {
+                load(center);
+            } catch (Throwable e) {
+                WorldPreview.LOGGER.error("Failed to load cached preview data from {}", cacheFile);
+                e.printStackTrace();
+            } finally {
+                finish(onFinished);
+            }
+        }, PreviewCacheJournal.IO_EXECUTOR);
+    }
+
+    private void finish(Runnable onFinished) {
+        finished = true;
+        pending.clear();
+        onFinished.run();
+    }
+
+    private boolean hasCacheFiles() {
+        return Files.exists(cacheFile) || Files.exists(journalFile);
+    }
+
+    /**
+     * Stops attaching blocks. The cache files are left untouched, so nothing is lost.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    boolean isLoaded(long key) {
+        return finished || (indexRead && !pending.contains(key));
+    }
+
+    private void load(Supplier<ChunkPos> center) {
+        if (canceled || !hasCacheFiles()) {
+            return;
+        }
+
+        WorldPreview.LOGGER.info("Reading preview data from {}", cacheFile);
+        PreviewCacheFile.Contents contents = null;
+        try {
+            contents = PreviewCacheFile.read(cacheFile, journalFile, storage.yMin(), storage.yMax(), storage.quartStride());
+            if (contents == null) {
+                WorldPreview.LOGGER.warn("Ignoring incompatible cached preview data in {}", cacheFile);
+            }
+        } catch (IOException e) {
+            WorldPreview.LOGGER.error("Failed to read cached preview data from {}", cacheFile);
+            e.printStackTrace();
+        }
+
+        if (contents == null) {
+            try {
+                Files.deleteIfExists(cacheFile);
+                Files.deleteIfExists(journalFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        storage.setCacheFiles(contents.files());
+
+        // Group the y-levels of each column, so that work spanning all of them never sees a partially attached column
+        final int layerCount = contents.blocks().length;
+        final Long2ObjectMap<PreviewCacheFile.StoredBlock[]> columns = new Long2ObjectOpenHashMap<>();
+        for (int indexY = 0; indexY < layerCount; ++indexY) {
+            if (contents.blocks()[indexY] == null) {
+                continue;
+            }
+            for (Long2ObjectMap.Entry<PreviewCacheFile.StoredBlock> x : contents.blocks()[indexY].long2ObjectEntrySet()) {
+                columns.computeIfAbsent(x.getLongKey(), k -> new PreviewCacheFile.StoredBlock[layerCount])[indexY] = x.getValue();
+            }
+        }
+        pending.addAll(columns.keySet());
+        indexRead = true;
+
+        final ChunkPos c = center.get();
+        final long centerX = QuartPos.fromSection(c.x);
+        final long centerZ = QuartPos.fromSection(c.z);
+        final long[] keys = columns.keySet().toLongArray();
+        LongArrays.quickSort(keys, (a, b) -> Long.compare(distanceSqr(a, centerX, centerZ), distanceSqr(b, centerX, centerZ)));
+
+        for (long key : keys) {
+            if (canceled) {
+                return;
+            }
+            final PreviewCacheFile.StoredBlock[] layers = columns.get(key);
+            for (int indexY = 0; indexY < layerCount; ++indexY) {
+                if (layers[indexY] != null) {
+                    storage.attachStored(indexY, key, layers[indexY]);
+                }
+            }
+            pending.remove(key);
+        }
+    }
+
+    /**
+     * The squared distance between the center of the column {@code key} and the quart position {@code (x, z)}
+     */
+    private static long distanceSqr(long key, long x, long z) {
+        // Sign extend the coordinates of the key
+        final long blockX = key >> PreviewStorage.X_SHIFT;
+        final long blockZ = (key << (64 - PreviewStorage.X_SHIFT)) >> (64 - PreviewStorage.XZ_BITS);
+        final long dx = (blockX << BLOCK_QUART_SHIFT) + (1L << (BLOCK_QUART_SHIFT - 1)) - x;
+        final long dz = (blockZ << BLOCK_QUART_SHIFT) + (1L << (BLOCK_QUART_SHIFT - 1)) - z;
+        return dx * dx + dz * dz;
+    }
+}
@@ -0,0 +1,137 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.world.level.ChunkPos;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+import static caeruleusTait.world.preview.backend.WorkManager.Y_BLOCK_SHIFT;
+
+/**
+ * Records which chunks of a {@link PreviewStorage} were sampled, independent of its sections.
+ * <p>
+ * Each layer (y-level and flags) is split into tiles of {@code TILE_SIZE x TILE_SIZE} chunks. A tile is one bit
+ * per chunk, with one word per chunk X coordinate. Marking a chunk is a single atomic OR, and the chunks of a
+ * rectangle that are still missing are found word by word without touching any section. The tiles are never
+ * evicted, they only take 512 bytes for {@code 4096} chunks.
+ * <p>
+ * The index is not persisted. Completions loaded from the cache are still stored in the sections (see
+ * {@link PreviewSection#isCompleted}) and must be added with {@link #markCompleted} once they are seen.
+ */
+public class PreviewCompletionIndex {
+    public static final int TILE_SHIFT = 6;
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private static final VarHandle TILES = MethodHandles.arrayElementVarHandle(Long2ObjectMap[].class);
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * One copy-on-write map of tiles per y-level, like the blocks of {@link PreviewStorage}
+     */
+    private final Long2ObjectMap<long[]>[] tiles;
+    private final Object createLock = new Object();
+    private final int yMin;
+
+    @SuppressWarnings("unchecked")
+    PreviewCompletionIndex(int yMin, int layerCount) {
+        this.yMin = yMin;
+        this.tiles = new Long2ObjectMap[layerCount];
+        for (int i = 0; i < layerCount; ++i) {
+            tiles[i] = new Long2ObjectOpenHashMap<>(64, Hash.FAST_LOAD_FACTOR);
+        }
+    }
+
+    public boolean isCompleted(int y, long flags, int chunkX, int chunkZ) {
+        final long[] tile = tile(y, flags, chunkX, chunkZ, false);
+        if (tile == null) {
+            return false;
+        }
+        final long word = (long) WORDS.getAcquire(tile, chunkX & TILE_MASK);
+        return (word & (1L << (chunkZ & TILE_MASK))) != 0;
+    }
+
+    /**
+     * Lock-free, may be called from any thread
+     */
+    public void markCompleted(int y, long flags, int chunkX, int chunkZ) {
+        final long[] tile = tile(y, flags, chunkX, chunkZ, true);
+        WORDS.getAndBitwiseOrRelease(tile, chunkX & TILE_MASK, 1L << (chunkZ & TILE_MASK));
+    }
+
+    /**
+     * Forgets the completions of all chunks of the section at {@code quartX, quartZ}, e.g. when its data was
+     * dropped. The chunks are then sampled again.
+     */
+    public void clearSection(int y, long flags, int quartX, int quartZ) {
+        final int minX = (quartX & PreviewSection.MASK) >> PreviewSection.QUART_TO_SECTION_SHIFT;
+        final int minZ = (quartZ & PreviewSection.MASK) >> PreviewSection.QUART_TO_SECTION_SHIFT;
+        final long[] tile = tile(y, flags, minX, minZ, false);
+        if (tile == null) {
+            return;
+        }
+        // Sections are aligned and smaller than tiles, so they never cross a tile border
+        final long mask = ~rangeMask(minZ & TILE_MASK, (minZ + PreviewSection.SECTION_SIZE - 1) & TILE_MASK);
+        for (int x = minX; x < minX + PreviewSection.SECTION_SIZE; ++x) {
+            WORDS.getAndBitwiseAndRelease(tile, x & TILE_MASK, mask);
+        }
+    }
+
+    /**
+     * Adds all chunks in {@code [minX, maxX] x [minZ, maxZ]} (inclusive) that are not completed to {@code out}
+     * as {@link ChunkPos#asLong} values, X-major.
+     */
+    public void collectMissing(int y, long flags, int minX, int minZ, int maxX, int maxZ, LongArrayList out) {
+        for (int x = minX; x <= maxX; ++x) {
+            int z = minZ;
+            while (z <= maxZ) {
+                // The part of the row in the current tile
+                final int tileEndZ = Math.min(maxZ, (z & ~TILE_MASK) + TILE_MASK);
+                final long[] tile = tile(y, flags, x, z, false);
+                long missing = rangeMask(z & TILE_MASK, tileEndZ & TILE_MASK);
+                if (tile != null) {
+                    missing &= ~(long) WORDS.getAcquire(tile, x & TILE_MASK);
+                }
+                final int tileZ = z & ~TILE_MASK;
+                while (missing != 0) {
+                    out.add(ChunkPos.asLong(x, tileZ + Long.numberOfTrailingZeros(missing)));
+                    missing &= missing - 1;
+                }
+                z = tileEndZ + 1;
+            }
+        }
+    }
+
+    /**
+     * Bits {@code from} to {@code to} (inclusive)
+     */
+    private static long rangeMask(int from, int to) {
+        return (-1L >>> (Long.SIZE - 1 - to)) & (-1L << from);
+    }
+
+    @SuppressWarnings("unchecked")
+    private long[] tile(int y, long flags, int chunkX, int chunkZ, boolean create) {
+        final int indexY = (y - yMin) >> Y_BLOCK_SHIFT;
+        final long key = PreviewStorage.compressXYZ(chunkX >> TILE_SHIFT, chunkZ >> TILE_SHIFT, flags);
+        long[] tile = ((Long2ObjectMap<long[]>) TILES.getAcquire(tiles, indexY)).get(key);
+        if (tile != null || !create) {
+            return tile;
+        }
+
+        synchronized (createLock) {
+            final Long2ObjectMap<long[]> current = (Long2ObjectMap<long[]>) TILES.getAcquire(tiles, indexY);
+            tile = current.get(key);
+            if (tile == null) {
+                final Long2ObjectMap<long[]> copy = new Long2ObjectOpenHashMap<>(current, Hash.FAST_LOAD_FACTOR);
+                tile = new long[TILE_SIZE];
+                copy.put(key, tile);
+                TILES.setRelease(tiles, indexY, copy);
+            }
+        }
+        return tile;
+    }
+}
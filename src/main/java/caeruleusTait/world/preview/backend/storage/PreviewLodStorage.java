@@ -0,0 +1,160 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import net.minecraft.core.QuartPos;
+import net.minecraft.core.SectionPos;
+
+import java.util.Arrays;
+
+import static caeruleusTait.world.preview.backend.storage.PreviewStorage.FLAG_HEIGHT;
+import static caeruleusTait.world.preview.backend.storage.PreviewStorage.FLAG_STRUCT_START;
+
+/**
+ * Zoomed out (level of detail) versions of a {@link PreviewStorage}.
+ * <p>
+ * Level {@code n} stores one value per {@code 2^n x 2^n} chunks (a cell). Every level is a
+ * {@link PreviewStorage} of its own, which uses the cell coordinates as quart coordinates. Thus, the
+ * levels can be rendered exactly like the full resolution data. The Y coordinates are not scaled.
+ * <p>
+ * The levels are updated incrementally whenever full resolution data is added (see
+ * {@link #update(PreviewStorage, int, long, int, int, int)}). Heights are combined with the maximum, all
+ * other layers use the most common value. Additionally, cells can be sampled directly, so that large
+ * areas can be previewed without generating the full resolution data first.
+ */
+public class PreviewLodStorage {
+    public static final int MAX_LEVEL = 4;
+
+    private final PreviewStorage[] levels = new PreviewStorage[MAX_LEVEL];
+
+    public PreviewLodStorage(int yMin, int yMax) {
+        for (int i = 0; i < levels.length; ++i) {
+            levels[i] = new PreviewStorage(yMin, yMax, 1);
+        }
+    }
+
+    /**
+     * @param level 1 to {@link #MAX_LEVEL}
+     */
+    public PreviewStorage level(int level) {
+        return levels[level - 1];
+    }
+
+    /**
+     * See {@link PreviewStorage#freeSections()}
+     */
+    void freeSections() {
+        for (PreviewStorage level : levels) {
+            level.freeSections();
+        }
+    }
+
+    public static int blockToCell(int block, int level) {
+        return block >> (SectionPos.SECTION_BITS + level);
+    }
+
+    /**
+     * The block coordinate of the center of a cell
+     */
+    public static int cellCenterToBlock(int cell, int level) {
+        return (cell << (SectionPos.SECTION_BITS + level)) + ((SectionPos.SECTION_SIZE << level) >> 1);
+    }
+
+    /**
+     * Recalculates all cells that cover the chunks {@code [chunkX, chunkX + chunkSpan) x [chunkZ, chunkZ + chunkSpan)}
+     * from the data in {@code source}.
+     */
+    public void update(PreviewStorage source, int quartY, long flags, int chunkX, int chunkZ, int chunkSpan) {
+        if (flags == FLAG_STRUCT_START) {
+            return;
+        }
+
+        final boolean useMax = flags == FLAG_HEIGHT;
+        final short[] buffer = new short[PreviewSection.SIZE];
+
+        int minCellX = chunkX;
+        int minCellZ = chunkZ;
+        int maxCellX = chunkX + chunkSpan - 1;
+        int maxCellZ = chunkZ + chunkSpan - 1;
+        for (int level = 1; level <= MAX_LEVEL; ++level) {
+            minCellX >>= 1;
+            minCellZ >>= 1;
+            maxCellX >>= 1;
+            maxCellZ >>= 1;
+
+            final PreviewStorage target = level(level);
+            for (int cellX = minCellX; cellX <= maxCellX; ++cellX) {
+                for (int cellZ = minCellZ; cellZ <= maxCellZ; ++cellZ) {
+                    final PreviewSection section = target.section4(cellX, quartY, cellZ, flags);
+                    final int localX = cellX - section.quartX();
+                    final int localZ = cellZ - section.quartZ();
+
+                    // Other workers may update the same cell concurrently. Since they always read the data after
+                    // writing their own, the last one to get the lock sees everything.
+                    synchronized (section) {
+                        final int count = level == 1
+                                ? readSource(source, quartY, flags, cellX, cellZ, buffer)
+                                : readChildren(level(level - 1), quartY, flags, cellX, cellZ, buffer);
+                        final short value = combine(buffer, count, useMax);
+                        if (value != Short.MIN_VALUE && section.get(localX, localZ) != value) {
+                            section.set(localX, localZ, value);
+                            section.markChanged();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the full resolution data of a level 1 cell
+     */
+    private static int readSource(PreviewStorage source, int quartY, long flags, int cellX, int cellZ, short[] out) {
+        final int quartX = QuartPos.fromSection(cellX << 1);
+        final int quartZ = QuartPos.fromSection(cellZ << 1);
+        final int size = QuartPos.fromSection(2);
+        final PreviewSection section = source.section4(quartX, quartY, quartZ, flags);
+        final int stride = section.quartStride();
+        final int localX = quartX - section.quartX();
+        final int localZ = quartZ - section.quartZ();
+        section.readRegion(localX, localZ, localX + size, localZ + size, stride, out);
+        final int countXZ = (size + stride - 1) / stride;
+        return countXZ * countXZ;
+    }
+
+    private static int readChildren(PreviewStorage children, int quartY, long flags, int cellX, int cellZ, short[] out) {
+        int count = 0;
+        for (int x = 0; x < 2; ++x) {
+            for (int z = 0; z < 2; ++z) {
+                out[count++] = children.getRawData4((cellX << 1) + x, quartY, (cellZ << 1) + z, flags);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Either the maximum or the most common value, ignoring unset values. Modifies {@code values}.
+     */
+    private static short combine(short[] values, int count, boolean useMax) {
+        if (useMax) {
+            short res = Short.MIN_VALUE;
+            for (int i = 0; i < count; ++i) {
+                res = (short) Math.max(res, values[i]);
+            }
+            return res;
+        }
+
+        Arrays.sort(values, 0, count);
+        short res = Short.MIN_VALUE;
+        int resCount = 0;
+        int runStart = 0;
+        for (int i = 1; i <= count; ++i) {
+            if (i == count || values[i] != values[runStart]) {
+                if (values[runStart] != Short.MIN_VALUE && i - runStart > resCount) {
+                    res = values[runStart];
+                    resCount = i - runStart;
+                }
+                runStart = i;
+            }
+        }
+        return res;
+    }
+}
@@ -5,11 +5,11 @@ import net.minecraft.core.QuartPos;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.levelgen.structure.BoundingBox;
 
-import java.io.Serializable;
-import java.util.BitSet;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.List;
 
-public abstract class PreviewSection implements Serializable {
+public abstract class PreviewSection {
     public static final int SHIFT = 6;
     public static final int SIZE = 1 << SHIFT;
     public static final int OFFSET = 1 << (SHIFT - 1);
@@ -22,13 +22,59 @@ public abstract class PreviewSection implements Serializable {
     public static final int QUART_TO_SECTION_SHIFT = 2;
     public static final int SECTION_SIZE = SIZE >> QUART_TO_SECTION_SHIFT;
 
+    private static final int EVICTED = -1;
+
+    private static final VarHandle VERSION;
+    private static final VarHandle PINS;
+    private static final VarHandle COMPLETED = MethodHandles.arrayElementVarHandle(long[].class);
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(PreviewSection.class, "version", int.class);
+            PINS = MethodHandles.lookup().findVarHandle(PreviewSection.class, "pins", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private final int quartX;
     private final int quartZ;
 
     private final int chunkX;
     private final int chunkZ;
 
-    private final BitSet completed = new BitSet(SECTION_SIZE * HALF_SIZE);
+    /**
+     * One bit per chunk, persisted with the section. Queries should use {@link PreviewCompletionIndex} instead.
+     */
+    private final long[] completed = new long[(SECTION_SIZE * HALF_SIZE) / Long.SIZE];
+
+    /**
+     * Incremented whenever the data of the section changes. Not persisted, readers only compare it
+     * against a value they have seen before.
+     */
+    private volatile int version;
+
+    /**
+     * A version at which the data only came from the cache files, see {@link #markMerged(int)}. The journal does
+     * not have to write the section at this version.
+     */
+    private volatile int storedVersion = -1;
+
+    /**
+     * The number of work units that are about to write to this section, or {@link #EVICTED}. Pinned sections
+     * are never evicted.
+     */
+    private volatile int pins;
+
+    /**
+     * The {@link PreviewStoragePool#epoch()} of the last time the section was rendered
+     */
+    private int lastUsed = PreviewStoragePool.epoch();
+
+    /**
+     * The version of the last {@link #compact()}. Only accessed on the IO thread.
+     */
+    private int compactedVersion = -1;
 
     protected PreviewSection(int quartX, int quartZ) {
         this.quartX = quartX & MASK;
@@ -39,10 +85,142 @@ public abstract class PreviewSection implements Serializable {
 
     public abstract int size();
 
+    /**
+     * The distance between two stored values in quarts
+     */
+    public int quartStride() {
+        return SIZE / size();
+    }
+
     public abstract short get(int x, int z);
 
     public abstract void set(int x, int z, short biome);
 
+    /**
+     * Reads every {@code stride}-th value of the area {@code [minX, maxX) x [minZ, maxZ)} into {@code out}.
+     * <p>
+     * The values are stored X-major: {@code out[i * countZ + j]} is the value at
+     * {@code (minX + i * stride, minZ + j * stride)} with {@code countZ = ceil((maxZ - minZ) / stride)}.
+     */
+    public void readRegion(int minX, int minZ, int maxX, int maxZ, int stride, short[] out) {
+        int i = 0;
+        for (int x = minX; x < maxX; x += stride) {
+            for (int z = minZ; z < maxZ; z += stride) {
+                out[i++] = get(x, z);
+            }
+        }
+    }
+
+    /**
+     * The current version of the section data. Read this BEFORE reading the data, so that concurrent
+     * changes are never missed.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Must be called AFTER changing the data. Calling {@link #set(int, int, short)} alone does not do
+     * this, so that bulk updates only have to pay for it once.
+     */
+    public void markChanged() {
+        VERSION.getAndAdd(this, 1);
+    }
+
+    /**
+     * Like {@link #markChanged()}, but for data that was merged from the cache (see {@link #mergeFrom}). If the
+     * section had no changes before, it is still equal to the stored data afterward.
+     *
+     * @param versionBefore the version that was read before merging
+     */
+    protected void markMerged(int versionBefore) {
+        if (versionBefore == 0 && VERSION.compareAndSet(this, 0, 1)) {
+            storedVersion = 1;
+        } else {
+            markChanged();
+        }
+    }
+
+    /**
+     * {@code true} if the section did not change since it was merged from the cache at {@code version}
+     */
+    boolean isStored(int version) {
+        return version == storedVersion;
+    }
+
+    /**
+     * Keeps the section in memory until {@link #unpin()} is called. Fails if the section is being evicted, it
+     * must be looked up in the storage again then (see {@link PreviewStorage#pinnedSection4}).
+     */
+    boolean pin() {
+        int current = pins;
+        while (current != EVICTED) {
+            final int witness = (int) PINS.compareAndExchange(this, current, current + 1);
+            if (witness == current) {
+                return true;
+            }
+            current = witness;
+        }
+        return false;
+    }
+
+    /**
+     * Must be called AFTER the last change to the data was marked with {@link #markChanged()}
+     */
+    public void unpin() {
+        PINS.getAndAdd(this, -1);
+    }
+
+    /**
+     * Stops the section from being pinned, unless it is pinned already. Must be undone with
+     * {@link #unmarkEvicted()} if the section is kept after all. Only called on the IO thread.
+     */
+    boolean markEvicted() {
+        return PINS.compareAndSet(this, 0, EVICTED);
+    }
+
+    void unmarkEvicted() {
+        pins = 0;
+    }
+
+    /**
+     * Must be called whenever the section is rendered, so that it is not evicted
+     */
+    public void markUsed() {
+        lastUsed = PreviewStoragePool.epoch();
+    }
+
+    int lastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Calls {@link #compact()} once all chunks of the section are completed, and then only again after the data
+     * changed. Called periodically on the IO thread (see {@link PreviewStoragePool}).
+     */
+    final void compactIfCompleted() {
+        final int current = version;
+        if (current == compactedVersion || !isFullyCompleted()) {
+            return;
+        }
+        compactedVersion = current;
+        compact();
+    }
+
+    /**
+     * Sections may switch to a smaller representation of their data here, see {@link #compactIfCompleted()}
+     */
+    void compact() {
+    }
+
+    /**
+     * A rough estimate of the memory used by this section in bytes (on and off heap)
+     */
+    public long estimateMemory() {
+        // Object headers, fields and the completed bits
+        return 160;
+    }
+
     public abstract List<PreviewStruct> structures();
 
     public abstract void addStructure(PreviewStruct structureData);
@@ -50,15 +228,64 @@ public abstract class PreviewSection implements Serializable {
     /**
      * Chunk coords
      */
-    public synchronized boolean isCompleted(ChunkPos chunkPos) {
-        return completed.get((chunkPos.x - chunkX) * SECTION_SIZE + (chunkPos.z - chunkZ));
+    public boolean isCompleted(ChunkPos chunkPos) {
+        final int bit = (chunkPos.x - chunkX) * SECTION_SIZE + (chunkPos.z - chunkZ);
+        return ((long) COMPLETED.getAcquire(completed, bit >> 6) & (1L << bit)) != 0;
+    }
+
+    private boolean isFullyCompleted() {
+        for (int i = 0; i < (SECTION_SIZE * SECTION_SIZE) / Long.SIZE; ++i) {
+            if ((long) COMPLETED.getAcquire(completed, i) != -1L) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Chunk coords
+     * Chunk coords. Lock-free, may be called from any thread.
      */
-    public synchronized void markCompleted(ChunkPos chunkPos) {
-        completed.set((chunkPos.x - chunkX) * SECTION_SIZE + (chunkPos.z - chunkZ));
+    public void markCompleted(ChunkPos chunkPos) {
+        final int bit = (chunkPos.x - chunkX) * SECTION_SIZE + (chunkPos.z - chunkZ);
+        COMPLETED.getAndBitwiseOrRelease(completed, bit >> 6, 1L << bit);
+    }
+
+    /**
+     * Adds the data of {@code other}, which covers the same area and was loaded from the cache, to this
+     * section. Values that are already set are kept.
+     */
+    void mergeFrom(PreviewSection other) {
+        final int versionBefore = version;
+        final int stride = quartStride();
+        final int count = SIZE / stride;
+        final short[] own = new short[count * count];
+        final short[] loaded = new short[count * count];
+        readRegion(0, 0, SIZE, SIZE, stride, own);
+        other.readRegion(0, 0, SIZE, SIZE, stride, loaded);
+        int i = 0;
+        for (int x = 0; x < SIZE; x += stride) {
+            for (int z = 0; z < SIZE; z += stride, ++i) {
+                if (own[i] == Short.MIN_VALUE && loaded[i] != Short.MIN_VALUE) {
+                    set(x, z, loaded[i]);
+                }
+            }
+        }
+        loadCompletedWords(other.completedWords());
+        markMerged(versionBefore);
+    }
+
+    long[] completedWords() {
+        final long[] res = new long[completed.length];
+        for (int i = 0; i < res.length; ++i) {
+            res[i] = (long) COMPLETED.getAcquire(completed, i);
+        }
+        return res;
+    }
+
+    void loadCompletedWords(long[] words) {
+        for (int i = 0; i < Math.min(words.length, completed.length); ++i) {
+            COMPLETED.getAndBitwiseOrRelease(completed, i, words[i]);
+        }
     }
 
     public AccessData calcQuartOffsetData(int minQuartX, int minQuartZ, int maxQuartX, int maxQuartZ) {
@@ -92,7 +319,7 @@ public abstract class PreviewSection implements Serializable {
         return QuartPos.toBlock(quartZ);
     }
 
-    public record AccessData(int minX, int minZ, int maxX, int maxZ, boolean continueX, boolean continueZ) implements Serializable {
+    public record AccessData(int minX, int minZ, int maxX, int maxZ, boolean continueX, boolean continueZ) {
     }
 
     public record PreviewStruct(BlockPos center, short structureId, BoundingBox boundingBox) {
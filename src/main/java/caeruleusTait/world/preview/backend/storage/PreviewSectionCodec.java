@@ -0,0 +1,286 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the values of a section that is no longer changing into an immutable, smaller representation
+ * (see {@link PreviewSectionCompressed}).
+ * <p>
+ * The palette levels of {@link PreviewSectionCompressed} work well for biomes, but continuous layers like
+ * heights and raw noise quickly exceed 256 distinct values and are stored uncompressed. Every codec is tried
+ * on the actual values and the smallest result is used, so each layer ends up with the codec that suits it.
+ */
+public interface PreviewSectionCodec {
+    List<PreviewSectionCodec> CODECS = List.of(new RunLength(), new DeltaVarint(), new FrameOfReference());
+
+    /**
+     * @param values {@code size * size} values, X-major
+     * @return {@code null} if the codec can not (or should not) encode the values
+     */
+    @Nullable Encoded encode(short[] values, int size);
+
+    /**
+     * Encodes {@code values} with all {@link #CODECS}
+     *
+     * @return the smallest encoding or {@code null} if no codec applies
+     */
+    static @Nullable Encoded encodeBest(short[] values, int size) {
+        Encoded best = null;
+        for (PreviewSectionCodec codec : CODECS) {
+            final Encoded encoded = codec.encode(values, size);
+            if (encoded != null && (best == null || encoded.estimateMemory() < best.estimateMemory())) {
+                best = encoded;
+            }
+        }
+        return best;
+    }
+
+    interface Encoded {
+        /**
+         * A single value. Prefer {@link #decodeRow(int, short[])} for bulk reads, some codecs have to decode
+         * the start of the row first.
+         */
+        short get(int idx);
+
+        /**
+         * Decodes all values into {@code out}
+         */
+        void decode(short[] out);
+
+        /**
+         * Decodes the {@code size} values of row {@code row} into the start of {@code out}
+         */
+        void decodeRow(int row, short[] out);
+
+        /**
+         * In bytes, comparable to {@link PreviewSection#estimateMemory()}
+         */
+        long estimateMemory();
+    }
+
+    /**
+     * Runs of equal values. Good for uniform or sparse layers like intersections.
+     */
+    class RunLength implements PreviewSectionCodec {
+        @Override
+        public @Nullable Encoded encode(short[] values, int size) {
+            int runs = 1;
+            for (int i = 1; i < values.length; ++i) {
+                if (values[i] != values[i - 1]) {
+                    ++runs;
+                }
+            }
+            // A run costs three values
+            if (runs * 3 >= values.length) {
+                return null;
+            }
+
+            final short[] runValues = new short[runs];
+            final int[] runEnds = new int[runs];
+            int run = 0;
+            for (int i = 1; i <= values.length; ++i) {
+                if (i == values.length || values[i] != values[i - 1]) {
+                    runValues[run] = values[i - 1];
+                    runEnds[run++] = i;
+                }
+            }
+            return new Runs(runValues, runEnds, size);
+        }
+
+        /**
+         * @param runEnds the exclusive end index of each run
+         */
+        private record Runs(short[] runValues, int[] runEnds, int size) implements Encoded {
+            @Override
+            public short get(int idx) {
+                final int found = Arrays.binarySearch(runEnds, idx);
+                return runValues[found >= 0 ? found + 1 : -found - 1];
+            }
+
+            @Override
+            public void decode(short[] out) {
+                int start = 0;
+                for (int i = 0; i < runValues.length; ++i) {
+                    Arrays.fill(out, start, runEnds[i], runValues[i]);
+                    start = runEnds[i];
+                }
+            }
+
+            @Override
+            public void decodeRow(int row, short[] out) {
+                final int start = row * size;
+                final int end = start + size;
+                final int found = Arrays.binarySearch(runEnds, start);
+                int run = found >= 0 ? found + 1 : -found - 1;
+                int i = start;
+                while (i < end) {
+                    final int runEnd = Math.min(runEnds[run], end);
+                    Arrays.fill(out, i - start, runEnd - start, runValues[run]);
+                    i = runEnd;
+                    ++run;
+                }
+            }
+
+            @Override
+            public long estimateMemory() {
+                return 32 + 6L * runValues.length;
+            }
+        }
+    }
+
+    /**
+     * The difference to the previous value of the same row as a zigzag varint. Good for smooth layers like
+     * heights and noise, where neighbouring values are close to each other.
+     */
+    class DeltaVarint implements PreviewSectionCodec {
+        @Override
+        public @Nullable Encoded encode(short[] values, int size) {
+            final byte[] buffer = new byte[values.length * 3];
+            final int[] rowOffsets = new int[size];
+            int pos = 0;
+            for (int row = 0; row < size; ++row) {
+                rowOffsets[row] = pos;
+                int previous = 0;
+                for (int i = row * size; i < (row + 1) * size; ++i) {
+                    final int delta = values[i] - previous;
+                    int zigzag = (delta << 1) ^ (delta >> 31);
+                    while ((zigzag & ~0x7F) != 0) {
+                        buffer[pos++] = (byte) ((zigzag & 0x7F) | 0x80);
+                        zigzag >>>= 7;
+                    }
+                    buffer[pos++] = (byte) zigzag;
+                    previous = values[i];
+                }
+            }
+            return new Deltas(Arrays.copyOf(buffer, pos), rowOffsets, size);
+        }
+
+        private record Deltas(byte[] data, int[] rowOffsets, int size) implements Encoded {
+            @Override
+            public short get(int idx) {
+                int pos = rowOffsets[idx / size];
+                int value = 0;
+                for (int i = idx % size; i >= 0; --i) {
+                    int zigzag = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[pos++];
+                        zigzag |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    value += (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+                return (short) value;
+            }
+
+            @Override
+            public void decode(short[] out) {
+                int pos = 0;
+                for (int row = 0; row < size; ++row) {
+                    pos = decodeRow(pos, out, row * size);
+                }
+            }
+
+            @Override
+            public void decodeRow(int row, short[] out) {
+                decodeRow(rowOffsets[row], out, 0);
+            }
+
+            /**
+             * @return the position after the row
+             */
+            private int decodeRow(int pos, short[] out, int outOffset) {
+                int value = 0;
+                for (int i = outOffset; i < outOffset + size; ++i) {
+                    int zigzag = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[pos++];
+                        zigzag |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    value += (zigzag >>> 1) ^ -(zigzag & 1);
+                    out[i] = (short) value;
+                }
+                return pos;
+            }
+
+            @Override
+            public long estimateMemory() {
+                return 48 + data.length + 4L * rowOffsets.length;
+            }
+        }
+    }
+
+    /**
+     * The offset to the minimum, bit packed with as few bits as the range of the values needs. Good for
+     * layers with a narrow range but many distinct values. Unset values get their own code.
+     */
+    class FrameOfReference implements PreviewSectionCodec {
+        @Override
+        public @Nullable Encoded encode(short[] values, int size) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            boolean hasUnset = false;
+            for (short value : values) {
+                if (value == Short.MIN_VALUE) {
+                    hasUnset = true;
+                    continue;
+                }
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (min > max) {
+                // Nothing is set
+                min = max = 0;
+            }
+
+            final int unsetCode = max - min + 1;
+            final int codes = unsetCode + (hasUnset ? 1 : 0);
+            final int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(codes - 1));
+            if (bits >= Short.SIZE) {
+                return null;
+            }
+
+            final int valuesPerLong = Long.SIZE / bits;
+            final long[] packed = new long[(values.length + valuesPerLong - 1) / valuesPerLong];
+            for (int i = 0; i < values.length; ++i) {
+                final long code = values[i] == Short.MIN_VALUE ? unsetCode : values[i] - min;
+                packed[i / valuesPerLong] |= code << ((i % valuesPerLong) * bits);
+            }
+            return new Packed(packed, bits, valuesPerLong, min, unsetCode, size);
+        }
+
+        private record Packed(long[] packed, int bits, int valuesPerLong, int min, int unsetCode, int size) implements Encoded {
+            @Override
+            public short get(int idx) {
+                final int code = (int) ((packed[idx / valuesPerLong] >>> ((idx % valuesPerLong) * bits)) & ((1L << bits) - 1));
+                return code == unsetCode ? Short.MIN_VALUE : (short) (code + min);
+            }
+
+            @Override
+            public void decode(short[] out) {
+                for (int i = 0; i < out.length; ++i) {
+                    out[i] = get(i);
+                }
+            }
+
+            @Override
+            public void decodeRow(int row, short[] out) {
+                for (int i = 0; i < size; ++i) {
+                    out[i] = get(row * size + i);
+                }
+            }
+
+            @Override
+            public long estimateMemory() {
+                return 48 + 8L * packed.length;
+            }
+        }
+    }
+}
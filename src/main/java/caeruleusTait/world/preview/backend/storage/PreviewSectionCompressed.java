@@ -2,26 +2,64 @@ package caeruleusTait.world.preview.backend.storage;
 
 import org.apache.commons.lang3.NotImplementedException;
 
-import java.io.Serial;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Arrays;
 import java.util.List;
-
+import java.util.function.UnaryOperator;
+
+/**
+ * Stores the values of a section with as few bits as the number of distinct values needs.
+ * <p>
+ * All data is held by an immutable {@link State}. Reads take one snapshot of it and never block. Writes update
+ * single values of its arrays in place with CAS. Changing the compression level (or encoding the values, see
+ * {@link #compact()}) publishes a new state instead. While it is created, the old state is frozen, so that
+ * no concurrent write to its arrays is lost.
+ */
 public abstract class PreviewSectionCompressed extends PreviewSection {
-    @Serial
-    private static final long serialVersionUID = 6458820535476205432L;
+    private static final VarHandle STATE;
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(short[].class);
+
+    /**
+     * One decoded row of an encoded state, so that {@link #readRegion} does not allocate
+     */
+    private static final ThreadLocal<short[]> ROW_BUFFER = ThreadLocal.withInitial(() -> new short[SIZE]);
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(PreviewSectionCompressed.class, "state", State.class);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
     private final int size;
 
-    private short[] data = new short[1];
+    private volatile State state;
 
-    private short[] mapData = new short[0];
+    private short lastIdx = 0;
 
-    private transient short lastIdx = 0;
+    /**
+     * The arrays never change once the state is published, only their values do.
+     * <ul>
+     *     <li>{@code mapData.length == 0}: the entire section only contains the single value {@code data[0]}</li>
+     *     <li>{@code mapData.length == 1}: there is no compression, {@code data} holds the raw values</li>
+     *     <li>{@code mapData.length == 4, 16, 256}: {@code data} holds 2, 4 or 8 bit indices into {@code mapData}</li>
+     *     <li>{@code encoded != null}: the values are encoded, see {@link PreviewSectionCodec}</li>
+     * </ul>
+     *
+     * @param frozen the state is being replaced, writers must wait for the new one
+     */
+    private record State(short[] mapData, short[] data, PreviewSectionCodec.Encoded encoded, boolean frozen) {
+        State frozenCopy() {
+            return new State(mapData, data, encoded, true);
+        }
+    }
 
     public PreviewSectionCompressed(int quartX, int quartZ, int size) {
         super(quartX, quartZ);
         this.size = size;
-        data[0] = Short.MIN_VALUE;
+        this.state = new State(new short[0], new short[]{Short.MIN_VALUE}, null, false);
     }
 
     //   ________  _________ _
@@ -76,20 +114,16 @@ public abstract class PreviewSectionCompressed extends PreviewSection {
     public abstract int xzToIdx(int x, int z);
 
     public short get(int x, int z) {
-        final int idx = xzToIdx(x, z);
-        // Using synchronized is expensive. Solution: Only require eventual correctness for
-        // reading and write the compression change in such a way to decrease the risk of
-        // IndexOutOfBoundsException as much as possible.
-        //
-        // If still something goes wrong, catch the IndexOutOfBoundsException and return MIN_VALUE.
-        try {
-            return getReal(idx);
-        } catch (IndexOutOfBoundsException e) {
-            return Short.MIN_VALUE;
-        }
+        return getReal(state, xzToIdx(x, z));
     }
 
-    private short getReal(int idx) {
+    private static short getReal(State s, int idx) {
+        if (s.encoded != null) {
+            return s.encoded.get(idx);
+        }
+
+        final short[] mapData = s.mapData;
+        final short[] data = s.data;
         return switch (mapData.length) {
             // The entire section only contains one single value
             case 0 -> data[0];
@@ -122,73 +156,198 @@ public abstract class PreviewSectionCompressed extends PreviewSection {
     }
 
 
-    private void internalSetData(int x, int z, short value) {
-        final int idx = xzToIdx(x, z);
-        switch (mapData.length) {
-            // The entire section only contains one single value
-            case 0 -> data[0] = value;
+    /**
+     * Decodes the entire region at once, with one loop per compression level.
+     */
+    @Override
+    public void readRegion(int minX, int minZ, int maxX, int maxZ, int stride, short[] out) {
+        final int shift = Integer.numberOfTrailingZeros(SIZE / size);
+        final State s = state;
+        if (s.encoded != null) {
+            // Only decode the rows that are read, each one once
+            final short[] rowValues = ROW_BUFFER.get();
+            int decodedRow = -1;
+            int i = 0;
+            for (int x = minX; x < maxX; x += stride) {
+                final int row = x >> shift;
+                if (row != decodedRow) {
+                    s.encoded.decodeRow(row, rowValues);
+                    decodedRow = row;
+                }
+                for (int z = minZ; z < maxZ; z += stride) {
+                    out[i++] = rowValues[z >> shift];
+                }
+            }
+            return;
+        }
 
-            // There is no cache (magic array length 1)
-            case 1 -> data[idx] = value;
+        final short[] m = s.mapData;
+        final short[] d = s.data;
+        if (m.length == 0) {
+            final int countX = (maxX - minX + stride - 1) / stride;
+            final int countZ = (maxZ - minZ + stride - 1) / stride;
+            Arrays.fill(out, 0, countX * countZ, d[0]);
+            return;
+        }
+
+        int i = 0;
+        for (int x = minX; x < maxX; x += stride) {
+            final int rowIdx = (x >> shift) * size;
+            switch (m.length) {
+                case 1 -> {
+                    for (int z = minZ; z < maxZ; z += stride) {
+                        out[i++] = d[rowIdx + (z >> shift)];
+                    }
+                }
+                case 4 -> {
+                    for (int z = minZ; z < maxZ; z += stride) {
+                        final int idx = rowIdx + (z >> shift);
+                        out[i++] = m[(d[idx >> 3] >> ((idx & 0b111) << 1)) & 0b11];
+                    }
+                }
+                case 16 -> {
+                    for (int z = minZ; z < maxZ; z += stride) {
+                        final int idx = rowIdx + (z >> shift);
+                        out[i++] = m[(d[idx >> 2] >> ((idx & 0b11) << 2)) & 0b1111];
+                    }
+                }
+                default -> {
+                    for (int z = minZ; z < maxZ; z += stride) {
+                        final int idx = rowIdx + (z >> shift);
+                        out[i++] = m[(d[idx >> 1] >> ((idx & 0b1) << 3)) & 0b11111111];
+                    }
+                }
+            }
+        }
+    }
 
+    /**
+     * Writes the map index {@code mapIdx} into the packed {@code data} of a compressed level
+     */
+    private static void internalSetData(short[] data, int mapLength, int idx, int mapIdx) {
+        final int didx;
+        final int shift;
+        final int mask;
+        switch (mapLength) {
             // First compression level (oct - 4 unique values | 2 bit per value)
             case 4 -> {
-                final int didx = idx >> 3;
-                final int shift = (idx & 0b111) << 1;
-                final int mask = ~(0b11 << shift);
-                data[didx] = (short) ((data[didx] & mask) | (value & 0b11) << shift);
+                didx = idx >> 3;
+                shift = (idx & 0b111) << 1;
+                mask = 0b11;
             }
 
             // Second compression level (quart - 16 unique values | 4 bit per value)
             case 16 -> {
-                final int didx = idx >> 2;
-                final int shift = (idx & 0b11) << 2;
-                final int mask = ~(0b1111 << shift);
-                data[didx] = (short) ((data[didx] & mask) | (value & 0b1111) << shift);
+                didx = idx >> 2;
+                shift = (idx & 0b11) << 2;
+                mask = 0b1111;
             }
 
             // Third compression level (quart - 256 unique values | 8 bit per value)
             case 256 -> {
-                final int didx = idx >> 1;
-                final int shift = (idx & 0b1) << 3;
-                final int mask = ~(0b11111111 << shift);
-                data[didx] = (short) ((data[didx] & mask) | (value & 0b11111111) << shift);
+                didx = idx >> 1;
+                shift = (idx & 0b1) << 3;
+                mask = 0b11111111;
             }
-            default -> throw new IllegalStateException("Unexpected value: " + mapData.length);
+            default -> throw new IllegalStateException("Unexpected value: " + mapLength);
         }
+
+        // Other values of the same word may change concurrently
+        short word;
+        short newWord;
+        do {
+            word = (short) VALUES.getVolatile(data, didx);
+            newWord = (short) ((word & ~(mask << shift)) | (mapIdx & mask) << shift);
+        } while (!VALUES.compareAndSet(data, didx, word, newWord));
     }
 
     /**
-     * Calculates the {@link #mapData} index for a specific value. If the value
-     * is not already present, the new value is appended to the map
-     * <p>
-     * If the {@link #mapData} is already full, the compression will be migrated
-     * to the next level.
+     * Calculates the map index for a specific value. If the value is not already present, the new value is
+     * appended to the map.
+     *
+     * @return {@code -1} if the map is full and the compression has to be migrated to the next level
      */
-    private short cacheMapIdx(short value) {
-        // Check cache
-        if (mapData[lastIdx] == value) {
-            return lastIdx;
+    private int cacheMapIdx(short[] mapData, short value) {
+        // Check cache, it may belong to the map of another state
+        final short cached = lastIdx;
+        if (cached < mapData.length && mapData[cached] == value) {
+            return cached;
         }
 
         // Find or insert in existing map
         for (short i = 0; i < mapData.length; ++i) {
-            if (value == mapData[i]) {
-                return lastIdx = i;
-            } else if (mapData[i] == Short.MIN_VALUE) {
-                mapData[i] = value;
+            final short current = mapData[i];
+            if (current == value) {
                 return lastIdx = i;
+            } else if (current == Short.MIN_VALUE) {
+                // Another writer may claim the same free entry
+                if (VALUES.compareAndSet(mapData, (int) i, Short.MIN_VALUE, value) || (short) VALUES.getVolatile(mapData, (int) i) == value) {
+                    return lastIdx = i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes {@code value} into the arrays of {@code s}
+     *
+     * @return {@code false} if the state has to be replaced first, see {@link #grow(State)}
+     */
+    private boolean write(State s, int idx, short value) {
+        if (s.encoded != null) {
+            return false;
+        }
+
+        final short[] mapData = s.mapData;
+        final short[] data = s.data;
+        switch (mapData.length) {
+            // Handle single value for entire section
+            case 0 -> {
+                if (data[0] == value) {
+                    return true;
+                }
+                return VALUES.compareAndSet(data, 0, Short.MIN_VALUE, value) || (short) VALUES.getVolatile(data, 0) == value;
+            }
+
+            // Handle no compression
+            case 1 -> {
+                VALUES.setVolatile(data, idx, value);
+                return true;
             }
+
+            // Some level of compression
+            default -> {
+                final int mapIdx = cacheMapIdx(mapData, value);
+                if (mapIdx < 0) {
+                    return false;
+                }
+                internalSetData(data, mapData.length, idx, mapIdx);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Migrates the compression to the next level (expensive). Encoded values are decoded into the
+     * smallest level that still has room for the value that is written next.
+     */
+    private State grow(State from) {
+        if (from.encoded != null) {
+            return palettize(from);
         }
 
-        // We need to grow the array (expensive)
+        final short[] mapData = snapshot(from.mapData);
+        final short[] data = snapshot(from.data);
         return switch (mapData.length) {
+            // new value --> expand to first level compression
+            case 0 -> new State(new short[]{data[0], Short.MIN_VALUE, Short.MIN_VALUE, Short.MIN_VALUE}, new short[(size * size) >> 3], null, false);
+
             // Grow first level compression to second level compression
             case 4 -> {
                 // Grow mapData
                 short[] newMapData = Arrays.copyOf(mapData, 16);
-                newMapData[4] = value;
-                Arrays.fill(newMapData, 5, 16, Short.MIN_VALUE);
+                Arrays.fill(newMapData, 4, 16, Short.MIN_VALUE);
 
                 // Grow data
                 short[] newData = new short[data.length * 2];
@@ -197,19 +356,14 @@ public abstract class PreviewSectionCompressed extends PreviewSection {
                     newData[i * 2 + 0] = (short) ((((s >> 0) & 0b11) << 0) | (((s >>  2) & 0b11) << 4) | (((s >>  4) & 0b11) << 8) | (((s >>  6) & 0b11) << 12));
                     newData[i * 2 + 1] = (short) ((((s >> 8) & 0b11) << 0) | (((s >> 10) & 0b11) << 4) | (((s >> 12) & 0b11) << 8) | (((s >> 14) & 0b11) << 12));
                 }
-
-                // Make the change as "atomic" as possible to reduce the risk of `IndexOutOfBoundsException`s
-                mapData = newMapData;
-                data = newData;
-                yield 4;
+                yield new State(newMapData, newData, null, false);
             }
 
             // Grow second level compression to third level compression
             case 16 -> {
                 // Grow mapData
                 short[] newMapData = Arrays.copyOf(mapData, 256);
-                newMapData[16] = value;
-                Arrays.fill(newMapData, 17, 256, Short.MIN_VALUE);
+                Arrays.fill(newMapData, 16, 256, Short.MIN_VALUE);
 
                 // Grow data
                 short[] newData = new short[data.length * 2];
@@ -218,10 +372,7 @@ public abstract class PreviewSectionCompressed extends PreviewSection {
                     newData[i * 2 + 0] = (short) ((((s >> 0) & 0b1111) << 0) | (((s >>  4) & 0b1111) << 8));
                     newData[i * 2 + 1] = (short) ((((s >> 8) & 0b1111) << 0) | (((s >> 12) & 0b1111) << 8));
                 }
-                // Make the change as "atomic" as possible to reduce the risk of `IndexOutOfBoundsException`s
-                mapData = newMapData;
-                data = newData;
-                yield 16;
+                yield new State(newMapData, newData, null, false);
             }
 
             // Fully expand third level to no compression
@@ -234,41 +385,92 @@ public abstract class PreviewSectionCompressed extends PreviewSection {
                     newData[i * 2 + 1] = mapData[((s >> 8) & 0b11111111)];
                 }
 
-                mapData = new short[1]; // There is no cache (magic array length 1)
-                data = newData;
-
-                // No more compression --> no map --> no index, just the raw value
-                yield value;
+                // There is no cache (magic array length 1)
+                yield new State(new short[1], newData, null, false);
             }
             default -> throw new IllegalStateException("Unexpected value: " + mapData.length);
         };
     }
 
+    private State palettize(State s) {
+        final short[] values = new short[size * size];
+        s.encoded.decode(values);
 
-    public synchronized void set(int x, int z, short biome) {
-        if (mapData.length == 0) {
-            // Handle single value for entire section
-
-            if (data[0] == biome) {
-                // Nothing to do
-            } else if (data[0] == Short.MIN_VALUE) {
-                data[0] = biome;
-            } else {
-                // new value --> expand to first level compression
-                short[] newData = new short[(size * size) >> 3];
-                Arrays.fill(newData, (short) 0);
-                mapData = new short[]{data[0], biome, Short.MIN_VALUE, Short.MIN_VALUE};
-                data = newData;
-                internalSetData(x, z, (short) 1);
+        final short[] distinct = values.clone();
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int i = 0; i < distinct.length; ++i) {
+            if (i == 0 || distinct[i] != distinct[i - 1]) {
+                distinct[count++] = distinct[i];
             }
-        } else if(mapData.length == 1) {
-            // Handle no compression
+        }
 
-            data[xzToIdx(x, z)] = biome;
-        } else {
-            // Some level of compression
+        // Short.MIN_VALUE marks free map entries, so unset values can only be stored uncompressed
+        if (distinct[0] == Short.MIN_VALUE || count >= 256) {
+            return new State(new short[1], values, null, false);
+        }
+
+        final int mapLength = count < 4 ? 4 : count < 16 ? 16 : 256;
+        final int bits = Integer.numberOfTrailingZeros(mapLength);
+        final int perWord = Short.SIZE / bits;
+        final short[] mapData = Arrays.copyOf(distinct, mapLength);
+        Arrays.fill(mapData, count, mapLength, Short.MIN_VALUE);
 
-            internalSetData(x, z, cacheMapIdx(biome));
+        final short[] data = new short[values.length / perWord];
+        for (int i = 0; i < values.length; ++i) {
+            final int mapIdx = Arrays.binarySearch(mapData, 0, count, values[i]);
+            data[i / perWord] |= (short) (mapIdx << ((i % perWord) * bits));
+        }
+        return new State(mapData, data, null, false);
+    }
+
+    /**
+     * Copies an array of a frozen state. The volatile reads see all writes that completed before it was frozen.
+     */
+    private static short[] snapshot(short[] array) {
+        final short[] res = new short[array.length];
+        for (int i = 0; i < array.length; ++i) {
+            res[i] = (short) VALUES.getVolatile(array, i);
+        }
+        return res;
+    }
+
+    /**
+     * Replaces the state {@code s} with {@code transition(s)}. The transition reads a frozen {@code s}.
+     *
+     * @return {@code false} if {@code s} is no longer the current state
+     */
+    private boolean replace(State s, UnaryOperator<State> transition) {
+        if (!STATE.compareAndSet(this, s, s.frozenCopy())) {
+            return false;
+        }
+        State next = s;
+        try {
+            next = transition.apply(s);
+        } finally {
+            state = next;
+        }
+        return true;
+    }
+
+    public void set(int x, int z, short biome) {
+        final int idx = xzToIdx(x, z);
+        while (true) {
+            final State s = state;
+            if (s.frozen) {
+                // Replacing only takes as long as copying the arrays
+                Thread.yield();
+                continue;
+            }
+            if (!write(s, idx, biome)) {
+                replace(s, this::grow);
+                continue;
+            }
+            if (state == s) {
+                return;
+            }
+            // The state was replaced concurrently, possibly from a copy without this write. Writing the
+            // same value again is harmless.
         }
     }
 
@@ -280,6 +482,47 @@ public abstract class PreviewSectionCompressed extends PreviewSection {
     //   \___/\_| \_/\_|    \___/
     //
 
+    /**
+     * Encodes the values with the smallest {@link PreviewSectionCodec}. Only done if that saves at least an
+     * eighth of the memory.
+     */
+    @Override
+    void compact() {
+        final State s = state;
+        if (s.frozen || s.encoded != null || s.mapData.length == 0) {
+            return;
+        }
+
+        // Encode outside the frozen state, so that writers only wait for the comparison
+        final State current = new State(snapshot(s.mapData), snapshot(s.data), null, false);
+        final short[] values = new short[size * size];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = getReal(current, i);
+        }
+        final PreviewSectionCodec.Encoded best = PreviewSectionCodec.encodeBest(values, size);
+        final long currentBytes = 2L * (current.data.length + current.mapData.length);
+        if (best == null || best.estimateMemory() * 8 > currentBytes * 7) {
+            return;
+        }
+
+        replace(s, x -> {
+            // Keep the state if it changed while encoding
+            if (!Arrays.equals(snapshot(x.data), current.data) || !Arrays.equals(snapshot(x.mapData), current.mapData)) {
+                return x;
+            }
+            return new State(new short[1], new short[0], best, false);
+        });
+    }
+
+    @Override
+    public long estimateMemory() {
+        final State s = state;
+        if (s.encoded != null) {
+            return super.estimateMemory() + s.encoded.estimateMemory();
+        }
+        return super.estimateMemory() + 2L * (s.data.length + s.mapData.length);
+    }
+
     @Override
     public int size() {
         return size;
@@ -295,7 +538,8 @@ public abstract class PreviewSectionCompressed extends PreviewSection {
         throw new NotImplementedException();
     }
 
-    public synchronized short mapSize() {
+    public short mapSize() {
+        final short[] mapData = state.mapData;
         short s;
 
         for (s = 0; s < mapData.length; s++) {
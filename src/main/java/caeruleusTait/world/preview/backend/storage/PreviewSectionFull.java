@@ -2,14 +2,10 @@ package caeruleusTait.world.preview.backend.storage;
 
 import org.apache.commons.lang3.NotImplementedException;
 
-import java.io.Serial;
 import java.util.Arrays;
 import java.util.List;
 
 public class PreviewSectionFull extends PreviewSection {
-    @Serial
-    private static final long serialVersionUID = 6458820535476205432L;
-
     private final short[] data = new short[SIZE * SIZE];
 
     public PreviewSectionFull(int quartX, int quartZ) {
@@ -25,6 +21,26 @@ public class PreviewSectionFull extends PreviewSection {
         data[x * SIZE + z] = biome;
     }
 
+    @Override
+    public void readRegion(int minX, int minZ, int maxX, int maxZ, int stride, short[] out) {
+        int i = 0;
+        for (int x = minX; x < maxX; x += stride) {
+            if (stride == 1) {
+                System.arraycopy(data, x * SIZE + minZ, out, i, maxZ - minZ);
+                i += maxZ - minZ;
+                continue;
+            }
+            for (int z = minZ; z < maxZ; z += stride) {
+                out[i++] = data[x * SIZE + z];
+            }
+        }
+    }
+
+    @Override
+    public long estimateMemory() {
+        return super.estimateMemory() + 2L * data.length;
+    }
+
     @Override
     public int size() {
         return SIZE;
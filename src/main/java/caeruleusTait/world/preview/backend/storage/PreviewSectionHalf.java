@@ -2,15 +2,11 @@ package caeruleusTait.world.preview.backend.storage;
 
 import org.apache.commons.lang3.NotImplementedException;
 
-import java.io.Serial;
 import java.util.Arrays;
 import java.util.List;
 
 public class PreviewSectionHalf extends PreviewSection {
 
-    @Serial
-    private static final long serialVersionUID = 2274224369048667840L;
-
     private final short[] data = new short[HALF_SIZE * HALF_SIZE];
 
     public PreviewSectionHalf(int quartX, int quartZ) {
@@ -28,6 +24,22 @@ public class PreviewSectionHalf extends PreviewSection {
         data[(x >> HALF_SHIFT) * HALF_SIZE + (z >> HALF_SHIFT)] = biome;
     }
 
+    @Override
+    public void readRegion(int minX, int minZ, int maxX, int maxZ, int stride, short[] out) {
+        int i = 0;
+        for (int x = minX; x < maxX; x += stride) {
+            final int rowIdx = (x >> HALF_SHIFT) * HALF_SIZE;
+            for (int z = minZ; z < maxZ; z += stride) {
+                out[i++] = data[rowIdx + (z >> HALF_SHIFT)];
+            }
+        }
+    }
+
+    @Override
+    public long estimateMemory() {
+        return super.estimateMemory() + 2L * data.length;
+    }
+
     @Override
     public int size() {
         return HALF_SIZE;
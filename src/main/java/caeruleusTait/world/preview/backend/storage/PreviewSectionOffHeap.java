@@ -0,0 +1,106 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import org.apache.commons.lang3.NotImplementedException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Like {@link PreviewSectionFull}, {@link PreviewSectionHalf} and {@link PreviewSectionQuarter}, but the values are
+ * stored in a slot of a {@link PreviewSectionSlab} instead of a {@code short[]}. The {@link PreviewBlock} of the
+ * section returns the slot to the slab once the section is removed (see {@link PreviewBlock#freeSlots()}).
+ */
+public abstract class PreviewSectionOffHeap extends PreviewSection {
+    private final int size;
+    private final int slot;
+    private final ByteBuffer slab;
+    private final int offset;
+
+    protected PreviewSectionOffHeap(int quartX, int quartZ, int size, PreviewSectionSlab slabs) {
+        super(quartX, quartZ);
+        this.size = size;
+        this.slot = slabs.allocate();
+        this.slab = slabs.slab(slot);
+        this.offset = slabs.offset(slot);
+        for (int i = 0; i < size * size; ++i) {
+            slab.putShort(offset + i * Short.BYTES, Short.MIN_VALUE);
+        }
+    }
+
+    /**
+     * The slab for the values of sections with the given {@link #quartStride()}
+     */
+    static PreviewSectionSlab slabFor(int quartStride) {
+        final int size = SIZE / quartStride;
+        return PreviewSectionSlab.forSlotBytes(size * size * Short.BYTES);
+    }
+
+    int slot() {
+        return slot;
+    }
+
+    public static class Full extends PreviewSectionOffHeap {
+        public Full(int quartX, int quartZ, PreviewSectionSlab slabs) {
+            super(quartX, quartZ, SIZE, slabs);
+        }
+
+        @Override
+        protected int xzToIdx(int x, int z) {
+            return x * SIZE + z;
+        }
+    }
+
+    public static class Half extends PreviewSectionOffHeap {
+        public Half(int quartX, int quartZ, PreviewSectionSlab slabs) {
+            super(quartX, quartZ, HALF_SIZE, slabs);
+        }
+
+        @Override
+        protected int xzToIdx(int x, int z) {
+            return (x >> HALF_SHIFT) * HALF_SIZE + (z >> HALF_SHIFT);
+        }
+    }
+
+    public static class Quarter extends PreviewSectionOffHeap {
+        public Quarter(int quartX, int quartZ, PreviewSectionSlab slabs) {
+            super(quartX, quartZ, SECTION_SIZE, slabs);
+        }
+
+        @Override
+        protected int xzToIdx(int x, int z) {
+            return (x >> QUART_TO_SECTION_SHIFT) * SECTION_SIZE + (z >> QUART_TO_SECTION_SHIFT);
+        }
+    }
+
+    protected abstract int xzToIdx(int x, int z);
+
+    @Override
+    public short get(int x, int z) {
+        return slab.getShort(offset + xzToIdx(x, z) * Short.BYTES);
+    }
+
+    @Override
+    public void set(int x, int z, short biome) {
+        slab.putShort(offset + xzToIdx(x, z) * Short.BYTES, biome);
+    }
+
+    @Override
+    public long estimateMemory() {
+        return super.estimateMemory() + (long) size * size * Short.BYTES;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<PreviewStruct> structures() {
+        throw new NotImplementedException();
+    }
+
+    @Override
+    public void addStructure(PreviewStruct structureData) {
+        throw new NotImplementedException();
+    }
+}
@@ -2,15 +2,11 @@ package caeruleusTait.world.preview.backend.storage;
 
 import org.apache.commons.lang3.NotImplementedException;
 
-import java.io.Serial;
 import java.util.Arrays;
 import java.util.List;
 
 public class PreviewSectionQuarter extends PreviewSection {
 
-    @Serial
-    private static final long serialVersionUID = -5498800134519414529L;
-
     private final short[] data = new short[SECTION_SIZE * SECTION_SIZE];
 
     public PreviewSectionQuarter(int quartX, int quartZ) {
@@ -28,6 +24,22 @@ public class PreviewSectionQuarter extends PreviewSection {
         data[(x >> QUART_TO_SECTION_SHIFT) * SECTION_SIZE + (z >> QUART_TO_SECTION_SHIFT)] = biome;
     }
 
+    @Override
+    public void readRegion(int minX, int minZ, int maxX, int maxZ, int stride, short[] out) {
+        int i = 0;
+        for (int x = minX; x < maxX; x += stride) {
+            final int rowIdx = (x >> QUART_TO_SECTION_SHIFT) * SECTION_SIZE;
+            for (int z = minZ; z < maxZ; z += stride) {
+                out[i++] = data[rowIdx + (z >> QUART_TO_SECTION_SHIFT)];
+            }
+        }
+    }
+
+    @Override
+    public long estimateMemory() {
+        return super.estimateMemory() + 2L * data.length;
+    }
+
     @Override
     public int size() {
         return SECTION_SIZE;
@@ -0,0 +1,110 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed size slots in large direct buffers for the values of {@link PreviewSectionOffHeap}.
+ * <p>
+ * Slots are handed out from the first slab that has a free one, so that the later slabs drain once fewer
+ * sections are used. A slab whose slots are all free is dropped (unless it is the last one), and its memory is
+ * released together with the buffer. The heap only contains the small section objects, and the GC never has to
+ * mark the values.
+ */
+class PreviewSectionSlab {
+    private static final int SLAB_BYTES = 1 << 22;
+
+    private static final Int2ObjectMap<PreviewSectionSlab> BY_SLOT_BYTES = new Int2ObjectOpenHashMap<>();
+
+    private final int slotBytes;
+    private final int slotsPerSlab;
+
+    /**
+     * The free slots of each slab, {@code null} for dropped slabs
+     */
+    private final List<IntArrayList> free = new ArrayList<>();
+    private int liveSlabs;
+
+    /**
+     * Copy-on-write, readers use the array they see without locking. Entries of dropped slabs are {@code null}.
+     */
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    private PreviewSectionSlab(int slotBytes) {
+        this.slotBytes = slotBytes;
+        this.slotsPerSlab = SLAB_BYTES / slotBytes;
+    }
+
+    static synchronized PreviewSectionSlab forSlotBytes(int slotBytes) {
+        return BY_SLOT_BYTES.computeIfAbsent(slotBytes, PreviewSectionSlab::new);
+    }
+
+    /**
+     * @return the id of a free slot, its content is undefined
+     */
+    synchronized int allocate() {
+        for (IntArrayList slabFree : free) {
+            if (slabFree != null && !slabFree.isEmpty()) {
+                return slabFree.popInt();
+            }
+        }
+
+        // Reuse the index of a dropped slab, so that the ids stay small
+        int index = free.indexOf(null);
+        if (index < 0) {
+            index = free.size();
+            free.add(null);
+        }
+        final ByteBuffer[] grown = Arrays.copyOf(slabs, Math.max(slabs.length, index + 1));
+        grown[index] = ByteBuffer.allocateDirect(slotsPerSlab * slotBytes);
+        slabs = grown;
+        ++liveSlabs;
+
+        final IntArrayList slabFree = new IntArrayList(slotsPerSlab);
+        for (int i = slotsPerSlab - 1; i > 0; --i) {
+            slabFree.add(index * slotsPerSlab + i);
+        }
+        free.set(index, slabFree);
+        return index * slotsPerSlab;
+    }
+
+    /**
+     * Must be called exactly once per allocated slot. The slot may be handed out again right away.
+     */
+    synchronized void release(int slot) {
+        final int index = slot / slotsPerSlab;
+        final IntArrayList slabFree = free.get(index);
+        slabFree.add(slot);
+        if (slabFree.size() == slotsPerSlab && liveSlabs > 1) {
+            free.set(index, null);
+            final ByteBuffer[] shrunk = slabs.clone();
+            shrunk[index] = null;
+            slabs = shrunk;
+            --liveSlabs;
+        }
+    }
+
+    /**
+     * The slab that contains {@code slot}, which must be allocated
+     */
+    ByteBuffer slab(int slot) {
+        return slabs[slot / slotsPerSlab];
+    }
+
+    /**
+     * The byte offset of {@code slot} in its slab
+     */
+    int offset(int slot) {
+        return (slot % slotsPerSlab) * slotBytes;
+    }
+
+    int slotBytes() {
+        return slotBytes;
+    }
+}
@@ -1,64 +1,12 @@
 package caeruleusTait.world.preview.backend.storage;
 
-import net.minecraft.core.BlockPos;
-import net.minecraft.world.level.levelgen.structure.BoundingBox;
 import org.apache.commons.lang3.NotImplementedException;
 
-import java.io.*;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class PreviewSectionStructure extends PreviewSection {
-    @Serial
-    private static final long serialVersionUID = -3170004481651979127L;
-
-    private transient List<PreviewStruct> structures = new ArrayList<>();
-
-    record SerializablePreviewStruct(int cX, int cY, int cZ,
-                                     short structureId,
-                                     int bbMinX, int bbMinY, int bbMinZ,
-                                     int bbMaxX, int bbMaxY, int bbMaxZ) implements Serializable {
-        static SerializablePreviewStruct fromStruct(PreviewStruct s) {
-            final BlockPos c = s.center();
-            final BoundingBox bb = s.boundingBox();
-            return new SerializablePreviewStruct(
-                    c.getX(), c.getY(), c.getZ(),
-                    s.structureId(),
-                    bb.minX(), bb.minY(), bb.minZ(),
-                    bb.maxX(), bb.maxY(), bb.maxZ()
-            );
-        }
-
-        PreviewStruct toStruct() {
-            return new PreviewStruct(
-                    new BlockPos(cX, cY, cZ),
-                    structureId,
-                    new BoundingBox(
-                            bbMinX, bbMinY, bbMinZ,
-                            bbMaxX, bbMaxY, bbMaxZ
-                    )
-            );
-        }
-    }
-
-    @Serial
-    private void writeObject(ObjectOutputStream oos) throws IOException {
-        oos.defaultWriteObject();
-        final SerializablePreviewStruct[] res = structures
-                .stream()
-                .map(SerializablePreviewStruct::fromStruct)
-                .toArray(SerializablePreviewStruct[]::new);
-        oos.writeObject(res);
-    }
-
-    @Serial
-    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
-        ois.defaultReadObject();
-        final SerializablePreviewStruct[] res = (SerializablePreviewStruct[]) ois.readObject();
-        structures = Arrays.stream(res).map(SerializablePreviewStruct::toStruct).collect(Collectors.toList());
-    }
+    private final List<PreviewStruct> structures = new ArrayList<>();
 
     public PreviewSectionStructure(int quartX, int quartZ) {
         super(quartX, quartZ);
@@ -74,6 +22,20 @@ public class PreviewSectionStructure extends PreviewSection {
         structures.add(structureData);
     }
 
+    @Override
+    void mergeFrom(PreviewSection other) {
+        final int versionBefore = version();
+        for (PreviewStruct x : other.structures()) {
+            synchronized (this) {
+                if (!structures.contains(x)) {
+                    structures.add(x);
+                }
+            }
+        }
+        loadCompletedWords(other.completedWords());
+        markMerged(versionBefore);
+    }
+
     @Override
     public short get(int x, int z) {
         throw new NotImplementedException();
@@ -84,6 +46,12 @@ public class PreviewSectionStructure extends PreviewSection {
         throw new NotImplementedException();
     }
 
+    @Override
+    public synchronized long estimateMemory() {
+        // The struct, its center and its bounding box
+        return super.estimateMemory() + 128L * structures.size();
+    }
+
     @Override
     public int size() {
         return structures.size();
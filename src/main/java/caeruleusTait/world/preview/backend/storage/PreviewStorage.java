@@ -1,5 +1,6 @@
 package caeruleusTait.world.preview.backend.storage;
 
+import caeruleusTait.world.preview.WorldPreview;
 import it.unimi.dsi.fastutil.Hash;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
@@ -7,16 +8,14 @@ import net.minecraft.core.BlockPos;
 import net.minecraft.core.QuartPos;
 import net.minecraft.world.level.ChunkPos;
 
-import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
 import java.util.List;
 
 import static caeruleusTait.world.preview.backend.WorkManager.Y_BLOCK_SHIFT;
 
-public class PreviewStorage implements Serializable {
-
-    @Serial
-    private static final long serialVersionUID = -275836689822028264L;
+public class PreviewStorage {
 
     public static final long FLAG_BITS = 4;
     public static final long FLAG_MASK = (1L << FLAG_BITS) - 1L;
@@ -42,50 +41,244 @@ public class PreviewStorage implements Serializable {
     public static final long FLAG_NOISE_WEIRDNESS = 0b1110;
     public static final long FLAG_STRUCT_REF = 0b0100;
 
-    private transient Long2ObjectMap<PreviewBlock>[] blocks;
+    private static final VarHandle BLOCKS = MethodHandles.arrayElementVarHandle(Long2ObjectMap[].class);
+
+    /**
+     * One map per y-level. The maps are copy-on-write: a published map is never modified, new blocks
+     * are added by publishing a modified copy. Lookups therefore never block, and blocks are only
+     * created rarely (each block covers {@code PREVIEW_BLOCK_SIZE^2} sections).
+     */
+    private final Long2ObjectMap<PreviewBlock>[] blocks;
+    private final Object createLock = new Object();
+    private volatile PreviewLodStorage lod;
+    private List<PreviewCacheFile> cacheFiles = List.of();
+    private volatile PreviewCacheJournal journal;
+    private volatile PreviewCacheLoader loader;
+    private final PreviewCompletionIndex completion;
 
     private final int yMin;
     private final int yMax;
+    private final int quartStride;
 
-    @SuppressWarnings("unchecked")
     public PreviewStorage(int yMin, int yMax) {
+        this(yMin, yMax, WorldPreview.get().renderSettings().quartStride());
+    }
+
+    /**
+     * @param quartStride the distance between two stored values in quarts (see {@link PreviewSection#quartStride()})
+     */
+    @SuppressWarnings("unchecked")
+    public PreviewStorage(int yMin, int yMax, int quartStride) {
         blocks = new Long2ObjectMap[((yMax - yMin) >> Y_BLOCK_SHIFT) + 1];
         for (int i = 0; i < blocks.length; ++i) {
             blocks[i] = new Long2ObjectOpenHashMap<>(1024, Hash.FAST_LOAD_FACTOR);
         }
         this.yMin = yMin;
         this.yMax = yMax;
+        this.quartStride = quartStride;
+        this.completion = new PreviewCompletionIndex(yMin, blocks.length);
+    }
+
+    /**
+     * The chunks that were sampled, see {@link caeruleusTait.world.preview.backend.worker.WorkUnit#markCompleted()}
+     */
+    public PreviewCompletionIndex completion() {
+        return completion;
+    }
+
+    /**
+     * The zoomed out versions of this storage. They are not persisted and created on first use.
+     */
+    public PreviewLodStorage lod() {
+        PreviewLodStorage res = lod;
+        if (res == null) {
+            synchronized (createLock) {
+                if (lod == null) {
+                    lod = new PreviewLodStorage(yMin, yMax);
+                }
+                res = lod;
+            }
+        }
+        return res;
     }
 
     public PreviewSection section4(BlockPos bp, long flags) {
         final int quartX = QuartPos.fromBlock(bp.getX());
         final int indexY = (bp.getY() - yMin) >> Y_BLOCK_SHIFT;
         final int quartZ = QuartPos.fromBlock(bp.getZ());
-        final PreviewBlock block;
-        synchronized (blocks[indexY]) {
-            block = blocks[indexY].computeIfAbsent(quartPosToSectionLong(quartX, quartZ, flags), x -> new PreviewBlock(flags));
-        }
-        return block.get(quartX, quartZ);
+        return block(indexY, quartX, quartZ, flags).get(quartX, quartZ);
     }
 
     public PreviewSection section4(ChunkPos chunkPos, int y, long flags) {
         final int quartX = QuartPos.fromSection(chunkPos.x);
         final int indexY = (y - yMin) >> Y_BLOCK_SHIFT;
         final int quartZ = QuartPos.fromSection(chunkPos.z);
-        final PreviewBlock block;
-        synchronized (blocks[indexY]) {
-            block = blocks[indexY].computeIfAbsent(quartPosToSectionLong(quartX, quartZ, flags), x -> new PreviewBlock(flags));
-        }
-        return block.get(quartX, quartZ);
+        return block(indexY, quartX, quartZ, flags).get(quartX, quartZ);
+    }
+
+    /**
+     * Like {@link #section4(ChunkPos, int, long)}, but the section is not evicted until
+     * {@link PreviewSection#unpin()} is called. Sections must be pinned while they are written to, otherwise the
+     * changes may be lost.
+     */
+    public PreviewSection pinnedSection4(ChunkPos chunkPos, int y, long flags) {
+        final int quartX = QuartPos.fromSection(chunkPos.x);
+        final int indexY = (y - yMin) >> Y_BLOCK_SHIFT;
+        final int quartZ = QuartPos.fromSection(chunkPos.z);
+        return block(indexY, quartX, quartZ, flags).getPinned(quartX, quartZ);
     }
 
     public PreviewSection section4(int quartX, int quartY, int quartZ, long flags) {
         final int indexY = (QuartPos.toBlock(quartY) - yMin) >> Y_BLOCK_SHIFT;
-        final PreviewBlock block;
-        synchronized (blocks[indexY]) {
-            block = blocks[indexY].computeIfAbsent(quartPosToSectionLong(quartX, quartZ, flags), x -> new PreviewBlock(flags));
+        return block(indexY, quartX, quartZ, flags).get(quartX, quartZ);
+    }
+
+    public int yMin() {
+        return yMin;
+    }
+
+    public int yMax() {
+        return yMax;
+    }
+
+    public int quartStride() {
+        return quartStride;
+    }
+
+    int layerCount() {
+        return blocks.length;
+    }
+
+    /**
+     * Only for loading, must not be called concurrently with anything else
+     */
+    void putLoadedBlock(int indexY, long key, PreviewBlock block) {
+        blocks[indexY].put(key, block);
+    }
+
+    void setCacheFiles(List<PreviewCacheFile> cacheFiles) {
+        this.cacheFiles = cacheFiles;
+    }
+
+    /**
+     * Releases the cache files this storage was loaded from (if any). Sections that were not accessed
+     * until now are empty afterwards.
+     */
+    public void closeCacheFiles() {
+        PreviewCacheFile.closeAll(cacheFiles);
+        cacheFiles = List.of();
+    }
+
+    /**
+     * Returns the memory of all off-heap sections (see {@link PreviewSectionOffHeap}) to their slabs, including
+     * the ones of the {@link #lod()} levels. The storage must not be used afterward.
+     */
+    public void freeSections() {
+        for (int i = 0; i < blocks.length; ++i) {
+            for (PreviewBlock block : layer(i).values()) {
+                block.freeSlots();
+            }
+        }
+        final PreviewLodStorage currentLod = lod;
+        if (currentLod != null) {
+            currentLod.freeSections();
+        }
+    }
+
+    /**
+     * The journal that persists changes of this storage, {@code null} if caching is disabled
+     */
+    public PreviewCacheJournal journal() {
+        return journal;
+    }
+
+    void setJournal(PreviewCacheJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * The loader that fills this storage from the cache file in the background, {@code null} if caching is disabled
+     */
+    public PreviewCacheLoader loader() {
+        return loader;
+    }
+
+    void setLoader(PreviewCacheLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * {@code false} while the cached data of the column at {@code chunkPos} is still being loaded. Work for such
+     * columns should be deferred, since it may already be cached.
+     */
+    public boolean isLoaded(ChunkPos chunkPos, long flags) {
+        final PreviewCacheLoader currentLoader = loader;
+        return currentLoader == null
+                || currentLoader.isLoaded(quartPosToSectionLong(QuartPos.fromSection(chunkPos.x), QuartPos.fromSection(chunkPos.z), flags));
+    }
+
+    /**
+     * Adds the sections of a cache file to a block that is already in use
+     */
+    void attachStored(int indexY, long key, PreviewCacheFile.StoredBlock stored) {
+        final long flags = (key >> FLAG_SHIFT) & FLAG_MASK;
+        block(indexY, key, flags).attach(stored);
+    }
+
+    /**
+     * Removes a section from memory, see {@link PreviewStoragePool}. Must be called on the IO thread.
+     *
+     * @return {@code false} if the section is pinned or was changed
+     */
+    boolean evict(int indexY, PreviewBlock block, int idx, PreviewSection section) {
+        // From now on, no worker can pin the section and write to it
+        if (!section.markEvicted()) {
+            return false;
+        }
+        final PreviewCacheJournal currentJournal = journal;
+        if (currentJournal != null) {
+            if (!currentJournal.evict(block, idx, section)) {
+                section.unmarkEvicted();
+                return false;
+            }
+            return true;
         }
-        return block.get(quartX, quartZ);
+
+        if (!block.evict(idx, section)) {
+            section.unmarkEvicted();
+            return false;
+        }
+        // Dropped, so the chunks have to be sampled again
+        completion.clearSection(yMin + (indexY << Y_BLOCK_SHIFT), block.flags(), section.quartX(), section.quartZ());
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    Long2ObjectMap<PreviewBlock> layer(int indexY) {
+        return (Long2ObjectMap<PreviewBlock>) BLOCKS.getAcquire(blocks, indexY);
+    }
+
+    private PreviewBlock block(int indexY, int quartX, int quartZ, long flags) {
+        return block(indexY, quartPosToSectionLong(quartX, quartZ, flags), flags);
+    }
+
+    private PreviewBlock block(int indexY, long key, long flags) {
+        PreviewBlock block = layer(indexY).get(key);
+        if (block != null) {
+            return block;
+        }
+
+        synchronized (createLock) {
+            final Long2ObjectMap<PreviewBlock> current = layer(indexY);
+            block = current.get(key);
+            if (block == null) {
+                final Long2ObjectMap<PreviewBlock> copy = new Long2ObjectOpenHashMap<>(current, Hash.FAST_LOAD_FACTOR);
+                block = new PreviewBlock(flags, quartStride);
+                copy.put(key, block);
+                BLOCKS.setRelease(blocks, indexY, copy);
+            }
+        }
+        return block;
     }
 
     /**
@@ -103,10 +296,7 @@ public class PreviewStorage implements Serializable {
      */
     public short getRawData4(int quartX, int quartY, int quartZ, long flags) {
         final int indexY = (QuartPos.toBlock(quartY) - yMin) >> Y_BLOCK_SHIFT;
-        final PreviewBlock block;
-        synchronized (blocks[indexY]) {
-            block = blocks[indexY].get(quartPosToSectionLong(quartX, quartZ, flags));
-        }
+        final PreviewBlock block = layer(indexY).get(quartPosToSectionLong(quartX, quartZ, flags));
         if (block == null) {
             return Short.MIN_VALUE;
         }
@@ -128,50 +318,10 @@ public class PreviewStorage implements Serializable {
         return (x & XZ_MASK) << X_SHIFT | (z & XZ_MASK) << Z_SHIFT | (flags & FLAG_MASK) << FLAG_SHIFT;
     }
 
-    @Serial
-    private void writeObject(ObjectOutputStream oos) throws IOException {
-        oos.defaultWriteObject();
-
-        // Write the sections
-        oos.writeInt(blocks.length);
-        for (Long2ObjectMap<PreviewBlock> ySec : blocks) {
-            final var entrySet = ySec.long2ObjectEntrySet();
-            oos.writeInt(entrySet.size());
-            for (var x : entrySet) {
-                oos.writeLong(x.getLongKey());
-                oos.writeObject(x.getValue());
-            }
-        }
-    }
-
-    @Serial
-    @SuppressWarnings("unchecked")
-    private void readObject(ObjectInputStream ois) throws ClassNotFoundException, IOException {
-        ois.defaultReadObject();
-
-        // Read the sections
-        blocks = new Long2ObjectMap[((yMax - yMin) >> Y_BLOCK_SHIFT) + 1];
-
-        final int serializedSize = ois.readInt();
-        if (serializedSize != blocks.length) {
-            throw new IOException("serializedSize != sections.length: " + serializedSize + " != " + blocks.length);
-        }
-
-        for (int i = 0; i < blocks.length; i++) {
-            blocks[i] = new Long2ObjectOpenHashMap<>(1024, Hash.FAST_LOAD_FACTOR);
-            final int size = ois.readInt();
-            for (int j = 0; j < size; ++j) {
-                final long key = ois.readLong();
-                final PreviewBlock section = (PreviewBlock) ois.readObject();
-                blocks[i].put(key, section);
-            }
-        }
-    }
-
     public List<Short> compressionStatistics() {
         List<Short> res = new ArrayList<>();
-        for (var x : blocks) {
-            for (PreviewBlock block : x.values()) {
+        for (int i = 0; i < blocks.length; ++i) {
+            for (PreviewBlock block : layer(i).values()) {
                 for (PreviewSection section : block.sections()) {
                     if (!(section instanceof PreviewSectionCompressed cSection)) {
                         continue;
@@ -5,18 +5,14 @@ import caeruleusTait.world.preview.WorldPreview;
 import caeruleusTait.world.preview.WorldPreviewConfig;
 
 import java.io.*;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Comparator;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
-
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 public interface PreviewStorageCacheManager {
 
-    int CACHE_FORMAT_VERSION = 1;
+    int CACHE_FORMAT_VERSION = 3;
 
     PreviewStorage loadPreviewStorage(long seed, int yMin, int yMax);
 
@@ -51,50 +47,51 @@ public interface PreviewStorageCacheManager {
         }
     }
 
-    default void writeCacheFile(PreviewStorage storage, Path outFile) {
-        Path outFileTmp = outFile.getParent().resolve(outFile.getFileName().toString() + ".tmp");
-        WorldPreview.LOGGER.info("Writing preview data to {}", outFile);
-
-        ZipEntry entry = new ZipEntry("bin");
-        try (
-                FileOutputStream fos = new FileOutputStream(outFileTmp.toFile());
-                ZipOutputStream zos = new ZipOutputStream(fos);
-        ) {
-            zos.putNextEntry(entry);
-            ObjectOutputStream oos = new ObjectOutputStream(zos);
-            oos.writeObject(storage);
-            zos.closeEntry();
-        } catch (IOException e) {
-            WorldPreview.LOGGER.error("Failed to write cached preview data to {}", outFile);
-            e.printStackTrace();
+    /**
+     * Writes the remaining changes of a storage created with {@link #readCacheFile(int, int, Path)} in the
+     * background and frees its sections. Returns immediately, the storage must not be used afterward.
+     */
+    default void finishCacheFile(PreviewStorage storage) {
+        if (storage == null) {
+            return;
         }
-
-        try {
-            Files.move(outFileTmp, outFile, REPLACE_EXISTING);
-        } catch (IOException e) {
-            WorldPreview.LOGGER.error("Failed to move cached preview data to {} --> {}", outFileTmp, outFile);
-            e.printStackTrace();
+        final PreviewCacheLoader loader = storage.loader();
+        if (loader != null) {
+            loader.cancel();
+        }
+        final PreviewCacheJournal journal = storage.journal();
+        if (journal != null) {
+            // Frees the sections after the last flush
+            journal.finish();
+        } else {
+            storage.freeSections();
         }
     }
 
+    /**
+     * Creates an empty storage for {@code inFile}. The cached data is loaded in the background once
+     * {@link PreviewCacheLoader#start} is called on {@link PreviewStorage#loader()}.
+     */
     default PreviewStorage readCacheFile(int yMin, int yMax, Path inFile) {
-        if (!Files.exists(inFile)) {
-            return new PreviewStorage(yMin, yMax);
-        }
-
-        WorldPreview.LOGGER.info("Reading preview data from {}", inFile);
+        deleteLegacyCacheFiles(inFile.getParent());
+        final PreviewStorage res = new PreviewStorage(yMin, yMax);
+        PreviewCacheLoader.create(res, inFile);
+        PreviewCacheJournal.start(res, inFile);
+        return res;
+    }
 
-        try (
-                FileInputStream fis = new FileInputStream(inFile.toFile());
-                ZipInputStream zis = new ZipInputStream(fis);
-        ) {
-            zis.getNextEntry();
-            ObjectInputStream ois = new ObjectInputStream(zis);
-            return (PreviewStorage) ois.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            WorldPreview.LOGGER.error("Failed to read cached preview data from {}", inFile);
-            e.printStackTrace();
-            return new PreviewStorage(yMin, yMax);
+    /**
+     * Deletes the serialized {@code .zip} caches of {@code CACHE_FORMAT_VERSION < 3}. They can not be read
+     * anymore, and the data is sampled again into a new cache file.
+     */
+    private static void deleteLegacyCacheFiles(Path dir) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.zip")) {
+            for (Path legacy : stream) {
+                WorldPreview.LOGGER.info("Deleting outdated preview cache {}", legacy);
+                Files.deleteIfExists(legacy);
+            }
+        } catch (IOException e) {
+            WorldPreview.LOGGER.warn("Failed to delete outdated preview caches in {}", dir, e);
         }
     }
 
@@ -0,0 +1,164 @@
+package caeruleusTait.world.preview.backend.storage;
+
+import caeruleusTait.world.preview.WorldPreview;
+import caeruleusTait.world.preview.WorldPreviewConfig;
+import caeruleusTait.world.preview.backend.metrics.PreviewMetrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the sections of all live {@link PreviewStorage}s (usually one per previewed seed) within the memory
+ * budget of the config (see {@link WorldPreviewConfig#memoryBudgetMB}).
+ * <p>
+ * Every few seconds, the memory used by all registered storages is estimated. If it exceeds the budget, the
+ * least recently rendered sections of all of them are evicted until the usage drops below
+ * {@link #LOW_WATER} of the budget. With caching, the journal of the storage writes an evicted section first
+ * and it is read back on the next access (see {@link PreviewCacheJournal#evict}). Otherwise, it is dropped and
+ * sampled again when needed. Sections that were rendered since the last check are never evicted, and neither
+ * are sections that workers are about to write to (see {@link PreviewStorage#pinnedSection4}).
+ * <p>
+ * Each check also lets sections whose chunks are all completed compact their data once (see
+ * {@link PreviewSection#compactIfCompleted()}).
+ * <p>
+ * All checks run on the IO thread of the cache, so they never overlap with flushes of the journal.
+ */
+public class PreviewStoragePool {
+    private static final long CHECK_INTERVAL_MS = 2000;
+    private static final double LOW_WATER = 0.9;
+
+    private static final List<PreviewStorage> STORAGES = new CopyOnWriteArrayList<>();
+    private static ScheduledFuture<?> timer;
+
+    /**
+     * Incremented by every check, see {@link PreviewSection#markUsed()}
+     */
+    private static volatile int epoch;
+    private static volatile long usedBytes;
+
+    private PreviewStoragePool() {
+    }
+
+    /**
+     * Adds a storage to the pool. It must be removed with {@link #unregister(PreviewStorage)} before it is finished.
+     */
+    public static synchronized void register(PreviewStorage storage) {
+        STORAGES.add(storage);
+        if (timer == null) {
+            timer = PreviewCacheJournal.IO_EXECUTOR.scheduleWithFixedDelay(PreviewStoragePool::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static synchronized void unregister(PreviewStorage storage) {
+        STORAGES.remove(storage);
+        if (STORAGES.isEmpty() && timer != null) {
+            timer.cancel(false);
+            timer = null;
+            usedBytes = 0;
+        }
+    }
+
+    static int epoch() {
+        return epoch;
+    }
+
+    /**
+     * The estimated memory used by all sections as of the last check
+     */
+    public static long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * The configured budget, but at most half of the heap. {@code 0} if unlimited.
+     */
+    public static long budgetBytes() {
+        final long configured = (long) WorldPreview.get().cfg().memoryBudgetMB << 20;
+        if (configured <= 0) {
+            return 0;
+        }
+        return Math.min(configured, Runtime.getRuntime().maxMemory() / 2);
+    }
+
+    private static void check() {
+        try {
+            evict();
+        } catch (Throwable e) {
+            // Otherwise, the check is silently never scheduled again
+            e.printStackTrace();
+        }
+    }
+
+    private static void evict() {
+        final int current = ++epoch;
+        final List<PreviewStorage> storages = List.copyOf(STORAGES);
+
+        long used = 0;
+        final long[] usedByFlags = new long[1 << PreviewStorage.FLAG_BITS];
+        for (PreviewStorage storage : storages) {
+            for (int indexY = 0; indexY < storage.layerCount(); ++indexY) {
+                for (PreviewBlock block : storage.layer(indexY).values()) {
+                    for (PreviewSection section : block.sections()) {
+                        if (section != null) {
+                            section.compactIfCompleted();
+                            final long bytes = section.estimateMemory();
+                            used += bytes;
+                            usedByFlags[(int) block.flags()] += bytes;
+                        }
+                    }
+                }
+            }
+        }
+        usedBytes = used;
+        PreviewMetrics.storageBytes(usedByFlags);
+
+        final long budget = budgetBytes();
+        if (budget == 0 || used <= budget) {
+            return;
+        }
+
+        final List<Candidate> candidates = new ArrayList<>();
+        for (PreviewStorage storage : storages) {
+            for (int indexY = 0; indexY < storage.layerCount(); ++indexY) {
+                for (PreviewBlock block : storage.layer(indexY).values()) {
+                    final PreviewSection[] sections = block.sections();
+                    for (int idx = 0; idx < sections.length; ++idx) {
+                        // Keep sections that were rendered since the last check
+                        if (sections[idx] != null && sections[idx].lastUsed() < current - 1) {
+                            candidates.add(new Candidate(storage, indexY, block, idx, sections[idx]));
+                        }
+                    }
+                }
+            }
+
+            // Evicting requires the current data to be written
+            final PreviewCacheJournal journal = storage.journal();
+            if (journal != null) {
+                journal.flushIfActive();
+            }
+        }
+        candidates.sort(Comparator.comparingInt(x -> x.section.lastUsed()));
+
+        final long target = (long) (budget * LOW_WATER);
+        int evicted = 0;
+        for (Candidate x : candidates) {
+            if (used <= target) {
+                break;
+            }
+            final long bytes = x.section.estimateMemory();
+            if (x.storage.evict(x.indexY, x.block, x.idx, x.section)) {
+                used -= bytes;
+                ++evicted;
+            }
+        }
+        usedBytes = used;
+        WorldPreview.LOGGER.info("Evicted {} preview sections, {} of {} MiB in use", evicted, used >> 20, budget >> 20);
+    }
+
+    private record Candidate(PreviewStorage storage, int indexY, PreviewBlock block, int idx, PreviewSection section) {
+    }
+}
@@ -0,0 +1,165 @@
+package caeruleusTait.world.preview.backend.worker;
+
+import com.mojang.datafixers.util.Pair;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.core.Holder;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.biome.Climate;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per worker cache in front of the biome search of a {@code MultiNoiseBiomeSource}.
+ * <p>
+ * Every cached entry is the parameter box of the biome that was found for a previous target. A target that
+ * lies inside such a box has a fitness of {@code 0} for that biome, so the search could not have found a
+ * better one. Thus, a hit never changes the result. First, the last hit is checked, since neighbouring
+ * samples usually share the same box. Then, a small LRU keyed by a coarsely quantized target is used.
+ * <p>
+ * Only boxes without an offset are cached, since the fitness of all others is never {@code 0}.
+ */
+public class BiomeLookupCache {
+    private static final int CAPACITY = 1024;
+
+    /**
+     * The target values are in units of {@code 1/10000}. Each key component covers {@code 2^8} of those.
+     */
+    private static final int KEY_QUANT_BITS = 8;
+    private static final int KEY_COMPONENT_BITS = 10;
+    private static final long KEY_COMPONENT_MASK = (1L << KEY_COMPONENT_BITS) - 1;
+
+    private final Long2ObjectLinkedOpenHashMap<Entry> entries = new Long2ObjectLinkedOpenHashMap<>();
+    private Index index;
+    private Entry last;
+
+    /**
+     * @param index the parameters of the biome source, see {@link Index#of(Climate.ParameterList)}
+     */
+    public Holder<Biome> find(Climate.TargetPoint target, Index index, LongAdder hits, LongAdder misses) {
+        if (this.index != index) {
+            // The biome source changed
+            this.index = index;
+            this.last = null;
+            entries.clear();
+        }
+
+        if (last != null && last.contains(target)) {
+            hits.increment();
+            return last.biome;
+        }
+
+        final long key = key(target);
+        final Entry cached = entries.getAndMoveToLast(key);
+        if (cached != null && cached.contains(target)) {
+            last = cached;
+            hits.increment();
+            return cached.biome;
+        }
+
+        misses.increment();
+        final Holder<Biome> biome = index.parameters.findValue(target);
+        final Entry found = index.entryFor(target, biome);
+        if (found != null) {
+            last = found;
+            entries.putAndMoveToLast(key, found);
+            if (entries.size() > CAPACITY) {
+                entries.removeFirst();
+            }
+        }
+        return biome;
+    }
+
+    private static long key(Climate.TargetPoint target) {
+        return keyComponent(target.temperature(), 0)
+                | keyComponent(target.humidity(), 1)
+                | keyComponent(target.continentalness(), 2)
+                | keyComponent(target.erosion(), 3)
+                | keyComponent(target.depth(), 4)
+                | keyComponent(target.weirdness(), 5);
+    }
+
+    private static long keyComponent(long value, int i) {
+        // Values outside the key range alias, which is fine since every entry is checked
+        return ((value >> KEY_QUANT_BITS) & KEY_COMPONENT_MASK) << (i * KEY_COMPONENT_BITS);
+    }
+
+    /**
+     * A parameter box without an offset, stored as {@code min, max} pairs of all six parameters
+     */
+    private record Entry(long[] box, Holder<Biome> biome) {
+        boolean contains(Climate.TargetPoint target) {
+            return BiomeLookupCache.contains(box, target);
+        }
+    }
+
+    private static boolean contains(long[] box, Climate.TargetPoint target) {
+        return inside(box, 0, target.temperature())
+                && inside(box, 2, target.humidity())
+                && inside(box, 4, target.continentalness())
+                && inside(box, 6, target.erosion())
+                && inside(box, 8, target.depth())
+                && inside(box, 10, target.weirdness());
+    }
+
+    private static boolean inside(long[] box, int i, long value) {
+        return value >= box[i] && value <= box[i + 1];
+    }
+
+    /**
+     * The parameter boxes of a biome source grouped by biome. Immutable and shared by all workers.
+     */
+    public static class Index {
+        private final Climate.ParameterList<Holder<Biome>> parameters;
+        private final Reference2ObjectMap<Holder<Biome>, long[][]> boxes;
+
+        private Index(Climate.ParameterList<Holder<Biome>> parameters, Reference2ObjectMap<Holder<Biome>, long[][]> boxes) {
+            this.parameters = parameters;
+            this.boxes = boxes;
+        }
+
+        public static Index of(Climate.ParameterList<Holder<Biome>> parameters) {
+            final Reference2ObjectMap<Holder<Biome>, LongArrayList> grouped = new Reference2ObjectOpenHashMap<>();
+            for (Pair<Climate.ParameterPoint, Holder<Biome>> x : parameters.values()) {
+                final Climate.ParameterPoint p = x.getFirst();
+                if (p.offset() != 0) {
+                    continue;
+                }
+                final LongArrayList list = grouped.computeIfAbsent(x.getSecond(), k -> new LongArrayList());
+                for (Climate.Parameter param : new Climate.Parameter[]{
+                        p.temperature(), p.humidity(), p.continentalness(), p.erosion(), p.depth(), p.weirdness()
+                }) {
+                    list.add(param.min());
+                    list.add(param.max());
+                }
+            }
+
+            final Reference2ObjectMap<Holder<Biome>, long[][]> boxes = new Reference2ObjectOpenHashMap<>(grouped.size());
+            for (Reference2ObjectMap.Entry<Holder<Biome>, LongArrayList> x : grouped.reference2ObjectEntrySet()) {
+                final long[] flat = x.getValue().toLongArray();
+                final long[][] split = new long[flat.length / 12][];
+                for (int i = 0; i < split.length; ++i) {
+                    split[i] = new long[12];
+                    System.arraycopy(flat, i * 12, split[i], 0, 12);
+                }
+                boxes.put(x.getKey(), split);
+            }
+            return new Index(parameters, boxes);
+        }
+
+        private Entry entryFor(Climate.TargetPoint target, Holder<Biome> biome) {
+            final long[][] candidates = boxes.get(biome);
+            if (candidates == null) {
+                return null;
+            }
+            for (long[] box : candidates) {
+                if (contains(box, target)) {
+                    return new Entry(box, biome);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package caeruleusTait.world.preview.backend.worker;
+
+/**
+ * The block columns of a single noise cell that are sampled by a {@link NoiseCellWorkUnit.CellPass}.
+ * <p>
+ * Owned by the {@link WorkerScratch} of a worker and reset for every cell, so that sampling a cell does not
+ * allocate anything.
+ */
+public class CellColumns {
+    int size;
+    int[] blockX = new int[0];
+    int[] blockZ = new int[0];
+    double[] deltaX = new double[0];
+    double[] deltaZ = new double[0];
+
+    /**
+     * Free for use by the pass, cleared by {@link #reset}
+     */
+    short[] lastValue = new short[0];
+    boolean[] done = new boolean[0];
+
+    /**
+     * Sets up the columns of the cell starting at {@code (cellBlockX, cellBlockZ)}, every {@code blockStride}
+     * blocks
+     */
+    void reset(int cellBlockX, int cellBlockZ, int cellWidth, int blockStride) {
+        final int perAxis = (cellWidth + blockStride - 1) / blockStride;
+        if (blockX.length < perAxis * perAxis) {
+            blockX = new int[perAxis * perAxis];
+            blockZ = new int[perAxis * perAxis];
+            deltaX = new double[perAxis * perAxis];
+            deltaZ = new double[perAxis * perAxis];
+            lastValue = new short[perAxis * perAxis];
+            done = new boolean[perAxis * perAxis];
+        }
+
+        size = 0;
+        for (int xInCell = 0; xInCell < cellWidth; xInCell += blockStride) {
+            for (int zInCell = 0; zInCell < cellWidth; zInCell += blockStride) {
+                blockX[size] = cellBlockX + xInCell;
+                blockZ[size] = cellBlockZ + zInCell;
+                deltaX[size] = (double) xInCell / (double) cellWidth;
+                deltaZ[size] = (double) zInCell / (double) cellWidth;
+                lastValue[size] = 0;
+                done[size] = false;
+                ++size;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package caeruleusTait.world.preview.backend.worker;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.levelgen.DensityFunction;
+
+import java.util.Arrays;
+
+/**
+ * A reusable batch of positions that are sampled together by {@link SampleUtils#doSampleBatch(ClimateBatch)}.
+ * <p>
+ * The climate parameters are evaluated with {@link DensityFunction#fillArray(double[], DensityFunction.ContextProvider)},
+ * so that each density function tree is walked once per batch instead of once per position. The results are
+ * stored in primitive arrays indexed like the positions.
+ * <p>
+ * Density functions assume that the array passed to {@code fillArray} has exactly one element per position,
+ * so the parameter arrays are sized to the batch. Work units usually sample batches of the same size over
+ * and over again, so they are only reallocated when the size changes.
+ * <p>
+ * Instances are owned by a single worker (see {@link WorkerScratch#climateBatch}) and must not be shared.
+ */
+public class ClimateBatch implements DensityFunction.ContextProvider {
+    public static final int TEMPERATURE = 0;
+    public static final int HUMIDITY = 1;
+    public static final int CONTINENTALNESS = 2;
+    public static final int EROSION = 3;
+    public static final int DEPTH = 4;
+    public static final int WEIRDNESS = 5;
+    public static final int NUM_PARAMETERS = 6;
+
+    private int size;
+    private int[] blockX;
+    private int[] blockY;
+    private int[] blockZ;
+    private final double[][] parameters = new double[NUM_PARAMETERS][];
+    private boolean hasParameters;
+    private ResourceKey<Biome>[] biomes;
+
+    private final PointContext context = new PointContext();
+
+    public ClimateBatch() {
+        resize(256);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        blockX = blockX == null ? new int[capacity] : Arrays.copyOf(blockX, capacity);
+        blockY = blockY == null ? new int[capacity] : Arrays.copyOf(blockY, capacity);
+        blockZ = blockZ == null ? new int[capacity] : Arrays.copyOf(blockZ, capacity);
+        biomes = new ResourceKey[capacity];
+    }
+
+    /**
+     * Removes all positions. The arrays are kept for the next batch.
+     */
+    public void clear() {
+        size = 0;
+        hasParameters = false;
+    }
+
+    /**
+     * @return the index of the new position
+     */
+    public int add(int x, int y, int z) {
+        if (size == blockX.length) {
+            resize(size * 2);
+        }
+        blockX[size] = x;
+        blockY[size] = y;
+        blockZ[size] = z;
+        return size++;
+    }
+
+    public int add(BlockPos pos) {
+        return add(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int blockX(int i) {
+        return blockX[i];
+    }
+
+    public int blockY(int i) {
+        return blockY[i];
+    }
+
+    public int blockZ(int i) {
+        return blockZ[i];
+    }
+
+    /**
+     * The raw values of a climate parameter, only valid if {@link #hasParameters()}.
+     *
+     * @param parameter one of {@link #TEMPERATURE}, {@link #HUMIDITY}, ... {@link #WEIRDNESS}
+     * @return an array with exactly {@link #size()} elements
+     */
+    public double[] parameter(int parameter) {
+        return parameters[parameter];
+    }
+
+    /**
+     * {@code false} if the biome source does not use the climate parameters
+     */
+    public boolean hasParameters() {
+        return hasParameters;
+    }
+
+    void setHasParameters(boolean hasParameters) {
+        this.hasParameters = hasParameters;
+    }
+
+    public ResourceKey<Biome> biome(int i) {
+        return biomes[i];
+    }
+
+    void setBiome(int i, ResourceKey<Biome> biome) {
+        biomes[i] = biome;
+    }
+
+    /**
+     * Evaluates {@code function} for all positions and stores the values as {@code parameter}
+     */
+    void fill(int parameter, DensityFunction function) {
+        if (parameters[parameter] == null || parameters[parameter].length != size) {
+            parameters[parameter] = new double[size];
+        }
+        function.fillArray(parameters[parameter], this);
+    }
+
+    @Override
+    public DensityFunction.FunctionContext forIndex(int i) {
+        context.index = i;
+        return context;
+    }
+
+    @Override
+    public void fillAllDirectly(double[] values, DensityFunction function) {
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = function.compute(forIndex(i));
+        }
+    }
+
+    /**
+     * Density functions only read the context during {@code compute}, so a single mutable context is
+     * enough and no object has to be created per position.
+     */
+    private class PointContext implements DensityFunction.FunctionContext {
+        private int index;
+
+        @Override
+        public int blockX() {
+            return blockX[index];
+        }
+
+        @Override
+        public int blockY() {
+            return blockY[index];
+        }
+
+        @Override
+        public int blockZ() {
+            return blockZ[index];
+        }
+    }
+}
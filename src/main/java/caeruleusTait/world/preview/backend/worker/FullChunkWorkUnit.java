@@ -35,25 +35,26 @@ public class FullChunkWorkUnit extends WorkUnit {
         }
     }
 
-    private List<WorkResult> doNormalWork() {
-        List<WorkResult> results = new ArrayList<>((yMax - yMin) / yStride);
+    private List<WorkResult> doRawNoiseWork() {
+        List<WorkResult> results = new ArrayList<>(((yMax - yMin) / yStride) * 7);
+        final List<BlockPos> positions = columnPositions();
+        final ClimateBatch batch = sampleBatch(positions);
+        int i = 0;
         for (int y = yMin; y <= yMax; y += yStride) {
-            WorkResult res             = new WorkResult(this, QuartPos.fromBlock(y), y == this.y ? primarySection : storage.section4(chunkPos, y, flags()),    new ArrayList<>(16), List.of());
-            WorkResult temperature     = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_TEMPERATURE),     new ArrayList<>(16), List.of());
-            WorkResult humidity        = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_HUMIDITY),        new ArrayList<>(16), List.of());
-            WorkResult continentalness = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_CONTINENTALNESS), new ArrayList<>(16), List.of());
-            WorkResult erosion         = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_EROSION),         new ArrayList<>(16), List.of());
-            WorkResult depth           = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_DEPTH),           new ArrayList<>(16), List.of());
-            WorkResult weirdness       = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_WEIRDNESS),       new ArrayList<>(16), List.of());
-            for (BlockPos p : sampler.blocksForChunk(chunkPos, y)) {
-                final var sample = sampleUtils.doSample(p);
-                sampler.expandRaw(p, biomeIdFrom(sample.biome()), res);
-                sampler.expandRaw(p, sample.noiseResult()[0], temperature);
-                sampler.expandRaw(p, sample.noiseResult()[1], humidity);
-                sampler.expandRaw(p, sample.noiseResult()[2], continentalness);
-                sampler.expandRaw(p, sample.noiseResult()[3], erosion);
-                sampler.expandRaw(p, sample.noiseResult()[4], depth);
-                sampler.expandRaw(p, sample.noiseResult()[5], weirdness);
+            WorkResult res             = newResult(QuartPos.fromBlock(y), flags());
+            WorkResult temperature     = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_TEMPERATURE);
+            WorkResult humidity        = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_HUMIDITY);
+            WorkResult continentalness = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_CONTINENTALNESS);
+            WorkResult erosion         = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_EROSION);
+            WorkResult depth           = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_DEPTH);
+            WorkResult weirdness       = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_WEIRDNESS);
+            final List<WorkResult> noise = List.of(temperature, humidity, continentalness, erosion, depth, weirdness);
+            for (; i < positions.size() && positions.get(i).getY() == y; ++i) {
+                final BlockPos p = positions.get(i);
+                sampler.expandRaw(p, biomeIdFrom(batch.biome(i)), res);
+                for (int param = 0; param < ClimateBatch.NUM_PARAMETERS; ++param) {
+                    sampler.expandRaw(p, SampleUtils.noiseToShort(param, batch.parameter(param)[i]), noise.get(param));
+                }
             }
             results.add(res);
             results.add(temperature);
@@ -66,25 +67,41 @@ public class FullChunkWorkUnit extends WorkUnit {
         return results;
     }
 
-    private List<WorkResult> doRawNoiseWork() {
-        List<WorkResult> results = new ArrayList<>(((yMax - yMin) / yStride) * 7);
+    private List<WorkResult> doNormalWork() {
+        List<WorkResult> results = new ArrayList<>((yMax - yMin) / yStride);
+        if (sampler.isAdaptive()) {
+            for (int y = yMin; y <= yMax; y += yStride) {
+                WorkResult res = newResult(QuartPos.fromBlock(y), flags());
+                sampler.sampleChunk(chunkPos, y, sampleUtils.scratch(), p -> biomeIdFrom(sampleUtils.doSample(p).biome()), res);
+                results.add(res);
+            }
+            return results;
+        }
+
+        final List<BlockPos> positions = columnPositions();
+        final ClimateBatch batch = sampleBatch(positions);
+        int i = 0;
         for (int y = yMin; y <= yMax; y += yStride) {
-            WorkResult res = new WorkResult(
-                    this,
-                    QuartPos.fromBlock(y),
-                    y == this.y ? primarySection : storage.section4(chunkPos, y, flags()),
-                    new ArrayList<>(16),
-                    List.of()
-            );
-            for (BlockPos p : sampler.blocksForChunk(chunkPos, y)) {
-                final var sample = sampleUtils.doSample(p);
-                sampler.expandRaw(p, biomeIdFrom(sample.biome()), res);
+            WorkResult res = newResult(QuartPos.fromBlock(y), flags());
+            for (; i < positions.size() && positions.get(i).getY() == y; ++i) {
+                sampler.expandRaw(positions.get(i), biomeIdFrom(batch.biome(i)), res);
             }
             results.add(res);
         }
         return results;
     }
 
+    /**
+     * All positions of the column, ordered by Y
+     */
+    private List<BlockPos> columnPositions() {
+        final List<BlockPos> positions = new ArrayList<>();
+        for (int y = yMin; y <= yMax; y += yStride) {
+            positions.addAll(sampler.blocksForChunk(chunkPos, y));
+        }
+        return positions;
+    }
+
     @Override
     public long flags() {
         return PreviewStorage.FLAG_BIOME;
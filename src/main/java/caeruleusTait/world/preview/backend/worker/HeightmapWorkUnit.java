@@ -15,116 +15,96 @@ import net.minecraft.world.level.levelgen.NoiseChunk;
 import net.minecraft.world.level.levelgen.NoiseGeneratorSettings;
 import net.minecraft.world.level.levelgen.NoiseSettings;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
 
-public class HeightmapWorkUnit extends WorkUnit {
-    private final ChunkSampler sampler;
-    private final int numChunks;
+public class HeightmapWorkUnit extends NoiseCellWorkUnit {
 
     public HeightmapWorkUnit(ChunkSampler sampler, SampleUtils sampleUtils, ChunkPos chunkPos, int numChunks, PreviewData previewData) {
-        super(sampleUtils, chunkPos, previewData, 0);
-        this.sampler = sampler;
-        this.numChunks = numChunks;
-    }
-
-    private record XZPair(int x, double dX, int z, double dZ) {
-        // record
+        super(sampler, sampleUtils, chunkPos, numChunks, previewData);
     }
 
     @Override
     protected List<WorkResult> doWork() {
-        final WorkResult res = new WorkResult(this, QuartPos.fromBlock(0), primarySection, new ArrayList<>(numChunks * numChunks * 4 * 4), List.of());
         final NoiseGeneratorSettings noiseGeneratorSettings = sampleUtils.noiseGeneratorSettings();
-        final WorldPreviewConfig config = workManager.config();
 
         if (noiseGeneratorSettings == null) {
-            return List.of(res);
+            return List.of(newResult(QuartPos.fromBlock(0), flags()));
+        }
+
+        final HeightPass pass = new HeightPass(this, noiseGeneratorSettings);
+        sampleCells(sampleUtils.getNoiseChunk(chunkPos, numChunks, false), noiseGeneratorSettings.noiseSettings(), pass);
+        return List.of(pass.result);
+    }
+
+    @Override
+    public long flags() {
+        return PreviewStorage.FLAG_HEIGHT;
+    }
+
+    /**
+     * Walks each column down from the top of the sampled range until the first opaque block
+     */
+    static class HeightPass implements CellPass {
+        private final NoiseGeneratorSettings noiseGeneratorSettings;
+        private final ChunkSampler sampler;
+        private final BlockPos.MutableBlockPos mutableBlockPos;
+        private final Predicate<BlockState> predicate = Heightmap.Types.OCEAN_FLOOR_WG.isOpaque();
+        final WorkResult result;
+
+        private final int cellHeight;
+        private final int cellMinY;
+        private final int cellCountY;
+        private final int cellOffsetY;
+
+        HeightPass(NoiseCellWorkUnit unit, NoiseGeneratorSettings noiseGeneratorSettings) {
+            final WorldPreviewConfig config = unit.workManager.config();
+            final NoiseSettings noiseSettings = noiseGeneratorSettings.noiseSettings();
+            this.noiseGeneratorSettings = noiseGeneratorSettings;
+            this.sampler = unit.sampler;
+            this.mutableBlockPos = unit.sampleUtils.scratch().mutableBlockPos;
+            this.result = unit.newResult(QuartPos.fromBlock(0), PreviewStorage.FLAG_HEIGHT);
+
+            final int minY = config.onlySampleInVisualRange ? config.heightmapMinY : noiseSettings.minY();
+            final int maxY = config.onlySampleInVisualRange ? config.heightmapMaxY : minY + noiseSettings.height();
+            this.cellHeight = noiseSettings.getCellHeight();
+            this.cellMinY = Mth.floorDiv(minY, noiseSettings.getCellHeight());
+            this.cellCountY = Mth.floorDiv(maxY - minY, noiseSettings.getCellHeight());
+            this.cellOffsetY = config.onlySampleInVisualRange ? cellMinY - Mth.floorDiv(noiseSettings.minY(), noiseSettings.getCellHeight()) : 0;
         }
 
-        final NoiseSettings noiseSettings = noiseGeneratorSettings.noiseSettings();
-        final NoiseChunk noiseChunk = sampleUtils.getNoiseChunk(chunkPos, numChunks, false);
-        final BlockPos.MutableBlockPos mutableBlockPos = new BlockPos.MutableBlockPos();
-
-        final int cellWidth = noiseSettings.getCellWidth();
-        final int cellHeight = noiseSettings.getCellHeight();
-
-        final int minY = config.onlySampleInVisualRange ? config.heightmapMinY : noiseSettings.minY();
-        final int maxY = config.onlySampleInVisualRange ? config.heightmapMaxY : minY + noiseSettings.height();
-        final int cellMinY = Mth.floorDiv(minY, noiseSettings.getCellHeight());
-        final int cellCountY = Mth.floorDiv(maxY - minY, noiseSettings.getCellHeight());
-        final int cellOffsetY = config.onlySampleInVisualRange ? cellMinY -  Mth.floorDiv(noiseSettings.minY(), noiseSettings.getCellHeight()): 0;
-
-        final int minBlockX = chunkPos.getMinBlockX();
-        final int minBlockZ = chunkPos.getMinBlockZ();
-        final int cellCountXZ = (16 * numChunks) / cellWidth;
-        final int cellStrideXZ = Math.max(1, sampler.blockStride() / cellWidth);
-        final int todoArraySize = Math.max(1, cellWidth / sampler.blockStride()) * Math.max(1, cellWidth / sampler.blockStride());
-
-        final Predicate<BlockState> predicate = Heightmap.Types.OCEAN_FLOOR_WG.isOpaque();
-
-        noiseChunk.initializeForFirstCellX();
-
-        try {
-            // Iterate over cell X Z Y
-            for(int cellX = 0; cellX < cellCountXZ && !isCanceled(); cellX += cellStrideXZ) {
-                noiseChunk.advanceCellX(cellX);
-
-                for(int cellZ = 0; cellZ < cellCountXZ && !isCanceled(); cellZ += cellStrideXZ) {
-
-                    List<XZPair> positions = new ArrayList<>(todoArraySize);
-                    for (int xInCell = 0; xInCell < cellWidth; xInCell += sampler.blockStride()) {
-                        for (int zInCell = 0; zInCell < cellWidth; zInCell += sampler.blockStride()) {
-                            int x = minBlockX + cellX * cellWidth + xInCell;
-                            int z = minBlockZ + cellZ * cellWidth + zInCell;
-                            positions.add(new XZPair(
-                                    x, (double) xInCell / (double) cellWidth,
-                                    z, (double) zInCell / (double) cellWidth
-                            ));
+        @Override
+        public void sampleCell(NoiseChunk noiseChunk, CellColumns columns, int cellZ) {
+            int remaining = columns.size;
+            for (int cellY = cellCountY - 1; cellY >= 0 && remaining > 0; --cellY) {
+                noiseChunk.selectCellYZ(cellY + cellOffsetY, cellZ);
+
+                // Iterate over block in cell Y X Z
+                for (int yInCell = cellHeight - 1; yInCell >= 0 && remaining > 0; --yInCell) {
+                    final int y = (cellMinY + cellY) * cellHeight + yInCell;
+                    noiseChunk.updateForY(y, (double) yInCell / (double) cellHeight);
+
+                    for (int idx = 0; idx < columns.size; ++idx) {
+                        if (columns.done[idx]) {
+                            continue;
+                        }
+                        noiseChunk.updateForX(columns.blockX[idx], columns.deltaX[idx]);
+                        noiseChunk.updateForZ(columns.blockZ[idx], columns.deltaZ[idx]);
+
+                        BlockState blockState = ((NoiseChunkAccessor) noiseChunk).invokeGetInterpolatedState();
+                        if (blockState == null) {
+                            blockState = noiseGeneratorSettings.defaultBlock();
                         }
-                    }
 
-                    for(int cellY = cellCountY - 1; cellY >= 0 && !positions.isEmpty() && !isCanceled(); --cellY) {
-                        noiseChunk.selectCellYZ(cellY + cellOffsetY, cellZ);
-
-                        // Iterate over block in cell Y X Z
-                        for (int yInCell = cellHeight - 1; yInCell >= 0 && !positions.isEmpty(); --yInCell) {
-                            final int y = (cellMinY + cellY) * cellHeight + yInCell;
-                            noiseChunk.updateForY(y, (double) yInCell / (double) cellHeight);
-
-                            for (int idx = 0; idx < positions.size(); ++idx) {
-                                XZPair curr = positions.get(idx);
-                                noiseChunk.updateForX(curr.x, curr.dX);
-                                noiseChunk.updateForZ(curr.z, curr.dZ);
-
-                                BlockState blockState = ((NoiseChunkAccessor) noiseChunk).invokeGetInterpolatedState();
-                                if (blockState == null) {
-                                    blockState = noiseGeneratorSettings.defaultBlock();
-                                }
-
-                                if (predicate.test(blockState)) {
-                                    mutableBlockPos.set(curr.x, 0, curr.z);
-                                    sampler.expandRaw(mutableBlockPos, (short) (y + 1), res);
-                                    positions.remove(idx--);
-                                }
-                            }
+                        if (predicate.test(blockState)) {
+                            mutableBlockPos.set(columns.blockX[idx], 0, columns.blockZ[idx]);
+                            sampler.expandRaw(mutableBlockPos, (short) (y + 1), result);
+                            columns.done[idx] = true;
+                            --remaining;
                         }
                     }
                 }
-
-                // Whatever this does, but it is required...
-                noiseChunk.swapSlices();
             }
-        } finally {
-            noiseChunk.stopInterpolation();
         }
-
-        return List.of(res);
-    }
-
-    @Override
-    public long flags() {
-        return PreviewStorage.FLAG_HEIGHT;
     }
 }
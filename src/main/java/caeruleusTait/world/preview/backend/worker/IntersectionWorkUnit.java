@@ -2,7 +2,6 @@ package caeruleusTait.world.preview.backend.worker;
 
 import caeruleusTait.world.preview.backend.color.PreviewData;
 import caeruleusTait.world.preview.backend.sampler.ChunkSampler;
-import caeruleusTait.world.preview.backend.storage.PreviewSection;
 import caeruleusTait.world.preview.backend.storage.PreviewStorage;
 import caeruleusTait.world.preview.mixin.NoiseChunkAccessor;
 import net.minecraft.core.BlockPos;
@@ -10,19 +9,14 @@ import net.minecraft.core.QuartPos;
 import net.minecraft.util.Mth;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.levelgen.Heightmap;
 import net.minecraft.world.level.levelgen.NoiseChunk;
 import net.minecraft.world.level.levelgen.NoiseGeneratorSettings;
 import net.minecraft.world.level.levelgen.NoiseSettings;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Predicate;
 
-public class IntersectionWorkUnit extends WorkUnit {
-    private final ChunkSampler sampler;
-    private final int numChunks;
+public class IntersectionWorkUnit extends NoiseCellWorkUnit {
     private final int yStride;
 
     public IntersectionWorkUnit(
@@ -33,16 +27,10 @@ public class IntersectionWorkUnit extends WorkUnit {
             PreviewData previewData,
             int yStride
     ) {
-        super(sampleUtils, chunkPos, previewData, 0);
-        this.sampler = sampler;
-        this.numChunks = numChunks;
+        super(sampler, sampleUtils, chunkPos, numChunks, previewData);
         this.yStride = yStride;
     }
 
-    private record XZPair(int x, double dX, int z, double dZ, AtomicInteger mutableLastValue) {
-        // record
-    }
-
     @Override
     protected List<WorkResult> doWork() {
         final NoiseGeneratorSettings noiseGeneratorSettings = sampleUtils.noiseGeneratorSettings();
@@ -51,108 +39,86 @@ public class IntersectionWorkUnit extends WorkUnit {
             return List.of();
         }
 
-        final NoiseSettings noiseSettings = noiseGeneratorSettings.noiseSettings();
-        final NoiseChunk noiseChunk = sampleUtils.getNoiseChunk(chunkPos, numChunks, true);
-        final BlockPos.MutableBlockPos mutableBlockPos = new BlockPos.MutableBlockPos();
-
-        final int yMin = noiseSettings.minY();
-        final int yMax = yMin + noiseSettings.height();
-        final int cellWidth = noiseSettings.getCellWidth();
-        final int cellHeight = noiseSettings.getCellHeight();
-
-        final int cellMinY = Mth.floorDiv(yMin, noiseSettings.getCellHeight());
-        final int cellCountY = Mth.floorDiv(noiseSettings.height(), noiseSettings.getCellHeight());
-
-        final int minBlockX = chunkPos.getMinBlockX();
-        final int minBlockZ = chunkPos.getMinBlockZ();
-        final int cellCountXZ = (16 * numChunks) / cellWidth;
-        final int cellStrideXZ = Math.max(1, sampler.blockStride() / cellWidth);
-        final int todoArraySize = Math.max(1, cellWidth / sampler.blockStride()) * Math.max(1, cellWidth / sampler.blockStride());
-
-        final List<WorkResult> results = new ArrayList<>((yMax - yMin) / yStride);
-
-        // Initialize the results for each y-level
-        for (int y = yMin; y <= yMax; y += yStride) {
-            results.add(
-                    new WorkResult(
-                            this,
-                            QuartPos.fromBlock(y),
-                            y == this.y ? primarySection : storage.section4(chunkPos, y, flags()),
-                            new ArrayList<>(numChunks * numChunks * 4 * 4),
-                            List.of()
-                    )
-            );
+        final IntersectPass pass = new IntersectPass(this, noiseGeneratorSettings, yStride);
+        sampleCells(sampleUtils.getNoiseChunk(chunkPos, numChunks, true), noiseGeneratorSettings.noiseSettings(), pass);
+        return pass.results;
+    }
+
+    @Override
+    public long flags() {
+        return PreviewStorage.FLAG_INTERSECT;
+    }
+
+    /**
+     * Records the map color of each column every {@code yStride} blocks
+     */
+    static class IntersectPass implements CellPass {
+        private final NoiseGeneratorSettings noiseGeneratorSettings;
+        private final ChunkSampler sampler;
+        private final BlockPos.MutableBlockPos mutableBlockPos;
+        private final int yStride;
+        final List<WorkResult> results;
+
+        private final int yMin;
+        private final int yMax;
+        private final int cellHeight;
+        private final int cellCountY;
+
+        IntersectPass(NoiseCellWorkUnit unit, NoiseGeneratorSettings noiseGeneratorSettings, int yStride) {
+            final NoiseSettings noiseSettings = noiseGeneratorSettings.noiseSettings();
+            this.noiseGeneratorSettings = noiseGeneratorSettings;
+            this.sampler = unit.sampler;
+            this.mutableBlockPos = unit.sampleUtils.scratch().mutableBlockPos;
+            this.yStride = yStride;
+
+            this.yMin = noiseSettings.minY();
+            this.yMax = yMin + noiseSettings.height();
+            this.cellHeight = noiseSettings.getCellHeight();
+            this.cellCountY = Mth.floorDiv(noiseSettings.height(), noiseSettings.getCellHeight());
+
+            // Initialize the results for each y-level
+            this.results = new ArrayList<>((yMax - yMin) / yStride);
+            for (int y = yMin; y <= yMax; y += yStride) {
+                results.add(unit.newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_INTERSECT));
+            }
         }
 
-        noiseChunk.initializeForFirstCellX();
-
-        try {
-            // Iterate over cell X Z Y
-            for(int cellX = 0; cellX < cellCountXZ && !isCanceled(); cellX += cellStrideXZ) {
-                noiseChunk.advanceCellX(cellX);
-
-                for(int cellZ = 0; cellZ < cellCountXZ && !isCanceled(); cellZ += cellStrideXZ) {
-
-                    List<XZPair> positions = new ArrayList<>(todoArraySize);
-                    for (int xInCell = 0; xInCell < cellWidth; xInCell += sampler.blockStride()) {
-                        for (int zInCell = 0; zInCell < cellWidth; zInCell += sampler.blockStride()) {
-                            int x = minBlockX + cellX * cellWidth + xInCell;
-                            int z = minBlockZ + cellZ * cellWidth + zInCell;
-                            positions.add(new XZPair(
-                                    x, (double) xInCell / (double) cellWidth,
-                                    z, (double) zInCell / (double) cellWidth,
-                                    new AtomicInteger(0)
-                            ));
-                        }
+        @Override
+        public void sampleCell(NoiseChunk noiseChunk, CellColumns columns, int cellZ) {
+            int lastCellY = Integer.MIN_VALUE;
+            for (int yTemp = yMin; yTemp <= yMax; yTemp += yStride) {
+                final int y = Math.min(yTemp, yMax - 1);
+                final int cellY = Math.min(Math.floorDiv(y - yMin, cellHeight), cellCountY - 1);
+                final int yInCell = y % cellHeight;
+                if (cellY != lastCellY) {
+                    noiseChunk.selectCellYZ(cellY, cellZ);
+                }
+                noiseChunk.updateForY(y, (double) yInCell / (double) cellHeight);
+                lastCellY = cellY;
+
+                final WorkResult res = results.get((yTemp - yMin) / yStride);
+                for (int idx = 0; idx < columns.size; ++idx) {
+                    noiseChunk.updateForX(columns.blockX[idx], columns.deltaX[idx]);
+                    noiseChunk.updateForZ(columns.blockZ[idx], columns.deltaZ[idx]);
+
+                    BlockState blockState = ((NoiseChunkAccessor) noiseChunk).invokeGetInterpolatedState();
+                    if (blockState == null) {
+                        blockState = noiseGeneratorSettings.defaultBlock();
                     }
 
-                    int lastCellY = Integer.MIN_VALUE;
-                    for (int yTemp = yMin; yTemp <= yMax; yTemp += yStride) {
-                        final int y = Math.min(yTemp, yMax - 1);
-                        final int cellY = Math.min(Math.floorDiv(y - yMin, cellHeight), cellCountY - 1);
-                        final int yInCell = y % cellHeight;
-                        if (cellY != lastCellY) {
-                            noiseChunk.selectCellYZ(cellY, cellZ);
-                        }
-                        noiseChunk.updateForY(y, (double) yInCell / (double) cellHeight);
-                        lastCellY = cellY;
-
-                        final WorkResult res = results.get((yTemp - yMin) / yStride);
-                        for (XZPair curr : positions) {
-                            noiseChunk.updateForX(curr.x, curr.dX);
-                            noiseChunk.updateForZ(curr.z, curr.dZ);
-
-                            BlockState blockState = ((NoiseChunkAccessor) noiseChunk).invokeGetInterpolatedState();
-                            if (blockState == null) {
-                                blockState = noiseGeneratorSettings.defaultBlock();
-                            }
-
-                            short colorId = (short) blockState.getMapColor(null, null).id;
-                            short lastId = (short) curr.mutableLastValue.getAndSet(colorId);
-
-                            // Allow "seeing through" one layer of air
-                            if (colorId == 0 && lastId > 0) {
-                                colorId = (short) -lastId;
-                            }
-
-                            mutableBlockPos.set(curr.x, yTemp, curr.z);
-                            sampler.expandRaw(mutableBlockPos, colorId, res);
-                        }
+                    short colorId = (short) blockState.getMapColor(null, null).id;
+                    final short lastId = columns.lastValue[idx];
+                    columns.lastValue[idx] = colorId;
+
+                    // Allow "seeing through" one layer of air
+                    if (colorId == 0 && lastId > 0) {
+                        colorId = (short) -lastId;
                     }
-                }
 
-                // Whatever this does, but it is required...
-                noiseChunk.swapSlices();
+                    mutableBlockPos.set(columns.blockX[idx], yTemp, columns.blockZ[idx]);
+                    sampler.expandRaw(mutableBlockPos, colorId, res);
+                }
             }
-        } finally {
-            noiseChunk.stopInterpolation();
         }
-
-        return results;
-    }
-
-    @Override
-    public long flags() {
-        return PreviewStorage.FLAG_INTERSECT;
     }
 }
@@ -9,7 +9,6 @@ import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.biome.Biome;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class LayerChunkWorkUnit extends WorkUnit {
@@ -30,31 +29,38 @@ public class LayerChunkWorkUnit extends WorkUnit {
     }
 
     private List<WorkResult> doNormalWork() {
-        WorkResult res = new WorkResult(this, QuartPos.fromBlock(y), primarySection, new ArrayList<>(16), List.of());
-        for (BlockPos p : sampler.blocksForChunk(chunkPos, y)) {
-            final var sample = sampleUtils.doSample(p);
-            sampler.expandRaw(p, biomeIdFrom(sample.biome()), res);
+        WorkResult res = newResult(QuartPos.fromBlock(y), flags());
+        if (sampler.isAdaptive()) {
+            sampler.sampleChunk(chunkPos, y, sampleUtils.scratch(), p -> biomeIdFrom(sampleUtils.doSample(p).biome()), res);
+            return List.of(res);
+        }
+
+        final List<BlockPos> positions = sampler.blocksForChunk(chunkPos, y);
+        final ClimateBatch batch = sampleBatch(positions);
+        for (int i = 0; i < positions.size(); ++i) {
+            sampler.expandRaw(positions.get(i), biomeIdFrom(batch.biome(i)), res);
         }
         return List.of(res);
     }
 
     private List<WorkResult> doRawNoiseWork() {
-        WorkResult res             = new WorkResult(this, QuartPos.fromBlock(y), primarySection, new ArrayList<>(16), List.of());
-        WorkResult temperature     = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_TEMPERATURE),     new ArrayList<>(16), List.of());
-        WorkResult humidity        = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_HUMIDITY),        new ArrayList<>(16), List.of());
-        WorkResult continentalness = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_CONTINENTALNESS), new ArrayList<>(16), List.of());
-        WorkResult erosion         = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_EROSION),         new ArrayList<>(16), List.of());
-        WorkResult depth           = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_DEPTH),           new ArrayList<>(16), List.of());
-        WorkResult weirdness       = new WorkResult(this, QuartPos.fromBlock(y), storage.section4(chunkPos, y, PreviewStorage.FLAG_NOISE_WEIRDNESS),       new ArrayList<>(16), List.of());
-        for (BlockPos p : sampler.blocksForChunk(chunkPos, y)) {
-            final var sample = sampleUtils.doSample(p);
-            sampler.expandRaw(p, biomeIdFrom(sample.biome()), res);
-            sampler.expandRaw(p, sample.noiseResult()[0], temperature);
-            sampler.expandRaw(p, sample.noiseResult()[1], humidity);
-            sampler.expandRaw(p, sample.noiseResult()[2], continentalness);
-            sampler.expandRaw(p, sample.noiseResult()[3], erosion);
-            sampler.expandRaw(p, sample.noiseResult()[4], depth);
-            sampler.expandRaw(p, sample.noiseResult()[5], weirdness);
+        WorkResult res             = newResult(QuartPos.fromBlock(y), flags());
+        WorkResult temperature     = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_TEMPERATURE);
+        WorkResult humidity        = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_HUMIDITY);
+        WorkResult continentalness = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_CONTINENTALNESS);
+        WorkResult erosion         = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_EROSION);
+        WorkResult depth           = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_DEPTH);
+        WorkResult weirdness       = newResult(QuartPos.fromBlock(y), PreviewStorage.FLAG_NOISE_WEIRDNESS);
+        final List<WorkResult> noise = List.of(temperature, humidity, continentalness, erosion, depth, weirdness);
+
+        final List<BlockPos> positions = sampler.blocksForChunk(chunkPos, y);
+        final ClimateBatch batch = sampleBatch(positions);
+        for (int i = 0; i < positions.size(); ++i) {
+            final BlockPos p = positions.get(i);
+            sampler.expandRaw(p, biomeIdFrom(batch.biome(i)), res);
+            for (int param = 0; param < ClimateBatch.NUM_PARAMETERS; ++param) {
+                sampler.expandRaw(p, SampleUtils.noiseToShort(param, batch.parameter(param)[i]), noise.get(param));
+            }
         }
         return List.of(res, temperature, humidity, continentalness, erosion, depth, weirdness);
     }
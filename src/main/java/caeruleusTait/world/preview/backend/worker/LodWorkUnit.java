@@ -0,0 +1,97 @@
+package caeruleusTait.world.preview.backend.worker;
+
+import caeruleusTait.world.preview.WorldPreview;
+import caeruleusTait.world.preview.backend.color.PreviewData;
+import caeruleusTait.world.preview.backend.storage.PreviewLodStorage;
+import caeruleusTait.world.preview.backend.storage.PreviewStorage;
+import net.minecraft.core.QuartPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.List;
+
+/**
+ * Directly samples the cells of a zoomed out level (see {@link PreviewLodStorage}) with a single
+ * sample in the center of each cell.
+ * <p>
+ * The unit works in the coordinates of the level: {@code cellChunkPos} is a chunk of the level
+ * storage and thus covers {@code 4x4} cells. {@link #chunk()} and {@link #chunkSpan()} still return
+ * the area in real chunks, so that the unit is prioritized and canceled like all others.
+ */
+public class LodWorkUnit extends WorkUnit {
+    private final int level;
+
+    public LodWorkUnit(ChunkPos cellChunkPos, SampleUtils sampleUtils, PreviewData previewData, int y, int level) {
+        super(sampleUtils, cellChunkPos, previewData, y, WorldPreview.get().workManager().previewStorage().lod().level(level));
+        this.level = level;
+    }
+
+    @Override
+    protected List<WorkResult> doWork() {
+        final int quartY = QuartPos.fromBlock(y);
+        final boolean rawNoise = sampleUtils.hasRawNoiseInfo();
+        final WorkResult res = newResult(quartY, flags());
+        final List<WorkResult> results = rawNoise ? List.of(
+                res,
+                newResult(quartY, PreviewStorage.FLAG_NOISE_TEMPERATURE),
+                newResult(quartY, PreviewStorage.FLAG_NOISE_HUMIDITY),
+                newResult(quartY, PreviewStorage.FLAG_NOISE_CONTINENTALNESS),
+                newResult(quartY, PreviewStorage.FLAG_NOISE_EROSION),
+                newResult(quartY, PreviewStorage.FLAG_NOISE_DEPTH),
+                newResult(quartY, PreviewStorage.FLAG_NOISE_WEIRDNESS)
+        ) : List.of(res);
+
+        final ClimateBatch batch = sampleUtils.scratch().climateBatch;
+        final int minCellX = QuartPos.fromSection(chunkPos.x);
+        final int minCellZ = QuartPos.fromSection(chunkPos.z);
+        batch.clear();
+        for (int cellX = minCellX; cellX < minCellX + QuartPos.SIZE; ++cellX) {
+            for (int cellZ = minCellZ; cellZ < minCellZ + QuartPos.SIZE; ++cellZ) {
+                batch.add(
+                        PreviewLodStorage.cellCenterToBlock(cellX, level),
+                        y,
+                        PreviewLodStorage.cellCenterToBlock(cellZ, level)
+                );
+            }
+        }
+        sampleUtils.doSampleBatch(batch);
+
+        int i = 0;
+        for (int cellX = minCellX; cellX < minCellX + QuartPos.SIZE; ++cellX) {
+            for (int cellZ = minCellZ; cellZ < minCellZ + QuartPos.SIZE; ++cellZ, ++i) {
+                res.values().set(cellX, cellZ, biomeIdFrom(batch.biome(i)));
+                if (rawNoise) {
+                    for (int param = 0; param < ClimateBatch.NUM_PARAMETERS; ++param) {
+                        results.get(param + 1).values().set(cellX, cellZ, SampleUtils.noiseToShort(param, batch.parameter(param)[i]));
+                    }
+                }
+            }
+        }
+
+        return results;
+    }
+
+    @Override
+    public ChunkPos chunk() {
+        return new ChunkPos(chunkPos.x << (QuartPos.BITS + level), chunkPos.z << (QuartPos.BITS + level));
+    }
+
+    @Override
+    public int chunkSpan() {
+        return QuartPos.SIZE << level;
+    }
+
+    @Override
+    protected int resultSize() {
+        return QuartPos.SIZE;
+    }
+
+    @Override
+    public int lodLevel() {
+        return level;
+    }
+
+    @Override
+    public long flags() {
+        return PreviewStorage.FLAG_BIOME;
+    }
+}
@@ -0,0 +1,74 @@
+package caeruleusTait.world.preview.backend.worker;
+
+import caeruleusTait.world.preview.backend.color.PreviewData;
+import caeruleusTait.world.preview.backend.sampler.ChunkSampler;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.levelgen.NoiseChunk;
+import net.minecraft.world.level.levelgen.NoiseSettings;
+
+/**
+ * Work units that sample the terrain of a square of {@code numChunks x numChunks} chunks from a {@link NoiseChunk},
+ * one noise cell at a time.
+ */
+public abstract class NoiseCellWorkUnit extends WorkUnit {
+    protected final ChunkSampler sampler;
+    protected final int numChunks;
+
+    protected NoiseCellWorkUnit(ChunkSampler sampler, SampleUtils sampleUtils, ChunkPos chunkPos, int numChunks, PreviewData previewData) {
+        super(sampleUtils, chunkPos, previewData, 0);
+        this.sampler = sampler;
+        this.numChunks = numChunks;
+    }
+
+    /**
+     * Samples the block columns of a single noise cell, after the cell x is selected
+     */
+    protected interface CellPass {
+        void sampleCell(NoiseChunk noiseChunk, CellColumns columns, int cellZ);
+    }
+
+    /**
+     * Walks over all cells of the work unit and runs each pass on them. The noise of the cell corners is only
+     * computed once per cell, no matter how many passes there are.
+     */
+    protected void sampleCells(NoiseChunk noiseChunk, NoiseSettings noiseSettings, CellPass... passes) {
+        final CellColumns columns = sampleUtils.scratch().cellColumns;
+
+        final int cellWidth = noiseSettings.getCellWidth();
+        final int minBlockX = chunkPos.getMinBlockX();
+        final int minBlockZ = chunkPos.getMinBlockZ();
+        final int cellCountXZ = (16 * numChunks) / cellWidth;
+        final int cellStrideXZ = Math.max(1, sampler.blockStride() / cellWidth);
+
+        noiseChunk.initializeForFirstCellX();
+
+        try {
+            // Iterate over cell X Z, the passes walk Y
+            for (int cellX = 0; cellX < cellCountXZ && !isCanceled(); cellX += cellStrideXZ) {
+                noiseChunk.advanceCellX(cellX);
+
+                for (int cellZ = 0; cellZ < cellCountXZ && !isCanceled(); cellZ += cellStrideXZ) {
+                    for (CellPass pass : passes) {
+                        columns.reset(minBlockX + cellX * cellWidth, minBlockZ + cellZ * cellWidth, cellWidth, sampler.blockStride());
+                        pass.sampleCell(noiseChunk, columns, cellZ);
+                    }
+                }
+
+                // Whatever this does, but it is required...
+                noiseChunk.swapSlices();
+            }
+        } finally {
+            noiseChunk.stopInterpolation();
+        }
+    }
+
+    @Override
+    public int chunkSpan() {
+        return numChunks;
+    }
+
+    @Override
+    public int cost() {
+        return numChunks * numChunks;
+    }
+}
@@ -0,0 +1,65 @@
+package caeruleusTait.world.preview.backend.worker;
+
+import java.util.Arrays;
+
+/**
+ * Square area of sampled values in quart coordinates, written by the
+ * {@link caeruleusTait.world.preview.backend.sampler.ChunkSampler}s and applied to a
+ * {@link caeruleusTait.world.preview.backend.storage.PreviewSection} by the {@link WorkBatch}.
+ * <p>
+ * Values that were not sampled are {@link Short#MIN_VALUE}. Instances are pooled per worker
+ * thread, see {@link WorkerScratch#acquireBuffer(int, int, int)}.
+ */
+public class QuartBuffer {
+    private final short[] data;
+    private final int size;
+    private int minQuartX;
+    private int minQuartZ;
+
+    QuartBuffer(int size) {
+        this.size = size;
+        this.data = new short[size * size];
+    }
+
+    void reset(int minQuartX, int minQuartZ) {
+        this.minQuartX = minQuartX;
+        this.minQuartZ = minQuartZ;
+        Arrays.fill(data, Short.MIN_VALUE);
+    }
+
+    /**
+     * Quart coords
+     */
+    public void set(int quartX, int quartZ, short value) {
+        data[(quartX - minQuartX) * size + (quartZ - minQuartZ)] = value;
+    }
+
+    /**
+     * Sets a {@code width * width} square starting at the quart coords
+     */
+    public void fill(int quartX, int quartZ, int width, short value) {
+        int idx = (quartX - minQuartX) * size + (quartZ - minQuartZ);
+        for (int x = 0; x < width; ++x, idx += size) {
+            Arrays.fill(data, idx, idx + width, value);
+        }
+    }
+
+    /**
+     * Coords relative to {@link #minQuartX()} and {@link #minQuartZ()}
+     */
+    public short getLocal(int x, int z) {
+        return data[x * size + z];
+    }
+
+    public int minQuartX() {
+        return minQuartX;
+    }
+
+    public int minQuartZ() {
+        return minQuartZ;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -7,6 +7,7 @@ import caeruleusTait.world.preview.backend.stubs.DummyMinecraftServer;
 import caeruleusTait.world.preview.backend.stubs.DummyServerLevelData;
 import caeruleusTait.world.preview.backend.stubs.EmptyAquifer;
 import caeruleusTait.world.preview.mixin.MinecraftServerAccessor;
+import caeruleusTait.world.preview.mixin.MultiNoiseBiomeSourceAccessor;
 import caeruleusTait.world.preview.mixin.NoiseBasedChunkGeneratorAccessor;
 import caeruleusTait.world.preview.mixin.NoiseChunkAccessor;
 import com.mojang.datafixers.DataFixer;
@@ -68,6 +69,7 @@ import java.util.UUID;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 
 import static caeruleusTait.world.preview.WorldPreview.LOGGER;
@@ -94,6 +96,10 @@ public class SampleUtils implements AutoCloseable {
     private final MinecraftServer minecraftServer;
     private final ServerLevel serverLevel;
     private final WorldPreviewConfig cfg;
+    private final ThreadLocal<WorkerScratch> scratch = ThreadLocal.withInitial(WorkerScratch::new);
+    private final LongAdder biomeCacheHits = new LongAdder();
+    private final LongAdder biomeCacheMisses = new LongAdder();
+    private volatile BiomeLookupCache.Index biomeLookupIndex;
 
     /**
      * Create SampleUtils with a <b>real</b> Minecraft server
@@ -399,7 +405,21 @@ public class SampleUtils implements AutoCloseable {
     public record BiomeResult(ResourceKey<Biome> biome, short[] noiseResult) {}
 
     private static short doubleToShort(double val, double factor) {
-        return (short) Math.min(Short.MAX_VALUE, Math.max(Short.MIN_VALUE, (long) (val * factor * (double)Short.MAX_VALUE)));
+        // Short.MIN_VALUE is reserved for unset values
+        return (short) Math.min(Short.MAX_VALUE, Math.max(Short.MIN_VALUE + 1, (long) (val * factor * (double)Short.MAX_VALUE)));
+    }
+
+    /**
+     * The factors {@link #doubleToShort(double, double)} uses for the climate parameters, indexed like
+     * {@link ClimateBatch#TEMPERATURE} etc.
+     */
+    private static final double[] NOISE_FACTORS = new double[] { 1, 1, 0.5, 1, 0.5, 0.75 };
+
+    /**
+     * Converts a raw climate parameter from {@link ClimateBatch#parameter(int)} to the value that is stored.
+     */
+    public static short noiseToShort(int parameter, double value) {
+        return doubleToShort(value, NOISE_FACTORS[parameter]);
     }
 
     public boolean hasRawNoiseInfo() {
@@ -427,9 +447,15 @@ public class SampleUtils implements AutoCloseable {
             };
 
             final var targetPoint = Climate.target((float) temperature, (float) humidity, (float) continentalness, (float) erosion, (float) depth, (float) weirdness);
-            final MultiNoiseBiomeSource noiseBiomeSource = (MultiNoiseBiomeSource) biomeSource;
-            final Holder<Biome> biome = noiseBiomeSource.getNoiseBiome(targetPoint);
+            final Holder<Biome> biome = findNoiseBiome(targetPoint);
             return new BiomeResult(biome.unwrapKey().orElseThrow(), noiseData);
+        } else if (biomeSource instanceof MultiNoiseBiomeSource) {
+            final var targetPoint = sampler.sample(
+                    QuartPos.fromBlock(pos.getX()),
+                    QuartPos.fromBlock(pos.getY()),
+                    QuartPos.fromBlock(pos.getZ())
+            );
+            return new BiomeResult(findNoiseBiome(targetPoint).unwrapKey().orElseThrow(), null);
         } else {
             return new BiomeResult(
                     biomeSource.getNoiseBiome(
@@ -443,6 +469,73 @@ public class SampleUtils implements AutoCloseable {
         }
     }
 
+    /**
+     * Same as {@link MultiNoiseBiomeSource#getNoiseBiome(Climate.TargetPoint)}, but uses the
+     * {@link BiomeLookupCache} of the current worker.
+     */
+    private Holder<Biome> findNoiseBiome(Climate.TargetPoint targetPoint) {
+        BiomeLookupCache.Index index = biomeLookupIndex;
+        if (index == null) {
+            // Building the index twice is harmless
+            index = BiomeLookupCache.Index.of(((MultiNoiseBiomeSourceAccessor) biomeSource).invokeParameters());
+            biomeLookupIndex = index;
+        }
+        return scratch().biomeLookupCache.find(targetPoint, index, biomeCacheHits, biomeCacheMisses);
+    }
+
+    public long biomeCacheHits() {
+        return biomeCacheHits.sum();
+    }
+
+    public long biomeCacheMisses() {
+        return biomeCacheMisses.sum();
+    }
+
+    /**
+     * Samples all positions of {@code batch} at once. Stores the biomes and, if the biome source uses them,
+     * the climate parameters in the batch.
+     */
+    public void doSampleBatch(ClimateBatch batch) {
+        final Climate.Sampler sampler = randomState.sampler();
+        if (biomeSource instanceof MultiNoiseBiomeSource) {
+            batch.fill(ClimateBatch.TEMPERATURE, sampler.temperature());
+            batch.fill(ClimateBatch.HUMIDITY, sampler.humidity());
+            batch.fill(ClimateBatch.CONTINENTALNESS, sampler.continentalness());
+            batch.fill(ClimateBatch.EROSION, sampler.erosion());
+            batch.fill(ClimateBatch.DEPTH, sampler.depth());
+            batch.fill(ClimateBatch.WEIRDNESS, sampler.weirdness());
+            batch.setHasParameters(true);
+
+            final double[] temperature = batch.parameter(ClimateBatch.TEMPERATURE);
+            final double[] humidity = batch.parameter(ClimateBatch.HUMIDITY);
+            final double[] continentalness = batch.parameter(ClimateBatch.CONTINENTALNESS);
+            final double[] erosion = batch.parameter(ClimateBatch.EROSION);
+            final double[] depth = batch.parameter(ClimateBatch.DEPTH);
+            final double[] weirdness = batch.parameter(ClimateBatch.WEIRDNESS);
+            for (int i = 0; i < batch.size(); ++i) {
+                final var targetPoint = Climate.target(
+                        (float) temperature[i],
+                        (float) humidity[i],
+                        (float) continentalness[i],
+                        (float) erosion[i],
+                        (float) depth[i],
+                        (float) weirdness[i]
+                );
+                batch.setBiome(i, findNoiseBiome(targetPoint).unwrapKey().orElseThrow());
+            }
+        } else {
+            batch.setHasParameters(false);
+            for (int i = 0; i < batch.size(); ++i) {
+                batch.setBiome(i, biomeSource.getNoiseBiome(
+                        QuartPos.fromBlock(batch.blockX(i)),
+                        QuartPos.fromBlock(batch.blockY(i)),
+                        QuartPos.fromBlock(batch.blockZ(i)),
+                        sampler
+                ).unwrapKey().orElseThrow());
+            }
+        }
+    }
+
     /*
     public ResourceKey<Biome> doSample(BlockPos pos) {
         return biomeSource.getNoiseBiome(
@@ -484,6 +577,13 @@ public class SampleUtils implements AutoCloseable {
         return noiseChunk;
     }
 
+    /**
+     * @return the scratch state of the calling worker thread
+     */
+    public WorkerScratch scratch() {
+        return scratch.get();
+    }
+
     public NoiseGeneratorSettings noiseGeneratorSettings() {
         return noiseGeneratorSettings;
     }
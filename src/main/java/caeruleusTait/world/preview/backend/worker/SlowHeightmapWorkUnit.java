@@ -7,7 +7,6 @@ import net.minecraft.core.BlockPos;
 import net.minecraft.core.QuartPos;
 import net.minecraft.world.level.ChunkPos;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class SlowHeightmapWorkUnit extends WorkUnit {
@@ -20,7 +19,7 @@ public class SlowHeightmapWorkUnit extends WorkUnit {
 
     @Override
     protected List<WorkResult> doWork() {
-        WorkResult res = new WorkResult(this, QuartPos.fromBlock(0), primarySection, new ArrayList<>(16), List.of());
+        WorkResult res = newResult(QuartPos.fromBlock(0), flags());
         for (BlockPos p : sampler.blocksForChunk(chunkPos, y)) {
             sampler.expandRaw(p, sampleUtils.doHeightSlow(p), res);
         }
@@ -42,15 +42,7 @@ public class SlowIntersectionWorkUnit extends WorkUnit {
 
         // Initialize the results for each y-level
         for (int y = yMin; y <= yMax; y += yStride) {
-            results.add(
-                    new WorkResult(
-                            this,
-                            QuartPos.fromBlock(y),
-                            y == this.y ? primarySection : storage.section4(chunkPos, y, flags()),
-                            new ArrayList<>(16),
-                            List.of()
-                    )
-            );
+            results.add(newResult(QuartPos.fromBlock(y), flags()));
         }
 
         // Do the actual work
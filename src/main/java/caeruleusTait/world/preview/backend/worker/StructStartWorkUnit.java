@@ -21,8 +21,9 @@ public class StructStartWorkUnit extends WorkUnit {
                 new WorkResult(
                         this,
                         0,
-                        primarySection,
-                        List.of(),
+                        flags(),
+                        section(0, flags()),
+                        null,
                         res
                 )
         );
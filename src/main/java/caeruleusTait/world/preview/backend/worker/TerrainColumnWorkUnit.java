@@ -0,0 +1,122 @@
+package caeruleusTait.world.preview.backend.worker;
+
+import caeruleusTait.world.preview.backend.color.PreviewData;
+import caeruleusTait.world.preview.backend.sampler.ChunkSampler;
+import caeruleusTait.world.preview.backend.storage.PreviewStorage;
+import caeruleusTait.world.preview.backend.stubs.EmptyAquifer;
+import caeruleusTait.world.preview.mixin.NoiseChunkAccessor;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.levelgen.Aquifer;
+import net.minecraft.world.level.levelgen.NoiseChunk;
+import net.minecraft.world.level.levelgen.NoiseGeneratorSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Samples the heightmap and the intersections from the same {@link net.minecraft.world.level.levelgen.NoiseChunk},
+ * which is queued instead of a {@link HeightmapWorkUnit} and an {@link IntersectionWorkUnit} when both layers are
+ * enabled. The noise chunk is only built and filled once for both of them.
+ * <p>
+ * The intersections need the aquifer, the heightmap has to match the one of the {@link HeightmapWorkUnit} though.
+ * So the aquifer of the noise chunk is swapped for an {@link EmptyAquifer} while the heightmap is sampled.
+ */
+public class TerrainColumnWorkUnit extends NoiseCellWorkUnit {
+    private final int yStride;
+
+    public TerrainColumnWorkUnit(
+            ChunkSampler sampler,
+            SampleUtils sampleUtils,
+            ChunkPos chunkPos,
+            int numChunks,
+            PreviewData previewData,
+            int yStride
+    ) {
+        super(sampler, sampleUtils, chunkPos, numChunks, previewData);
+        this.yStride = yStride;
+    }
+
+    @Override
+    protected List<WorkResult> doWork() {
+        final NoiseGeneratorSettings noiseGeneratorSettings = sampleUtils.noiseGeneratorSettings();
+
+        if (noiseGeneratorSettings == null) {
+            return List.of();
+        }
+
+        // Any of the layers may be missing, e.g. if it was loaded from the cache
+        final HeightmapWorkUnit.HeightPass heightPass = isCompleted(PreviewStorage.FLAG_HEIGHT)
+                ? null
+                : new HeightmapWorkUnit.HeightPass(this, noiseGeneratorSettings);
+        final IntersectionWorkUnit.IntersectPass intersectPass = isCompleted(PreviewStorage.FLAG_INTERSECT)
+                ? null
+                : new IntersectionWorkUnit.IntersectPass(this, noiseGeneratorSettings, yStride);
+        if (heightPass == null && intersectPass == null) {
+            // Both layers completed since the unit was queued
+            return List.of();
+        }
+
+        final List<CellPass> passes = new ArrayList<>(2);
+        final List<WorkResult> results = new ArrayList<>();
+        if (heightPass != null) {
+            passes.add(new WithoutAquifer(heightPass));
+            results.add(heightPass.result);
+        }
+        if (intersectPass != null) {
+            passes.add(intersectPass);
+            results.addAll(intersectPass.results);
+        }
+
+        sampleCells(sampleUtils.getNoiseChunk(chunkPos, numChunks, true), noiseGeneratorSettings.noiseSettings(), passes.toArray(CellPass[]::new));
+        return results;
+    }
+
+    @Override
+    public boolean isCompleted() {
+        return super.isCompleted() && isCompleted(PreviewStorage.FLAG_INTERSECT);
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return super.isLoaded() && storage.isLoaded(chunkPos, PreviewStorage.FLAG_INTERSECT);
+    }
+
+    @Override
+    public void markCompleted() {
+        super.markCompleted();
+        markCompleted(PreviewStorage.FLAG_INTERSECT);
+    }
+
+    /**
+     * Runs {@code pass} as if the noise chunk was created without an aquifer. The interpolated state only reads
+     * the aquifer when it is computed, so the noise of the cell is shared with the other passes nonetheless.
+     */
+    private static class WithoutAquifer implements CellPass {
+        private final CellPass pass;
+        private final Aquifer emptyAquifer = new EmptyAquifer();
+
+        WithoutAquifer(CellPass pass) {
+            this.pass = pass;
+        }
+
+        @Override
+        public void sampleCell(NoiseChunk noiseChunk, CellColumns columns, int cellZ) {
+            final NoiseChunkAccessor accessor = (NoiseChunkAccessor) noiseChunk;
+            final Aquifer aquifer = accessor.getAquifer();
+            accessor.setAquifer(emptyAquifer);
+            try {
+                pass.sampleCell(noiseChunk, columns, cellZ);
+            } finally {
+                accessor.setAquifer(aquifer);
+            }
+        }
+    }
+
+    /**
+     * The heightmap layer, the intersections are written to {@code FLAG_INTERSECT} as well
+     */
+    @Override
+    public long flags() {
+        return PreviewStorage.FLAG_HEIGHT;
+    }
+}
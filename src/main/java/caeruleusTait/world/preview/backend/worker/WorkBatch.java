@@ -1,32 +1,54 @@
 package caeruleusTait.world.preview.backend.worker;
 
 import caeruleusTait.world.preview.backend.color.PreviewData;
+import caeruleusTait.world.preview.backend.metrics.PreviewMetrics;
+import caeruleusTait.world.preview.backend.storage.PreviewCacheJournal;
 import caeruleusTait.world.preview.backend.storage.PreviewSection;
 import com.mojang.datafixers.util.Pair;
-import net.minecraft.core.QuartPos;
 import net.minecraft.resources.ResourceLocation;
-import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.levelgen.structure.StructureStart;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public class WorkBatch {
+    /**
+     * Batches are split into parts of about this {@link WorkUnit#cost()}
+     */
+    private static final int SPLIT_COST = 4;
+
     public final List<WorkUnit> workUnits;
-    private final Object completedSynchro;
     private final PreviewData previewData;
-    private boolean isCanceled = false;
+    private final int rank;
+    private volatile boolean isCanceled = false;
+    private volatile boolean isFinished = false;
+    private final long createdNanos = System.nanoTime();
 
-    public WorkBatch(List<WorkUnit> workUnits, Object completedSynchro, PreviewData previewData) {
+    public WorkBatch(List<WorkUnit> workUnits, PreviewData previewData, int rank) {
         this.workUnits = workUnits;
-        this.completedSynchro = completedSynchro;
         this.previewData = previewData;
+        this.rank = rank;
     }
 
     public boolean isCanceled() {
         return isCanceled;
     }
 
+    /**
+     * {@code true} once {@link #process()} has returned. Every work unit is then either completed or canceled.
+     */
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    /**
+     * The scheduling rank, lower ranks are processed first
+     */
+    public int rank() {
+        return rank;
+    }
+
     public void cancel() {
         isCanceled = true;
         workUnits.forEach(WorkUnit::cancel);
@@ -35,49 +57,120 @@ public class WorkBatch {
     public void process() {
         try {
             if (isCanceled()) {
+                unitsCanceled(0, workUnits.size());
                 return;
             }
 
-            List<WorkResult> res = new ArrayList<>();
-            for (WorkUnit unit : workUnits) {
-                res.addAll(unit.work());
-                if (isCanceled()) {
-                    return;
-                }
+            if (ForkJoinTask.inForkJoinPool() && workUnits.size() > 1) {
+                new UnitRange(0, workUnits.size()).invoke();
+            } else {
+                processRange(0, workUnits.size());
             }
-
-            // Mark as completed early to avoid duplicate work
-            synchronized (completedSynchro) {
-                workUnits.forEach(WorkUnit::markCompleted);
+            if (!isCanceled()) {
+                PreviewMetrics.BATCH_LATENCY.record(System.nanoTime() - createdNanos);
             }
+        } finally {
+            isFinished = true;
+        }
+    }
 
-            applyChunkResult(res);
+    private int cost(int from, int to) {
+        int cost = 0;
+        for (int i = from; i < to; ++i) {
+            cost += workUnits.get(i).cost();
+        }
+        return cost;
+    }
+
+    private void processRange(int from, int to) {
+        try {
+            for (int i = from; i < to; ++i) {
+                final WorkUnit unit = workUnits.get(i);
+                // Single units may be canceled when they leave the queued range
+                if (unit.isCanceled()) {
+                    PreviewMetrics.unit(unit).canceled().increment();
+                    continue;
+                }
+                List<WorkResult> res = null;
+                try {
+                    res = unit.work();
+                    if (isCanceled()) {
+                        unitsCanceled(i, to);
+                        return;
+                    }
+                    if (unit.isCanceled()) {
+                        // The results may be incomplete
+                        PreviewMetrics.unit(unit).canceled().increment();
+                        continue;
+                    }
+
+                    // Mark as completed early to avoid duplicate work
+                    unit.markCompleted();
+
+                    applyChunkResult(res);
+                    PreviewMetrics.unit(unit).completed().increment();
+                } finally {
+                    unit.release(res);
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void applyChunkResult(List<WorkResult> workResultList) {
+    private void unitsCanceled(int from, int to) {
+        for (int i = from; i < to; ++i) {
+            PreviewMetrics.unit(workUnits.get(i)).canceled().increment();
+        }
+    }
+
+    /**
+     * Splits the batch until the parts are cheap enough, so that idle workers can steal them
+     */
+    private class UnitRange extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        private UnitRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && cost(from, to) > SPLIT_COST && !isCanceled()) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new UnitRange(from, mid), new UnitRange(mid, to));
+            } else {
+                processRange(from, to);
+            }
+        }
+    }
+
+    void applyChunkResult(List<WorkResult> workResultList) {
         try {
             for (WorkResult workResult : workResultList) {
                 if (workResult == null) {
                     return;
                 }
 
-                final ChunkPos chunkPos = workResult.workUnit().chunk();
-                final int qStartX = QuartPos.fromSection(chunkPos.x);
-                final int qStartZ = QuartPos.fromSection(chunkPos.z);
-
-                PreviewSection section = workResult.section();
-                PreviewSection.AccessData offsetData = section.calcQuartOffsetData(qStartX, qStartZ, qStartX + 4, qStartZ + 4);
-
-                // Assume that one chunk always fits
-                for (var x : workResult.results()) {
-                    section.set(
-                            offsetData.minX() + x.quartX() - qStartX,
-                            offsetData.minZ() + x.quartZ() - qStartZ,
-                            x.value()
-                    );
+                final PreviewSection section = workResult.section();
+                final QuartBuffer values = workResult.values();
+                if (values != null) {
+                    // Buffers are always chunk aligned and never cross a section border. Thus, the
+                    // values stored in the section always start at offset 0 in the buffer.
+                    final int stride = section.quartStride();
+                    final int size = values.size();
+                    final int offsetX = values.minQuartX() - section.quartX();
+                    final int offsetZ = values.minQuartZ() - section.quartZ();
+                    for (int x = 0; x < size; x += stride) {
+                        for (int z = 0; z < size; z += stride) {
+                            final short value = values.getLocal(x, z);
+                            if (value != Short.MIN_VALUE) {
+                                section.set(offsetX + x, offsetZ + z, value);
+                            }
+                        }
+                    }
                 }
 
                 for (Pair<ResourceLocation, StructureStart> x : workResult.structures()) {
@@ -89,6 +182,19 @@ public class WorkBatch {
                             structureStart.getBoundingBox()
                     ));
                 }
+
+                section.markChanged();
+
+                final WorkUnit unit = workResult.workUnit();
+                final PreviewCacheJournal journal = unit.storage.journal();
+                if (journal != null) {
+                    journal.sectionChanged();
+                }
+
+                // Keep the zoomed out levels up to date
+                if (values != null && unit.lodLevel() == 0) {
+                    unit.storage.lod().update(unit.storage, workResult.quartY(), workResult.flags(), unit.chunk().x, unit.chunk().z, unit.chunkSpan());
+                }
             }
         } catch (Throwable e) {
             e.printStackTrace();
@@ -0,0 +1,18 @@
+package caeruleusTait.world.preview.backend.worker;
+
+/**
+ * Receives the timings of the work units of a {@link caeruleusTait.world.preview.backend.WorkManager}, see
+ * {@link caeruleusTait.world.preview.backend.WorkManager#setWorkListener(WorkListener)}.
+ * <p>
+ * Called on the worker threads, so implementations must be thread safe and cheap.
+ */
+@FunctionalInterface
+public interface WorkListener {
+    /**
+     * Called after {@link WorkUnit#work()} returned or failed
+     *
+     * @param waitNanos the time between the creation of the unit (right before it is queued) and the start of its work
+     * @param workNanos the time spent in {@link WorkUnit#work()}
+     */
+    void workDone(WorkUnit unit, long waitNanos, long workNanos);
+}
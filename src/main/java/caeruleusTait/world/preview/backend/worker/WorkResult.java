@@ -2,16 +2,16 @@ package caeruleusTait.world.preview.backend.worker;
 
 import caeruleusTait.world.preview.backend.storage.PreviewSection;
 import net.minecraft.world.level.levelgen.structure.StructureStart;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
 public record WorkResult(
         WorkUnit workUnit,
         int quartY,
+        long flags,
         PreviewSection section,
-        List<BlockResult> results,
+        @Nullable QuartBuffer values,
         List<com.mojang.datafixers.util.Pair<net.minecraft.resources.ResourceLocation, StructureStart>> structures
 ) {
-
-    public record BlockResult(int quartX, int quartZ, short value) {}
 }
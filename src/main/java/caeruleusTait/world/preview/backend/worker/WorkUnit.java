@@ -3,30 +3,47 @@ package caeruleusTait.world.preview.backend.worker;
 import caeruleusTait.world.preview.WorldPreview;
 import caeruleusTait.world.preview.backend.WorkManager;
 import caeruleusTait.world.preview.backend.color.PreviewData;
+import caeruleusTait.world.preview.backend.metrics.PreviewMetrics;
+import caeruleusTait.world.preview.backend.metrics.WorkUnitEvent;
 import caeruleusTait.world.preview.backend.storage.PreviewSection;
 import caeruleusTait.world.preview.backend.storage.PreviewStorage;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.QuartPos;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.biome.Biome;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public abstract class WorkUnit {
     protected final WorkManager workManager;
     protected final SampleUtils sampleUtils;
     protected final PreviewStorage storage;
-    protected final PreviewSection primarySection;
     protected final ChunkPos chunkPos;
     protected final PreviewData previewData;
     protected final int y;
-    private boolean isCanceled;
+    private final long createdNanos = System.nanoTime();
+    private volatile boolean isCanceled;
+
+    /**
+     * The sections returned by {@link #section}, until {@link #release}. Only used by the worker thread.
+     */
+    private final List<PreviewSection> pinned = new ArrayList<>(2);
 
     protected WorkUnit(SampleUtils sampleUtils, ChunkPos chunkPos, PreviewData previewData, int y) {
+        this(sampleUtils, chunkPos, previewData, y, WorldPreview.get().workManager().previewStorage());
+    }
+
+    /**
+     * @param storage the storage the results are written to
+     */
+    protected WorkUnit(SampleUtils sampleUtils, ChunkPos chunkPos, PreviewData previewData, int y, PreviewStorage storage) {
         this.workManager = WorldPreview.get().workManager();
         this.sampleUtils = sampleUtils;
-        this.storage = workManager.previewStorage();
-        this.primarySection = storage.section4(chunkPos, y, flags());
+        this.storage = storage;
         this.chunkPos = chunkPos;
         this.previewData = previewData;
         this.y = y;
@@ -40,26 +57,144 @@ public abstract class WorkUnit {
     }
 
     /**
-     * Return {@code true} on successful completion
+     * Samples all {@code positions} with the batch of the current worker. The batch is only valid until the
+     * next call.
+     */
+    protected ClimateBatch sampleBatch(List<BlockPos> positions) {
+        final ClimateBatch batch = sampleUtils.scratch().climateBatch;
+        batch.clear();
+        for (BlockPos p : positions) {
+            batch.add(p);
+        }
+        sampleUtils.doSampleBatch(batch);
+        return batch;
+    }
+
+    /**
+     * Samples this work unit and returns one result per written layer. The results may be incomplete if the
+     * unit is canceled meanwhile. The {@link WorkBatch} applies them and hands their value buffers back to
+     * {@link #release}.
      */
     protected abstract List<WorkResult> doWork();
 
     public abstract long flags();
 
     public boolean isCompleted() {
-        return primarySection.isCompleted(chunkPos);
+        return isCompleted(flags());
     }
 
+    /**
+     * For work units that write more than one layer
+     */
+    protected boolean isCompleted(long flags) {
+        if (storage.completion().isCompleted(y, flags, chunkPos.x, chunkPos.z)) {
+            return true;
+        }
+        // Completions loaded from the cache are only known to the section until now
+        if (storage.section4(chunkPos, y, flags).isCompleted(chunkPos)) {
+            storage.completion().markCompleted(y, flags, chunkPos.x, chunkPos.z);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@code false} while the cached data of this work unit is still being loaded
+     */
+    public boolean isLoaded() {
+        return storage.isLoaded(chunkPos, flags());
+    }
+
+    /**
+     * Lock-free, see {@link caeruleusTait.world.preview.backend.storage.PreviewCompletionIndex}
+     */
     public void markCompleted() {
-        primarySection.markCompleted(chunkPos);
+        markCompleted(flags());
+    }
+
+    protected void markCompleted(long flags) {
+        section(QuartPos.fromBlock(y), flags).markCompleted(chunkPos);
+        storage.completion().markCompleted(y, flags, chunkPos.x, chunkPos.z);
+    }
+
+    /**
+     * Creates a result for the layer {@code flags} with an empty value buffer that covers this work unit
+     */
+    protected WorkResult newResult(int quartY, long flags) {
+        final PreviewSection section = section(quartY, flags);
+        final QuartBuffer values = sampleUtils.scratch().acquireBuffer(
+                QuartPos.fromSection(chunkPos.x),
+                QuartPos.fromSection(chunkPos.z),
+                resultSize()
+        );
+        return new WorkResult(this, quartY, flags, section, values, List.of());
+    }
+
+    /**
+     * The section of this unit on the layer {@code flags}. It is pinned, so that it is not evicted before the
+     * results are applied. Sections must not be kept across runs, they may have been evicted in the meantime.
+     */
+    protected PreviewSection section(int quartY, long flags) {
+        final PreviewSection section = storage.pinnedSection4(chunkPos, QuartPos.toBlock(quartY), flags);
+        pinned.add(section);
+        return section;
+    }
+
+    /**
+     * The size (in quarts of {@link #storage}) of the value buffers of the results
+     */
+    protected int resultSize() {
+        return QuartPos.fromSection(chunkSpan());
+    }
+
+    /**
+     * Returns the value buffers of the results to the pool of the current thread and unpins the sections of
+     * this unit. Must be called after every run, with {@code null} if {@link #work()} failed.
+     */
+    public void release(@Nullable List<WorkResult> results) {
+        if (results != null) {
+            for (WorkResult result : results) {
+                if (result.values() != null) {
+                    sampleUtils.scratch().releaseBuffer(result.values());
+                }
+            }
+        }
+        for (PreviewSection section : pinned) {
+            section.unpin();
+        }
+        pinned.clear();
     }
 
     public List<WorkResult> work() {
+        final WorkUnitEvent event = new WorkUnitEvent();
+        event.begin();
+        final long start = System.nanoTime();
         try {
             return doWork();
         } catch (Throwable e) {
             e.printStackTrace();
             throw e;
+        } finally {
+            final long end = System.nanoTime();
+            final PreviewMetrics.UnitMetrics metrics = PreviewMetrics.unit(this);
+            metrics.queued().record(start - createdNanos);
+            metrics.time().record(end - start);
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.type = metrics.name();
+                event.chunkX = chunkPos.x;
+                event.chunkZ = chunkPos.z;
+                event.y = y;
+                event.queued = start - createdNanos;
+                event.canceled = isCanceled();
+                event.commit();
+            }
+
+            final WorkListener listener = workManager.workListener();
+            if (listener != null) {
+                listener.workDone(this, start - createdNanos, end - start);
+            }
         }
     }
 
@@ -71,6 +206,27 @@ public abstract class WorkUnit {
         return y;
     }
 
+    /**
+     * The level of detail of the storage this unit writes to. 0 for the full resolution data.
+     */
+    public int lodLevel() {
+        return 0;
+    }
+
+    /**
+     * The number of chunks (in X and Z direction) covered by this work unit, starting at {@link #chunk()}
+     */
+    public int chunkSpan() {
+        return 1;
+    }
+
+    /**
+     * Rough estimate of the work required for this unit, relative to sampling the biomes of a single chunk
+     */
+    public int cost() {
+        return 1;
+    }
+
     public void cancel() {
         isCanceled = true;
     }
@@ -0,0 +1,51 @@
+package caeruleusTait.world.preview.backend.worker;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.QuartPos;
+import net.minecraft.core.SectionPos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutable state that is owned by a single worker thread and reused across work units.
+ * <p>
+ * Use {@link SampleUtils#scratch()} to get the instance of the current thread. Nothing in here
+ * may be kept beyond the end of {@link WorkUnit#doWork()}, except for the result buffers, which
+ * are returned by the {@link WorkBatch} once they are applied.
+ */
+public class WorkerScratch {
+    private static final int MAX_POOLED_BUFFERS = 512;
+
+    public final BlockPos.MutableBlockPos mutableBlockPos = new BlockPos.MutableBlockPos();
+    public final ClimateBatch climateBatch = new ClimateBatch();
+    public final BiomeLookupCache biomeLookupCache = new BiomeLookupCache();
+    public final CellColumns cellColumns = new CellColumns();
+
+    /**
+     * One value per quart of a chunk, see {@link caeruleusTait.world.preview.backend.sampler.AdaptiveQuartSampler}
+     */
+    public final short[] chunkSamples = new short[(SectionPos.SECTION_SIZE / QuartPos.SIZE) * (SectionPos.SECTION_SIZE / QuartPos.SIZE)];
+
+    private final Int2ObjectMap<List<QuartBuffer>> freeBuffers = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * @param size width of the buffer in quarts
+     * @return a buffer with all values unset
+     */
+    public QuartBuffer acquireBuffer(int minQuartX, int minQuartZ, int size) {
+        final List<QuartBuffer> free = freeBuffers.get(size);
+        final QuartBuffer buffer = free == null || free.isEmpty() ? new QuartBuffer(size) : free.remove(free.size() - 1);
+        buffer.reset(minQuartX, minQuartZ);
+        return buffer;
+    }
+
+    public void releaseBuffer(QuartBuffer buffer) {
+        final List<QuartBuffer> free = freeBuffers.computeIfAbsent(buffer.size(), x -> new ArrayList<>());
+        if (free.size() < MAX_POOLED_BUFFERS) {
+            free.add(buffer);
+        }
+    }
+}
@@ -6,8 +6,6 @@ public class WorldPreviewComponents {
     // Main view components
     public static final Component TITLE = Component.translatable("world_preview.preview.title");
     public static final Component TITLE_FULL = Component.translatable("world_preview.preview.title-full");
-    public static final Component SAVING_PREVIEW = Component.translatable("world_preview.preview.saving");
-    public static final Component LOADING_PREVIEW = Component.translatable("world_preview.preview.loading");
     public static final Component SEED_FIELD = Component.translatable("world_preview.preview.seed-field");
     public static final Component SEED_LABEL = Component.translatable("world_preview.preview.seed-label");
     public static final Component BTN_RANDOM = Component.translatable("world_preview.preview.btn-random");
@@ -42,6 +40,8 @@ public class WorldPreviewComponents {
     public static final Component SETTINGS_GENERAL_HEAD = Component.translatable("world_preview.settings.general.head");
     public static final Component SETTINGS_GENERAL_THREADS = Component.translatable("world_preview.settings.general.threads");
     public static final Component SETTINGS_GENERAL_THREADS_TOOLTIP = Component.translatable("world_preview.settings.general.threads.tooltip");
+    public static final Component SETTINGS_GENERAL_MEMORY_TOOLTIP = Component.translatable("world_preview.settings.general.memory.tooltip");
+    public static final Component SETTINGS_GENERAL_MEMORY_UNLIMITED = Component.translatable("world_preview.settings.general.memory.unlimited");
     public static final Component SETTINGS_GENERAL_FC = Component.translatable("world_preview.settings.general.full.chunk");
     public static final Component SETTINGS_GENERAL_STRUCT = Component.translatable("world_preview.settings.general.struct");
     public static final Component SETTINGS_GENERAL_STRUCT_TOOLTIP = Component.translatable("world_preview.settings.general.struct.tooltip");
@@ -54,10 +54,16 @@ public class WorldPreviewComponents {
     public static final Component SETTINGS_GENERAL_FC_TOOLTIP = Component.translatable("world_preview.settings.general.full.chunk.tooltip");
     public static final Component SETTINGS_GENERAL_BG = Component.translatable("world_preview.settings.general.background");
     public static final Component SETTINGS_GENERAL_BG_TOOLTIP = Component.translatable("world_preview.settings.general.background.tooltip");
+    public static final Component SETTINGS_GENERAL_CENTER = Component.translatable("world_preview.settings.general.center");
+    public static final Component SETTINGS_GENERAL_CENTER_TOOLTIP = Component.translatable("world_preview.settings.general.center.tooltip");
     public static final Component SETTINGS_GENERAL_CONTROLS = Component.translatable("world_preview.settings.general.controls");
     public static final Component SETTINGS_GENERAL_CONTROLS_TOOLTIP = Component.translatable("world_preview.settings.general.controls.tooltip");
     public static final Component SETTINGS_GENERAL_FRAMETIME = Component.translatable("world_preview.settings.general.frametime");
     public static final Component SETTINGS_GENERAL_FRAMETIME_TOOLTIP = Component.translatable("world_preview.settings.general.frametime.tooltip");
+    public static final Component SETTINGS_GENERAL_METRICS = Component.translatable("world_preview.settings.general.metrics");
+    public static final Component SETTINGS_GENERAL_METRICS_TOOLTIP = Component.translatable("world_preview.settings.general.metrics.tooltip");
+    public static final Component SETTINGS_GENERAL_METRICS_DUMP = Component.translatable("world_preview.settings.general.metrics.dump");
+    public static final Component SETTINGS_GENERAL_METRICS_DUMP_TOOLTIP = Component.translatable("world_preview.settings.general.metrics.dump.tooltip");
     public static final Component SETTINGS_GENERAL_SHOW_IN_MENU = Component.translatable("world_preview.settings.general.showinmenu");
     public static final Component SETTINGS_GENERAL_SHOW_IN_MENU_TOOLTIP = Component.translatable("world_preview.settings.general.showinmenu.tooltip");
     public static final Component SETTINGS_GENERAL_SHOW_PLAYER = Component.translatable("world_preview.settings.general.showplayer");
@@ -80,6 +86,8 @@ public class WorldPreviewComponents {
     public static final Component SETTINGS_CACHE_CLEAR = Component.translatable("world_preview.settings.cache.clear");
     public static final Component SETTINGS_CACHE_CLEAR_TOOLTIP = Component.translatable("world_preview.settings.cache.clear.tooltip");
     public static final Component SETTINGS_CACHE_COMPRESSION = Component.translatable("world_preview.settings.cache.compression");
+    public static final Component SETTINGS_CACHE_OFF_HEAP = Component.translatable("world_preview.settings.cache.offheap");
+    public static final Component SETTINGS_CACHE_OFF_HEAP_TOOLTIP = Component.translatable("world_preview.settings.cache.offheap.tooltip");
     public static final Component SETTINGS_CACHE_COMPRESSION_TOOLTIP = Component.translatable("world_preview.settings.cache.compression.tooltip");
 
     // - Heightmap settings
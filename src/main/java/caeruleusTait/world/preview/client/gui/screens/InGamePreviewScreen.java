@@ -28,8 +28,6 @@ import org.jetbrains.annotations.Nullable;
 import java.nio.file.Path;
 import java.security.InvalidParameterException;
 
-import static caeruleusTait.world.preview.client.WorldPreviewComponents.LOADING_PREVIEW;
-import static caeruleusTait.world.preview.client.WorldPreviewComponents.SAVING_PREVIEW;
 
 public class InGamePreviewScreen extends Screen implements PreviewContainerDataProvider {
 
@@ -90,16 +88,13 @@ public class InGamePreviewScreen extends Screen implements PreviewContainerDataP
     }
 
     private String filename() {
-        return String.format("%s.zip", cacheFileCompatPart());
+        return String.format("%s.bin", cacheFileCompatPart());
     }
 
     @Override
     public void storePreviewStorage(long seed, PreviewStorage storage) {
-        if (!worldPreview.cfg().cacheInGame) {
-            return;
-        }
-        minecraft.forceSetScreen(new PreviewCacheLoadingScreen(SAVING_PREVIEW));
-        writeCacheFile(previewContainer.workManager().previewStorage(), cacheDir().resolve(filename()));
+        // Also for storages loaded before caching was turned off, so that their journal stops
+        finishCacheFile(storage);
     }
 
     @Override
@@ -108,10 +103,7 @@ public class InGamePreviewScreen extends Screen implements PreviewContainerDataP
             return new PreviewStorage(yMin, yMax);
         }
 
-        minecraft.forceSetScreen(new PreviewCacheLoadingScreen(LOADING_PREVIEW));
-        final PreviewStorage res = readCacheFile(yMin, yMax, cacheDir().resolve(filename()));
-        minecraft.forceSetScreen(this);
-        return res;
+        return readCacheFile(yMin, yMax, cacheDir().resolve(filename()));
     }
 
     /**
@@ -40,8 +40,6 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
-import static caeruleusTait.world.preview.client.WorldPreviewComponents.LOADING_PREVIEW;
-import static caeruleusTait.world.preview.client.WorldPreviewComponents.SAVING_PREVIEW;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.TITLE;
 
 public class PreviewTab implements Tab, AutoCloseable, PreviewContainerDataProvider {
@@ -139,17 +137,13 @@ public class PreviewTab implements Tab, AutoCloseable, PreviewContainerDataProvi
     }
 
     private String filename(long seed) {
-        return String.format("%s-%s.zip", seed, cacheFileCompatPart());
+        return String.format("%s-%s.bin", seed, cacheFileCompatPart());
     }
 
     @Override
     public void storePreviewStorage(long seed, PreviewStorage storage) {
-        if (!worldPreview.cfg().cacheInNew) {
-            return;
-        }
-        minecraft.forceSetScreen(new PreviewCacheLoadingScreen(SAVING_PREVIEW));
-        writeCacheFile(previewContainer.workManager().previewStorage(), cacheDir().resolve(filename(seed)));
-        minecraft.forceSetScreen(createWorldScreen);
+        // Also for storages loaded before caching was turned off, so that their journal stops
+        finishCacheFile(storage);
     }
 
     @Override
@@ -158,10 +152,7 @@ public class PreviewTab implements Tab, AutoCloseable, PreviewContainerDataProvi
             return new PreviewStorage(yMin, yMax);
         }
 
-        minecraft.forceSetScreen(new PreviewCacheLoadingScreen(LOADING_PREVIEW));
-        final PreviewStorage res = readCacheFile(yMin, yMax, cacheDir().resolve(filename(seed)));
-        minecraft.forceSetScreen(createWorldScreen);
-        return res;
+        return readCacheFile(yMin, yMax, cacheDir().resolve(filename(seed)));
     }
 
     public PreviewContainer mainScreenWidget() {
@@ -19,6 +19,8 @@ import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_CACHE_DESC;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_CACHE_G_ENABLE;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_CACHE_N_ENABLE;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_CACHE_OFF_HEAP;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_CACHE_OFF_HEAP_TOOLTIP;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_CACHE_TITLE;
 import static caeruleusTait.world.preview.client.gui.screens.PreviewContainer.LINE_HEIGHT;
 
@@ -36,8 +38,10 @@ public class CacheTab extends GridLayoutTab {
         Checkbox cbGameEnable     = Checkbox.builder(SETTINGS_CACHE_G_ENABLE,           minecraft.font).selected(cfg.cacheInGame      ).onValueChange((box, val) -> cfg.cacheInGame       = val).build();
         Checkbox cbNewEnable      = Checkbox.builder(SETTINGS_CACHE_N_ENABLE,           minecraft.font).selected(cfg.cacheInNew       ).onValueChange((box, val) -> cfg.cacheInNew        = val).build();
         Checkbox cbCompressEnable = Checkbox.builder(SETTINGS_CACHE_COMPRESSION,        minecraft.font).selected(cfg.enableCompression).onValueChange((box, val) -> cfg.enableCompression = val).build();
+        Checkbox cbOffHeap        = Checkbox.builder(SETTINGS_CACHE_OFF_HEAP,           minecraft.font).selected(cfg.offHeapSections  ).onValueChange((box, val) -> cfg.offHeapSections   = val).build();
 
         cbCompressEnable.setTooltip(Tooltip.create(SETTINGS_CACHE_COMPRESSION_TOOLTIP));
+        cbOffHeap.setTooltip(Tooltip.create(SETTINGS_CACHE_OFF_HEAP_TOOLTIP));
 
         Button btnClear = Button
                 .builder(SETTINGS_CACHE_CLEAR, this::onClearCache)
@@ -54,6 +58,7 @@ public class CacheTab extends GridLayoutTab {
         rowHelper.addChild(new WGLabel(minecraft.font, 0, 0, LINE_WIDTH, LINE_HEIGHT, WGLabel.TextAlignment.CENTER, Component.empty(), 0xFFFFFF));
         rowHelper.addChild(new WGLabel(minecraft.font, 0, 0, LINE_WIDTH, LINE_HEIGHT, WGLabel.TextAlignment.CENTER, Component.empty(), 0xFFFFFF));
         rowHelper.addChild(cbCompressEnable);
+        rowHelper.addChild(cbOffHeap);
     }
 
     private void onClearCache(Button btn) {
@@ -2,20 +2,26 @@ package caeruleusTait.world.preview.client.gui.screens.settings;
 
 import caeruleusTait.world.preview.WorldPreview;
 import caeruleusTait.world.preview.WorldPreviewConfig;
+import caeruleusTait.world.preview.backend.metrics.PreviewMetrics;
 import caeruleusTait.world.preview.client.gui.widgets.SelectionSlider;
 import caeruleusTait.world.preview.client.gui.widgets.WGLabel;
 import net.minecraft.client.Minecraft;
+import net.minecraft.client.gui.components.Button;
 import net.minecraft.client.gui.components.Checkbox;
 import net.minecraft.client.gui.components.Tooltip;
 import net.minecraft.client.gui.components.tabs.GridLayoutTab;
 import net.minecraft.client.gui.layouts.GridLayout;
 import net.minecraft.network.chat.Component;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_BG;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_BG_TOOLTIP;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_CENTER;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_CENTER_TOOLTIP;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_CONTROLS;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_CONTROLS_TOOLTIP;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_FC;
@@ -27,6 +33,12 @@ import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_HEIGHTMAP_TOOLTIP;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_INTERSECT;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_INTERSECT_TOOLTIP;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_MEMORY_TOOLTIP;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_MEMORY_UNLIMITED;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_METRICS;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_METRICS_DUMP;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_METRICS_DUMP_TOOLTIP;
+import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_METRICS_TOOLTIP;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_NOISE;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_NOISE_TOOLTIP;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_SHOW_IN_MENU;
@@ -37,6 +49,7 @@ import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_STRUCT_TOOLTIP;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_THREADS_TOOLTIP;
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.SETTINGS_GENERAL_TITLE;
+import static caeruleusTait.world.preview.WorldPreview.LOGGER;
 import static caeruleusTait.world.preview.client.gui.screens.PreviewContainer.LINE_HEIGHT;
 
 public class GeneralTab extends GridLayoutTab {
@@ -59,7 +72,17 @@ public class GeneralTab extends GridLayoutTab {
                 x -> cfg.setNumThreads(x.value)
         );
 
+        List<MemoryBudget> memoryBudgets = MemoryBudget.VALUES.stream().map(MemoryBudget::new).toList();
+        SelectionSlider<MemoryBudget> memorySlider = new SelectionSlider<>(
+                0, 0,
+                LINE_WIDTH, LINE_HEIGHT,
+                memoryBudgets,
+                memoryBudgets.stream().filter(x -> x.value == cfg.memoryBudgetMB).findFirst().orElse(memoryBudgets.get(memoryBudgets.size() - 1)),
+                x -> cfg.memoryBudgetMB = x.value
+        );
+
         Checkbox cbBg     = Checkbox.builder(SETTINGS_GENERAL_BG,           minecraft.font).selected(cfg.backgroundSampleVertChunk).onValueChange((box, val) -> cfg.backgroundSampleVertChunk = val).build();
+        Checkbox cbCenter = Checkbox.builder(SETTINGS_GENERAL_CENTER,       minecraft.font).selected(cfg.prioritizeCenter         ).onValueChange((box, val) -> cfg.prioritizeCenter          = val).build();
         Checkbox cbFc     = Checkbox.builder(SETTINGS_GENERAL_FC,           minecraft.font).selected(cfg.buildFullVertChunk       ).onValueChange((box, val) -> cfg.buildFullVertChunk        = val).build();
         Checkbox cbStruct = Checkbox.builder(SETTINGS_GENERAL_STRUCT,       minecraft.font).selected(cfg.sampleStructures         ).onValueChange((box, val) -> cfg.sampleStructures          = val).build();
         Checkbox cbHm     = Checkbox.builder(SETTINGS_GENERAL_HEIGHTMAP,    minecraft.font).selected(cfg.sampleHeightmap          ).onValueChange((box, val) -> cfg.sampleHeightmap           = val).build();
@@ -69,10 +92,22 @@ public class GeneralTab extends GridLayoutTab {
         Checkbox cbFt     = Checkbox.builder(SETTINGS_GENERAL_FRAMETIME,    minecraft.font).selected(cfg.showFrameTime            ).onValueChange((box, val) -> cfg.showFrameTime             = val).build();
         Checkbox cbPause  = Checkbox.builder(SETTINGS_GENERAL_SHOW_IN_MENU, minecraft.font).selected(cfg.showInPauseMenu          ).onValueChange((box, val) -> cfg.showInPauseMenu           = val).build();
         Checkbox cbPlayer = Checkbox.builder(SETTINGS_GENERAL_SHOW_PLAYER,  minecraft.font).selected(cfg.showPlayer               ).onValueChange((box, val) -> cfg.showPlayer                = val).build();
+        Checkbox cbMetric = Checkbox.builder(SETTINGS_GENERAL_METRICS,      minecraft.font).selected(cfg.showMetrics              ).onValueChange((box, val) -> cfg.showMetrics               = val).build();
+
+        Button dumpMetrics = Button.builder(SETTINGS_GENERAL_METRICS_DUMP, x -> {
+            try {
+                final Path file = PreviewMetrics.dump(WorldPreview.get().configDir());
+                LOGGER.info("Wrote World Preview metrics to {}", file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }).width(LINE_WIDTH / 2).build();
 
         threadsSlider.setTooltip(Tooltip.create(SETTINGS_GENERAL_THREADS_TOOLTIP));
+        memorySlider.setTooltip(Tooltip.create(SETTINGS_GENERAL_MEMORY_TOOLTIP));
         cbFc.setTooltip(Tooltip.create(SETTINGS_GENERAL_FC_TOOLTIP));
         cbBg.setTooltip(Tooltip.create(SETTINGS_GENERAL_BG_TOOLTIP));
+        cbCenter.setTooltip(Tooltip.create(SETTINGS_GENERAL_CENTER_TOOLTIP));
         cbStruct.setTooltip(Tooltip.create(SETTINGS_GENERAL_STRUCT_TOOLTIP));
         cbHm.setTooltip(Tooltip.create(SETTINGS_GENERAL_HEIGHTMAP_TOOLTIP));
         cbInt.setTooltip(Tooltip.create(SETTINGS_GENERAL_INTERSECT_TOOLTIP));
@@ -81,12 +116,16 @@ public class GeneralTab extends GridLayoutTab {
         cbFt.setTooltip(Tooltip.create(SETTINGS_GENERAL_FRAMETIME_TOOLTIP));
         cbPause.setTooltip(Tooltip.create(SETTINGS_GENERAL_SHOW_IN_MENU_TOOLTIP));
         cbPlayer.setTooltip(Tooltip.create(SETTINGS_GENERAL_SHOW_PLAYER_TOOLTIP));
+        cbMetric.setTooltip(Tooltip.create(SETTINGS_GENERAL_METRICS_TOOLTIP));
+        dumpMetrics.setTooltip(Tooltip.create(SETTINGS_GENERAL_METRICS_DUMP_TOOLTIP));
 
         GridLayout.RowHelper rowHelper = layout.rowSpacing(4).createRowHelper(2);
         rowHelper.addChild(new WGLabel(minecraft.font, 0, 0, LINE_WIDTH, LINE_HEIGHT, WGLabel.TextAlignment.CENTER, SETTINGS_GENERAL_HEAD, 0xFFFFFF), 2);
         rowHelper.addChild(threadsSlider, 2);
+        rowHelper.addChild(memorySlider, 2);
         rowHelper.addChild(cbFc, 2);
         rowHelper.addChild(cbBg, 2);
+        rowHelper.addChild(cbCenter, 2);
         rowHelper.addChild(cbStruct, 1);
         rowHelper.addChild(cbHm, 1);
         rowHelper.addChild(cbInt, 1);
@@ -96,6 +135,8 @@ public class GeneralTab extends GridLayoutTab {
         rowHelper.addChild(cbFt);
         rowHelper.addChild(cbPause);
         rowHelper.addChild(cbPlayer);
+        rowHelper.addChild(cbMetric);
+        rowHelper.addChild(dumpMetrics);
     }
 
     public static class ThreadCount implements SelectionSlider.SelectionValues {
@@ -110,4 +151,25 @@ public class GeneralTab extends GridLayoutTab {
             return Component.translatable("world_preview.settings.general.threads", value);
         }
     }
+
+    public static class MemoryBudget implements SelectionSlider.SelectionValues {
+        /**
+         * In MiB, {@code 0} is unlimited
+         */
+        public static final List<Integer> VALUES = List.of(256, 512, 1024, 2048, 4096, 8192, 0);
+
+        public final int value;
+
+        public MemoryBudget(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public Component message() {
+            if (value == 0) {
+                return SETTINGS_GENERAL_MEMORY_UNLIMITED;
+            }
+            return Component.translatable("world_preview.settings.general.memory", value);
+        }
+    }
 }
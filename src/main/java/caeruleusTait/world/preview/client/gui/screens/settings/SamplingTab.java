@@ -34,9 +34,12 @@ public class SamplingTab extends GridLayoutTab {
         rowHelper.addChild(new SelectionSlider<>(
                 0, 0,
                 LINE_WIDTH, LINE_HEIGHT,
-                List.of(PixelsPerChunk.NUM_1, PixelsPerChunk.NUM_2, PixelsPerChunk.NUM_4, PixelsPerChunk.NUM_8, PixelsPerChunk.NUM_16),
-                PixelsPerChunk.of(renderSettings.pixelsPerChunk()),
-                x -> renderSettings.setPixelsPerChunk(x.value)
+                List.of(
+                        PixelsPerChunk.LOD_16, PixelsPerChunk.LOD_8, PixelsPerChunk.LOD_4, PixelsPerChunk.LOD_2,
+                        PixelsPerChunk.NUM_1, PixelsPerChunk.NUM_2, PixelsPerChunk.NUM_4, PixelsPerChunk.NUM_8, PixelsPerChunk.NUM_16
+                ),
+                PixelsPerChunk.of(renderSettings),
+                x -> x.apply(renderSettings)
         ));
         rowHelper.addChild(new WGLabel(minecraft.font, 0, 0, 200, LINE_HEIGHT / 2, WGLabel.TextAlignment.CENTER, Component.literal(""), 0xFFFFFF));
 
@@ -45,7 +48,7 @@ public class SamplingTab extends GridLayoutTab {
         rowHelper.addChild(new SelectionSlider<>(
                 0, 0,
                 LINE_WIDTH, LINE_HEIGHT,
-                List.of(GUISamplesType.AUTO, GUISamplesType.FULL, GUISamplesType.QUARTER, GUISamplesType.SINGLE),
+                List.of(GUISamplesType.AUTO, GUISamplesType.FULL, GUISamplesType.ADAPTIVE, GUISamplesType.QUARTER, GUISamplesType.SINGLE),
                 GUISamplesType.of(renderSettings.samplerType),
                 x -> renderSettings.samplerType = x.samplerType
         ));
@@ -57,17 +60,35 @@ public class SamplingTab extends GridLayoutTab {
         NUM_4(4),
         NUM_2(2),
         NUM_1(1),
+        LOD_2(-2),
+        LOD_4(-4),
+        LOD_8(-8),
+        LOD_16(-16),
 
         ;
 
+        /**
+         * Pixels per chunk or, if negative, chunks per pixel
+         */
         public final int value;
 
         PixelsPerChunk(int value) {
             this.value = value;
         }
 
-        public static PixelsPerChunk of(int num) {
-            return PixelsPerChunk.valueOf("NUM_" + num);
+        public static PixelsPerChunk of(RenderSettings renderSettings) {
+            if (renderSettings.lodLevel() > 0) {
+                return PixelsPerChunk.valueOf("LOD_" + renderSettings.chunksPerPixel());
+            }
+            return PixelsPerChunk.valueOf("NUM_" + renderSettings.pixelsPerChunk());
+        }
+
+        public void apply(RenderSettings renderSettings) {
+            if (value < 0) {
+                renderSettings.setChunksPerPixel(-value);
+            } else {
+                renderSettings.setPixelsPerChunk(value);
+            }
         }
 
         @Override
@@ -81,6 +102,7 @@ public class SamplingTab extends GridLayoutTab {
         FULL(RenderSettings.SamplerType.FULL),
         QUARTER(RenderSettings.SamplerType.QUARTER),
         SINGLE(RenderSettings.SamplerType.SINGLE),
+        ADAPTIVE(RenderSettings.SamplerType.ADAPTIVE),
 
         ;
 
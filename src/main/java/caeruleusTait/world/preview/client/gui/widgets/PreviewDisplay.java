@@ -5,14 +5,20 @@ import caeruleusTait.world.preview.WorldPreview;
 import caeruleusTait.world.preview.WorldPreviewConfig;
 import caeruleusTait.world.preview.backend.WorkManager;
 import caeruleusTait.world.preview.backend.color.PreviewData;
+import caeruleusTait.world.preview.backend.metrics.PreviewMetrics;
+import caeruleusTait.world.preview.backend.storage.PreviewLodStorage;
 import caeruleusTait.world.preview.backend.storage.PreviewSection;
 import caeruleusTait.world.preview.backend.storage.PreviewStorage;
+import caeruleusTait.world.preview.backend.storage.PreviewStoragePool;
 import caeruleusTait.world.preview.client.WorldPreviewClient;
 import caeruleusTait.world.preview.client.gui.PreviewDisplayDataProvider;
 import caeruleusTait.world.preview.client.gui.widgets.lists.BiomesList;
+import caeruleusTait.world.preview.mixin.client.NativeImageAccessor;
 import com.mojang.blaze3d.platform.NativeImage;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.VertexSorting;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import it.unimi.dsi.fastutil.shorts.Short2LongMap;
 import it.unimi.dsi.fastutil.shorts.Short2LongOpenHashMap;
 import net.minecraft.client.Minecraft;
@@ -34,7 +40,9 @@ import net.minecraft.world.level.levelgen.structure.BoundingBox;
 import net.minecraft.world.level.material.MapColor;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
 
+import java.nio.IntBuffer;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayDeque;
@@ -47,6 +55,11 @@ import static caeruleusTait.world.preview.client.WorldPreviewComponents.MSG_ERRO
 import static caeruleusTait.world.preview.client.WorldPreviewComponents.MSG_PREVIEW_SETUP_LOADING;
 
 public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
+    /**
+     * Marks cells that {@link #drawCells} leaves alone. All drawn colors are opaque, so this is never one of them.
+     */
+    static final int SKIP_CELL = 0;
+
     private final Minecraft minecraft;
     private final PreviewDisplayDataProvider dataProvider;
     private final WorkManager workManager;
@@ -90,6 +103,21 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
     private int hoverHelperGridHeight;
 
     private Queue<Long> frametimes = new ArrayDeque<>();
+    private final short[] regionBuffer = new short[PreviewSection.SIZE * PreviewSection.SIZE];
+    private final int[] colorBuffer = new int[PreviewSection.SIZE * PreviewSection.SIZE];
+
+    // Incremental rendering: only sections whose version changed are drawn again
+    private final Reference2IntMap<PreviewSection> drawnVersions = new Reference2IntOpenHashMap<>();
+    private ViewState drawnView = null;
+    private boolean forceRedraw = true;
+    private short[] cellData = new short[0];
+    private int[] rowBuffer = new int[0];
+    private int cellWidth;
+    private int cellHeight;
+    private int dirtyMinX;
+    private int dirtyMinZ;
+    private int dirtyMaxX;
+    private int dirtyMaxZ;
 
     private boolean clicked = false;
 
@@ -118,7 +146,12 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
         closeDisplayTextures();
         previewImg = new NativeImage(NativeImage.Format.RGBA, texWidth, texHeight, true);
         previewTexture = new DynamicTexture(previewImg);
-        scaleBlockPos = (QuartPos.SIZE / renderSettings.quartExpand()) * renderSettings.quartStride();
+        scaleBlockPos = renderSettings.blocksPerPixel();
+        cellWidth = texWidth / renderSettings.quartExpand();
+        cellHeight = texHeight / renderSettings.quartExpand();
+        cellData = new short[cellWidth * cellHeight];
+        rowBuffer = new int[texWidth];
+        forceRedraw = true;
         hoverHelperGridWidth = (texWidth / hoverHelperGridCellSize) + 1;
         hoverHelperGridHeight = (texHeight / hoverHelperGridCellSize) + 1;
         hoverHelperGrid = new StructHoverHelperCell[hoverHelperGridWidth * hoverHelperGridHeight];
@@ -164,6 +197,7 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
             colorMapGrayScale[i] = grayScale(colorMap[i]);
             cavesMap[i] = rawBiomeMap[i].isCave();
         }
+        forceRedraw = true;
     }
 
     private void closeIconTextures() {
@@ -222,6 +256,7 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
             if (dataProvider.setupFailed()) {
                 previewImg.fillRect(0, 0, texWidth, texHeight, 0xFF000000);
                 previewTexture.upload();
+                forceRedraw = true;
                 WorldPreviewClient.renderTexture(previewTexture, xMin, yMin, xMax, yMax);
 
                 final List<MutableComponent> lines = MSG_ERROR_SETUP_FAILED.getString().lines().map(Component::literal).toList();
@@ -237,19 +272,23 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
             } else if (dataProvider.isUpdating()) {
                 previewImg.fillRect(0, 0, texWidth, texHeight, 0xFF000000);
                 previewTexture.upload();
+                forceRedraw = true;
                 WorldPreviewClient.renderTexture(previewTexture, xMin, yMin, xMax, yMax);
 
                 final int centerX = getX() + (width / 2);
                 final int centerY = getY() + (height / 2);
                 guiGraphics.drawCenteredString(minecraft.font, MSG_PREVIEW_SETUP_LOADING, centerX, centerY, 0xFFFFFF);
             } else {
-                Arrays.fill(workingVisibleBiomes, (short) 0);
                 Arrays.fill(workingVisibleStructures, (short) 0);
                 Arrays.stream(hoverHelperGrid).forEach(cell -> cell.entries.clear());
-                final List<RenderHelper> renderData = generateRenderData();
-                updateTexture(renderData);
-
-                previewTexture.upload();
+                final ViewState view = currentViewState();
+                long phaseStart = System.nanoTime();
+                final List<RenderHelper> renderData = generateRenderData(view);
+                phaseStart = PreviewMetrics.FRAME_GENERATE_RENDER_DATA.recordSince(phaseStart);
+                updateTexture(view, renderData);
+                phaseStart = PreviewMetrics.FRAME_UPDATE_TEXTURE.recordSince(phaseStart);
+                uploadDirtyRegion();
+                PreviewMetrics.FRAME_UPLOAD.recordSince(phaseStart);
 
                 // Render the main texture
                 WorldPreviewClient.renderTexture(previewTexture, xMin, yMin, xMax, yMax);
@@ -296,7 +335,9 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
         }
 
         final Instant renderEnd = Instant.now();
-        frametimes.add(Duration.between(renderStart, renderEnd).abs().toMillis());
+        final Duration renderTime = Duration.between(renderStart, renderEnd).abs();
+        PreviewMetrics.FRAME_TOTAL.record(renderTime.toNanos());
+        frametimes.add(renderTime.toMillis());
         while (frametimes.size() > 30) {
             frametimes.poll();
         }
@@ -304,6 +345,20 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
 
         if (config.showFrameTime) {
             guiGraphics.drawString(minecraft.font, sum / frametimes.size() + " ms", 5, 5, 0xFFFFFF);
+            final long budget = PreviewStoragePool.budgetBytes();
+            guiGraphics.drawString(
+                    minecraft.font,
+                    (PreviewStoragePool.usedBytes() >> 20) + (budget > 0 ? " / " + (budget >> 20) : "") + " MiB",
+                    5, 5 + minecraft.font.lineHeight + 2, 0xFFFFFF
+            );
+        }
+
+        if (config.showMetrics) {
+            int lineY = 5 + (config.showFrameTime ? 2 * (minecraft.font.lineHeight + 2) : 0);
+            for (String line : PreviewMetrics.overlayLines()) {
+                guiGraphics.drawString(minecraft.font, line, 5, lineY, 0xFFFFFF);
+                lineY += minecraft.font.lineHeight + 2;
+            }
         }
     }
 
@@ -345,25 +400,21 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
     ) {
     }
 
-    private List<RenderHelper> generateRenderData() {
-        final BlockPos center = center();
-        final int xMin = center.getX() - (texWidth * scaleBlockPos / 2) - 1;
-        final int zMin = center.getZ() - (texHeight * scaleBlockPos / 2) - 1;
-
-        final int quartExpand = renderSettings.quartExpand();
-        final int quartStride = renderSettings.quartStride();
+    private List<RenderHelper> generateRenderData(ViewState view) {
+        final int quartExpand = view.quartExpand;
+        final int quartStride = view.quartStride;
 
         final int quartsInWidth = (texWidth / quartExpand) * quartStride;
         final int quartsInHeight = (texHeight / quartExpand) * quartStride;
 
-        final int minQuartX = QuartPos.fromBlock(xMin);
-        final int minQuartZ = QuartPos.fromBlock(zMin);
+        final int minQuartX = view.minQuartX;
+        final int minQuartZ = view.minQuartZ;
 
         final int maxQuartX = minQuartX + quartsInWidth;
         final int maxQuartZ = minQuartZ + quartsInHeight;
 
         int quartX = minQuartX;
-        int quartY = QuartPos.fromBlock(center.getY());
+        int quartY = view.quartY;
         int quartZ = minQuartZ;
 
         int sectionStartTexX = 0;
@@ -371,128 +422,427 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
 
         final List<RenderHelper> res = new ArrayList<>(((quartsInWidth / PreviewSection.SIZE) + 2) * ((quartsInHeight / PreviewSection.SIZE) + 2));
 
-        PreviewStorage storage = workManager.previewStorage();
+        PreviewStorage storage = view.storage;
 
         // Load sections
-        synchronized (storage) {
-            while (true) {
-                long flag = renderSettings.mode.flag;
-                int useY = renderSettings.mode.useY ? quartY : 0;
-                PreviewSection dataSection = storage.section4(quartX, useY, quartZ, flag);
-                PreviewSection structureSection = storage.section4(quartX, 0, quartZ, PreviewStorage.FLAG_STRUCT_START);
-                PreviewSection.AccessData accessData = dataSection.calcQuartOffsetData(quartX, quartZ, maxQuartX, maxQuartZ);
-
-                res.add(new RenderHelper(dataSection, structureSection, accessData, sectionStartTexX, sectionStartTexZ));
-
-                // Can we fit more stuff in the X direction?
-                if (accessData.continueX()) {
-                    int quartDiffX = accessData.maxX() - accessData.minX();
-                    quartX += quartDiffX;
-                    sectionStartTexX += (quartDiffX * quartExpand) / quartStride;
-                    continue;
-                }
-
-                // We are at the end in the X direction, can we continue in the Z direction?
-                if (accessData.continueZ()) {
-                    int quartDiffZ = accessData.maxZ() - accessData.minZ();
-                    quartX = minQuartX;
-                    quartZ += quartDiffZ;
-                    sectionStartTexZ += (quartDiffZ * quartExpand) / quartStride;
-                    sectionStartTexX = 0;
-                    continue;
-                }
+        while (true) {
+            long flag = view.mode.flag;
+            int useY = view.mode.useY ? quartY : 0;
+            PreviewSection dataSection = storage.section4(quartX, useY, quartZ, flag);
+            PreviewSection structureSection = storage.section4(quartX, 0, quartZ, PreviewStorage.FLAG_STRUCT_START);
+            dataSection.markUsed();
+            structureSection.markUsed();
+            PreviewSection.AccessData accessData = dataSection.calcQuartOffsetData(quartX, quartZ, maxQuartX, maxQuartZ);
+
+            res.add(new RenderHelper(dataSection, structureSection, accessData, sectionStartTexX, sectionStartTexZ));
+
+            // Can we fit more stuff in the X direction?
+            if (accessData.continueX()) {
+                int quartDiffX = accessData.maxX() - accessData.minX();
+                quartX += quartDiffX;
+                sectionStartTexX += (quartDiffX * quartExpand) / quartStride;
+                continue;
+            }
 
-                // We are done drawing now
-                break;
+            // We are at the end in the X direction, can we continue in the Z direction?
+            if (accessData.continueZ()) {
+                int quartDiffZ = accessData.maxZ() - accessData.minZ();
+                quartX = minQuartX;
+                quartZ += quartDiffZ;
+                sectionStartTexZ += (quartDiffZ * quartExpand) / quartStride;
+                sectionStartTexX = 0;
+                continue;
             }
+
+            // We are done drawing now
+            break;
         }
 
         return res;
     }
 
-    private void updateTexture(List<RenderHelper> renderData) {
-        int texX = 0;
-        int texZ = 0;
+    /**
+     * Everything besides the section data that determines the content of the preview texture. If any
+     * of this changes, the entire texture has to be redrawn.
+     */
+    private record ViewState(
+            PreviewStorage storage,
+            RenderSettings.RenderMode mode,
+            int minQuartX,
+            int minQuartZ,
+            int quartY,
+            int quartExpand,
+            int quartStride,
+            short selectedBiomeId,
+            boolean highlightCaves
+    ) {
+        /**
+         * @return {@code true} if the views only differ in the position
+         */
+        public boolean isPanOf(ViewState other) {
+            return other != null
+                    && storage == other.storage
+                    && mode == other.mode
+                    && quartY == other.quartY
+                    && quartExpand == other.quartExpand
+                    && quartStride == other.quartStride
+                    && selectedBiomeId == other.selectedBiomeId
+                    && highlightCaves == other.highlightCaves;
+        }
+    }
 
-        final int quartExpand = renderSettings.quartExpand();
+    private ViewState currentViewState() {
+        final BlockPos center = center();
+        final int xMin = center.getX() - (texWidth * scaleBlockPos / 2) - 1;
+        final int zMin = center.getZ() - (texHeight * scaleBlockPos / 2) - 1;
         final int quartStride = renderSettings.quartStride();
+        final int lodLevel = renderSettings.lodLevel();
+
+        // Zoomed out: the cells of the level are rendered like quarts with a stride of 1
+        if (lodLevel > 0) {
+            return new ViewState(
+                    workManager.previewStorage().lod().level(lodLevel),
+                    renderSettings.mode,
+                    PreviewLodStorage.blockToCell(xMin, lodLevel),
+                    PreviewLodStorage.blockToCell(zMin, lodLevel),
+                    QuartPos.fromBlock(center.getY()),
+                    1,
+                    1,
+                    selectedBiomeId,
+                    highlightCaves
+            );
+        }
+
+        // Align the view to the stride, so that panning always moves the texture by whole cells
+        return new ViewState(
+                workManager.previewStorage(),
+                renderSettings.mode,
+                Math.floorDiv(QuartPos.fromBlock(xMin), quartStride) * quartStride,
+                Math.floorDiv(QuartPos.fromBlock(zMin), quartStride) * quartStride,
+                QuartPos.fromBlock(center.getY()),
+                renderSettings.quartExpand(),
+                quartStride,
+                selectedBiomeId,
+                highlightCaves
+        );
+    }
+
+    private void updateTexture(ViewState view, List<RenderHelper> renderData) {
+        final boolean redrawAll;
+        if (forceRedraw || drawnView == null || !view.isPanOf(drawnView)) {
+            redrawAll = true;
+        } else if (view.equals(drawnView)) {
+            redrawAll = false;
+        } else {
+            // Panning: move what is already there and only draw the strips that scrolled into view
+            final int shiftX = (view.minQuartX - drawnView.minQuartX) / view.quartStride;
+            final int shiftZ = (view.minQuartZ - drawnView.minQuartZ) / view.quartStride;
+            redrawAll = Math.abs(shiftX) >= cellWidth || Math.abs(shiftZ) >= cellHeight;
+            if (!redrawAll) {
+                scroll(shiftX, shiftZ, view.quartExpand);
+            }
+        }
+
+        if (redrawAll) {
+            Arrays.fill(cellData, Short.MIN_VALUE);
+            Arrays.fill(workingVisibleBiomes, 0);
+            drawnVersions.clear();
+            forceRedraw = false;
+        }
 
         // Render the biomes / heightmap
         for (RenderHelper r : renderData) {
-            // Reset icon coords to the current section
-            texX = r.sectionStartTexX;
-
-            // Draw all the relevant data in the section
-            for(int x = r.accessData.minX(); x < r.accessData.maxX(); x += quartStride) {
-                texZ = r.sectionStartTexZ;
-                for (int z = r.accessData.minZ(); z < r.accessData.maxZ(); z += quartStride) {
-
-                    // Read the biome data
-                    short rawData = r.dataSection.get(x, z);
-                    int color = 0xFF000000;
-                    switch (renderSettings.mode) {
-                        case BIOMES -> {
-                            if (rawData >= 0) {
-                                color = selectedBiomeId >= 0 || highlightCaves ? colorMapGrayScale[rawData] : colorMap[rawData];
-                                if (selectedBiomeId == rawData || (highlightCaves && cavesMap[rawData])) {
-                                    color = colorMap[rawData];
-                                }
-                                workingVisibleBiomes[rawData] += 1;
-                            }
-                        }
-                        case HEIGHTMAP -> {
-                            if (rawData > Short.MIN_VALUE) {
-                                color = heightColorMap[rawData - dataProvider.yMin()];
-                            }
-                        }
-                        case INTERSECTIONS -> {
-                            if (rawData >= 0) {
-                                // Main y-intersection
-                                color = MapColor.byId(rawData).col;
-                                color = textureColor(color == 0 ? 0xFFFFFF : color);
-                            } else if(rawData > Short.MIN_VALUE) {
-                                // See through one layer of air
-                                color = MapColor.byId(-rawData).col;
-                                color = highlightColor(textureColor(color == 0 ? 0xFFFFFF : color));
-                            }
-                        }
-                        case NOISE_TEMPERATURE, NOISE_HUMIDITY, NOISE_CONTINENTALNESS, NOISE_EROSION, NOISE_DEPTH, NOISE_WEIRDNESS -> {
-                            if (rawData > Short.MIN_VALUE) {
-                                final float data = ((float) rawData) / ((float) Short.MAX_VALUE);
-                                final int idx = Math.min(1023, Math.max(0, 512 + (int) (data * 512)));
-                                color = noiseColorMap[idx];
-                            }
-                        }
-                        case NOISE_PEAKS_AND_VALLEYS -> {
-                            if (rawData > Short.MIN_VALUE) {
-                                final float data = ((float) rawData) / 0.5f / ((float) Short.MAX_VALUE);
-                                final float pvData = NoiseRouterData.peaksAndValleys(Math.min(1.0f, Math.max(-1.0f, data)));
-                                final int idx = Math.min(1023, Math.max(0, 512 + (int) (pvData * 512)));
-                                color = noiseColorMap[idx];
-                            }
-                        }
+            // The version must be read before the data, so that concurrent changes trigger another redraw
+            final int version = r.dataSection.version();
+            if (redrawAll || !drawnVersions.containsKey(r.dataSection) || drawnVersions.getInt(r.dataSection) != version) {
+                drawnVersions.put(r.dataSection, version);
+                drawSection(r, view, 0, 0, cellWidth, cellHeight);
+            } else if (!view.equals(drawnView)) {
+                drawExposed(r, view, drawnView);
+            }
+        }
+        drawnView = view;
+
+        // Forget sections that scrolled out of view
+        if (drawnVersions.size() > 2 * renderData.size()) {
+            final Reference2IntMap<PreviewSection> visible = new Reference2IntOpenHashMap<>(renderData.size());
+            for (RenderHelper r : renderData) {
+                if (drawnVersions.containsKey(r.dataSection)) {
+                    visible.put(r.dataSection, drawnVersions.getInt(r.dataSection));
+                }
+            }
+            drawnVersions.clear();
+            drawnVersions.putAll(visible);
+        }
+    }
+
+    /**
+     * Draws the parts of an unchanged section that were not visible in the previous view
+     */
+    private void drawExposed(RenderHelper r, ViewState view, ViewState prev) {
+        final int shiftX = (view.minQuartX - prev.minQuartX) / view.quartStride;
+        final int shiftZ = (view.minQuartZ - prev.minQuartZ) / view.quartStride;
+        if (shiftX > 0) {
+            drawSection(r, view, cellWidth - shiftX, 0, cellWidth, cellHeight);
+        } else if (shiftX < 0) {
+            drawSection(r, view, 0, 0, -shiftX, cellHeight);
+        }
+        if (shiftZ > 0) {
+            drawSection(r, view, 0, cellHeight - shiftZ, cellWidth, cellHeight);
+        } else if (shiftZ < 0) {
+            drawSection(r, view, 0, 0, cellWidth, -shiftZ);
+        }
+    }
+
+    /**
+     * Moves the content of the texture, so that the new cell {@code (x, z)} contains the old cell
+     * {@code (x + shiftX, z + shiftZ)}. Cells that are scrolled out are removed from the biome counts.
+     */
+    private void scroll(int shiftX, int shiftZ, int quartExpand) {
+        final boolean countBiomes = renderSettings.mode == RenderSettings.RenderMode.BIOMES;
+
+        // Cell data
+        final int keepCellsX = cellWidth - Math.abs(shiftX);
+        for (int i = 0; i < cellHeight; ++i) {
+            // Rows must be processed in an order that never overwrites rows that are still needed
+            final int z = shiftZ >= 0 ? i : cellHeight - 1 - i;
+            final int srcZ = z + shiftZ;
+            final int rowIdx = z * cellWidth;
+
+            if (countBiomes) {
+                // Every old row z loses the cells that do not have a destination
+                int leaveFrom = 0;
+                int leaveTo = cellWidth;
+                if (z - shiftZ >= 0 && z - shiftZ < cellHeight) {
+                    leaveFrom = shiftX >= 0 ? 0 : keepCellsX;
+                    leaveTo = shiftX >= 0 ? shiftX : cellWidth;
+                }
+                for (int x = leaveFrom; x < leaveTo; ++x) {
+                    final short oldData = cellData[rowIdx + x];
+                    if (oldData >= 0) {
+                        workingVisibleBiomes[oldData] -= 1;
                     }
+                }
+            }
+
+            if (srcZ < 0 || srcZ >= cellHeight) {
+                Arrays.fill(cellData, rowIdx, rowIdx + cellWidth, Short.MIN_VALUE);
+                continue;
+            }
+            System.arraycopy(cellData, srcZ * cellWidth + Math.max(0, shiftX), cellData, rowIdx + Math.max(0, -shiftX), keepCellsX);
+            if (shiftX > 0) {
+                Arrays.fill(cellData, rowIdx + keepCellsX, rowIdx + cellWidth, Short.MIN_VALUE);
+            } else if (shiftX < 0) {
+                Arrays.fill(cellData, rowIdx, rowIdx - shiftX, Short.MIN_VALUE);
+            }
+        }
+
+        // Pixels. The exposed strips are drawn again afterward.
+        final int pixelShiftX = shiftX * quartExpand;
+        final int pixelShiftZ = shiftZ * quartExpand;
+        final int keepPixelsX = texWidth - Math.abs(pixelShiftX);
+        final IntBuffer pixels = MemoryUtil.memIntBuffer(((NativeImageAccessor) (Object) previewImg).getPixels(), texWidth * texHeight);
+        for (int i = 0; i < texHeight; ++i) {
+            final int z = pixelShiftZ >= 0 ? i : texHeight - 1 - i;
+            final int srcZ = z + pixelShiftZ;
+            if (srcZ < 0 || srcZ >= texHeight) {
+                continue;
+            }
+            pixels.get(srcZ * texWidth + Math.max(0, pixelShiftX), rowBuffer, 0, keepPixelsX);
+            pixels.put(z * texWidth + Math.max(0, -pixelShiftX), rowBuffer, 0, keepPixelsX);
+        }
+
+        markDirty(0, 0, texWidth, texHeight);
+    }
+
+    /**
+     * Draws the cells of the section within {@code [clipMinX, clipMaxX) x [clipMinZ, clipMaxZ)}
+     */
+    private void drawSection(RenderHelper r, ViewState view, int clipMinX, int clipMinZ, int clipMaxX, int clipMaxZ) {
+        final int quartExpand = view.quartExpand;
+        final int quartStride = view.quartStride;
+        final PreviewSection.AccessData accessData = r.accessData;
+
+        final int cellStartX = r.sectionStartTexX / quartExpand;
+        final int cellStartZ = r.sectionStartTexZ / quartExpand;
+        final int countX = (accessData.maxX() - accessData.minX() + quartStride - 1) / quartStride;
+        final int countZ = (accessData.maxZ() - accessData.minZ() + quartStride - 1) / quartStride;
+        final int fromX = Math.max(0, clipMinX - cellStartX);
+        final int fromZ = Math.max(0, clipMinZ - cellStartZ);
+        final int toX = Math.min(countX, clipMaxX - cellStartX);
+        final int toZ = Math.min(countZ, clipMaxZ - cellStartZ);
+        if (fromX >= toX || fromZ >= toZ) {
+            return;
+        }
 
-                    // Draw
-                    if (quartExpand > 1) {
-                        previewImg.fillRect(
-                                texX,
-                                texZ,
-                                Math.min(texWidth - texX, quartExpand),
-                                Math.min(texHeight - texZ, quartExpand),
-                                color
-                        );
-                    } else {
-                        previewImg.setPixelRGBA(texX, texZ, color);
+        // Decode all the relevant data in the section at once
+        r.dataSection.readRegion(
+                accessData.minX() + fromX * quartStride,
+                accessData.minZ() + fromZ * quartStride,
+                Math.min(accessData.maxX(), accessData.minX() + toX * quartStride),
+                Math.min(accessData.maxZ(), accessData.minZ() + toZ * quartStride),
+                quartStride,
+                regionBuffer
+        );
+        int regionIdx = 0;
+
+        // Only the cells that changed are drawn
+        for (int i = fromX; i < toX; ++i) {
+            for (int j = fromZ; j < toZ; ++j) {
+                final short rawData = regionBuffer[regionIdx];
+                colorBuffer[regionIdx++] = setCell(cellStartX + i, cellStartZ + j, rawData) ? dataToColor(rawData) : SKIP_CELL;
+            }
+        }
+        final IntBuffer pixels = MemoryUtil.memIntBuffer(((NativeImageAccessor) (Object) previewImg).getPixels(), texWidth * texHeight);
+        drawCells(
+                pixels,
+                texWidth,
+                texHeight,
+                colorBuffer,
+                toX - fromX,
+                toZ - fromZ,
+                (cellStartX + fromX) * quartExpand,
+                (cellStartZ + fromZ) * quartExpand,
+                quartExpand
+        );
+
+        markDirty(
+                (cellStartX + fromX) * quartExpand,
+                (cellStartZ + fromZ) * quartExpand,
+                Math.min(texWidth, (cellStartX + toX) * quartExpand),
+                Math.min(texHeight, (cellStartZ + toZ) * quartExpand)
+        );
+    }
+
+    /**
+     * Fills {@code quartExpand x quartExpand} pixels per cell with the colors of {@code countX x countZ} cells,
+     * which are X-major like {@link PreviewSection#readRegion}. Cells with {@link #SKIP_CELL} are left alone.
+     */
+    static void drawCells(IntBuffer pixels, int texWidth, int texHeight, int[] cellColors, int countX, int countZ, int texStartX, int texStartZ, int quartExpand) {
+        int idx = 0;
+        for (int i = 0; i < countX; ++i) {
+            final int texX = texStartX + i * quartExpand;
+            final int width = Math.min(texWidth - texX, quartExpand);
+            for (int j = 0; j < countZ; ++j) {
+                final int color = cellColors[idx++];
+                if (color == SKIP_CELL) {
+                    continue;
+                }
+                final int texZ = texStartZ + j * quartExpand;
+                final int maxZ = Math.min(texHeight, texZ + quartExpand);
+                for (int z = texZ; z < maxZ; ++z) {
+                    final int rowStart = z * texWidth + texX;
+                    for (int x = rowStart; x < rowStart + width; ++x) {
+                        pixels.put(x, color);
                     }
+                }
+            }
+        }
+    }
 
-                    texZ += quartExpand;
+    /**
+     * Stores the raw data of a texture cell and keeps the visible biome counts up to date.
+     *
+     * @return {@code true} if the cell has to be drawn
+     */
+    private boolean setCell(int cellX, int cellZ, short rawData) {
+        final int idx = cellZ * cellWidth + cellX;
+        final short oldData = cellData[idx];
+        if (oldData == rawData && rawData != Short.MIN_VALUE) {
+            return false;
+        }
+        cellData[idx] = rawData;
+        if (renderSettings.mode == RenderSettings.RenderMode.BIOMES) {
+            if (oldData >= 0) {
+                workingVisibleBiomes[oldData] -= 1;
+            }
+            if (rawData >= 0) {
+                workingVisibleBiomes[rawData] += 1;
+            }
+        }
+        return true;
+    }
+
+    private int dataToColor(short rawData) {
+        int color = 0xFF000000;
+        switch (renderSettings.mode) {
+            case BIOMES -> {
+                if (rawData >= 0) {
+                    color = selectedBiomeId >= 0 || highlightCaves ? colorMapGrayScale[rawData] : colorMap[rawData];
+                    if (selectedBiomeId == rawData || (highlightCaves && cavesMap[rawData])) {
+                        color = colorMap[rawData];
+                    }
+                }
+            }
+            case HEIGHTMAP -> {
+                if (rawData > Short.MIN_VALUE) {
+                    color = heightColorMap[rawData - dataProvider.yMin()];
+                }
+            }
+            case INTERSECTIONS -> {
+                if (rawData >= 0) {
+                    // Main y-intersection
+                    color = MapColor.byId(rawData).col;
+                    color = textureColor(color == 0 ? 0xFFFFFF : color);
+                } else if(rawData > Short.MIN_VALUE) {
+                    // See through one layer of air
+                    color = MapColor.byId(-rawData).col;
+                    color = highlightColor(textureColor(color == 0 ? 0xFFFFFF : color));
                 }
-                texX += quartExpand;
             }
+            case NOISE_TEMPERATURE, NOISE_HUMIDITY, NOISE_CONTINENTALNESS, NOISE_EROSION, NOISE_DEPTH, NOISE_WEIRDNESS -> {
+                if (rawData > Short.MIN_VALUE) {
+                    final float data = ((float) rawData) / ((float) Short.MAX_VALUE);
+                    final int idx = Math.min(1023, Math.max(0, 512 + (int) (data * 512)));
+                    color = noiseColorMap[idx];
+                }
+            }
+            case NOISE_PEAKS_AND_VALLEYS -> {
+                if (rawData > Short.MIN_VALUE) {
+                    final float data = ((float) rawData) / 0.5f / ((float) Short.MAX_VALUE);
+                    final float pvData = NoiseRouterData.peaksAndValleys(Math.min(1.0f, Math.max(-1.0f, data)));
+                    final int idx = Math.min(1023, Math.max(0, 512 + (int) (pvData * 512)));
+                    color = noiseColorMap[idx];
+                }
+            }
+        }
+        return color;
+    }
 
+    private void markDirty(int minX, int minZ, int maxX, int maxZ) {
+        if (minX >= maxX || minZ >= maxZ) {
+            return;
+        }
+        if (dirtyMinX >= dirtyMaxX) {
+            dirtyMinX = minX;
+            dirtyMinZ = minZ;
+            dirtyMaxX = maxX;
+            dirtyMaxZ = maxZ;
+            return;
+        }
+        dirtyMinX = Math.min(dirtyMinX, minX);
+        dirtyMinZ = Math.min(dirtyMinZ, minZ);
+        dirtyMaxX = Math.max(dirtyMaxX, maxX);
+        dirtyMaxZ = Math.max(dirtyMaxZ, maxZ);
+    }
 
+    /**
+     * Only uploads the part of the texture that was drawn since the last upload
+     */
+    private void uploadDirtyRegion() {
+        if (dirtyMinX >= dirtyMaxX) {
+            return;
         }
+        previewTexture.bind();
+        previewImg.upload(
+                0,
+                dirtyMinX, dirtyMinZ,
+                dirtyMinX, dirtyMinZ,
+                dirtyMaxX - dirtyMinX, dirtyMaxZ - dirtyMinZ,
+                false, false
+        );
+        dirtyMinX = dirtyMaxX = 0;
+        dirtyMinZ = dirtyMaxZ = 0;
     }
 
     private void renderStructures(List<RenderHelper> renderData, GuiGraphics guiGraphics) {
@@ -637,11 +987,13 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
         final int xPos = (int) ((mouseX - getX()) * guiScale * scaleBlockPos);
         final int zPos = (int) ((mouseY - getY()) * guiScale * scaleBlockPos);
 
-        int quartX = QuartPos.fromBlock(xMin + xPos);
+        final int lodLevel = renderSettings.lodLevel();
+        final PreviewStorage storage = lodLevel > 0 ? workManager.previewStorage().lod().level(lodLevel) : workManager.previewStorage();
+        int quartX = lodLevel > 0 ? PreviewLodStorage.blockToCell(xMin + xPos, lodLevel) : QuartPos.fromBlock(xMin + xPos);
         int quartY = QuartPos.fromBlock(center.getY());
-        int quartZ = QuartPos.fromBlock(zMin + zPos);
-        short biome = workManager.previewStorage().getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_BIOME);
-        short height = workManager.previewStorage().getRawData4(quartX, 0, quartZ, PreviewStorage.FLAG_HEIGHT);
+        int quartZ = lodLevel > 0 ? PreviewLodStorage.blockToCell(zMin + zPos, lodLevel) : QuartPos.fromBlock(zMin + zPos);
+        short biome = storage.getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_BIOME);
+        short height = storage.getRawData4(quartX, 0, quartZ, PreviewStorage.FLAG_HEIGHT);
 
         if (biome < 0) {
             return new HoverInfo(
@@ -650,12 +1002,12 @@ public class PreviewDisplay extends AbstractWidget implements AutoCloseable {
             );
         }
 
-        final short temperature = workManager.previewStorage().getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_TEMPERATURE);
-        final short humidity = workManager.previewStorage().getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_HUMIDITY);
-        final short continentalness = workManager.previewStorage().getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_CONTINENTALNESS);
-        final short erosion = workManager.previewStorage().getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_EROSION);
-        final short depth = workManager.previewStorage().getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_DEPTH);
-        final short weirdness = workManager.previewStorage().getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_WEIRDNESS);
+        final short temperature = storage.getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_TEMPERATURE);
+        final short humidity = storage.getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_HUMIDITY);
+        final short continentalness = storage.getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_CONTINENTALNESS);
+        final short erosion = storage.getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_EROSION);
+        final short depth = storage.getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_DEPTH);
+        final short weirdness = storage.getRawData4(quartX, quartY, quartZ, PreviewStorage.FLAG_NOISE_WEIRDNESS);
 
         if (temperature == Short.MIN_VALUE && humidity == Short.MIN_VALUE && continentalness == Short.MIN_VALUE && erosion == Short.MIN_VALUE && depth == Short.MIN_VALUE && weirdness == Short.MIN_VALUE) {
             return new HoverInfo(
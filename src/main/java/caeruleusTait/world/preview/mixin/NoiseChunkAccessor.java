@@ -16,6 +16,9 @@ public interface NoiseChunkAccessor {
     @Invoker
     BlockState invokeGetInterpolatedState();
 
+    @Accessor
+    Aquifer getAquifer();
+
     @Final
     @Mutable
     @Accessor
@@ -0,0 +1,13 @@
+package caeruleusTait.world.preview.mixin.client;
+
+import com.mojang.blaze3d.platform.NativeImage;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(NativeImage.class)
+public interface NativeImageAccessor {
+
+    @Accessor
+    long getPixels();
+
+}